@@ -0,0 +1,56 @@
+package game;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+/**
+ * Asset conversion step that encodes every WAV file in a directory to IMA ADPCM.
+ * Each sound.wav gets a sound.ima beside it, which {@link SoundManager} then loads instead.
+ * Files whose .ima copy is already newer than the WAV are skipped.
+ *
+ * Usage:
+ *
+ *  java game.AdpcmConverter [directory]
+ *
+ * The directory defaults to data.
+ */
+public class AdpcmConverter {
+
+    /**
+     * Converts all WAV files in the given directory (or data/).
+     *
+     * @param args optional directory to convert.
+     */
+    public static void main(String[] args) {
+        File dir = new File(args.length > 0 ? args[0] : "data");
+        File[] wavs = dir.listFiles((d, name) -> name.toLowerCase().endsWith(".wav"));
+        if (wavs == null) {
+            System.out.println("No such directory: " + dir);
+            return;
+        }
+
+        long wavBytes = 0;
+        long imaBytes = 0;
+        for (File wav : wavs) {
+            File ima = new File(wav.getParentFile(), wav.getName().replaceAll("(?i)\\.wav$", ImaAdpcm.EXTENSION));
+            try {
+                if (ima.isFile() && ima.lastModified() >= wav.lastModified()) {
+                    System.out.println("Up to date: " + ima.getName());
+                } else {
+                    Files.write(ima.toPath(), ImaAdpcm.encode(SoundManager.decode(wav)));
+                    System.out.println("Encoded " + wav.getName() + " -> " + ima.getName());
+                }
+                wavBytes += wav.length();
+                imaBytes += ima.length();
+            } catch (Exception e) {
+                System.out.println("Failed to encode " + wav.getName() + ": " + e.getMessage());
+            }
+        }
+
+        if (wavBytes > 0) {
+            System.out.printf("WAV %d KB -> ADPCM %d KB (%.1f%%)%n",
+                    wavBytes / 1024, imaBytes / 1024, 100.0 * imaBytes / wavBytes);
+        }
+    }
+}
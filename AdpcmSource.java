@@ -0,0 +1,43 @@
+package game;
+
+/**
+ * Plays an IMA ADPCM sound effect straight from its compressed bytes.
+ * Decoding happens in the mixer thread as samples are needed, so the cache only holds
+ * the compressed data (a quarter of the PCM size) and every voice keeps its own decoder state.
+ */
+public class AdpcmSource implements AudioSource {
+
+    private final byte[] data;   // Complete .ima file image, shared between voices
+    private final int frames;    // Total frames of audio in the file
+    private final ImaAdpcm.Channel left = new ImaAdpcm.Channel();
+    private final ImaAdpcm.Channel right = new ImaAdpcm.Channel();
+    private int frame = 0;       // Next frame to decode
+
+    /**
+     * Creates a source over an encoded file image.
+     *
+     * @param data   the .ima file contents.
+     * @param frames the frame count from the file header.
+     */
+    public AdpcmSource(byte[] data, int frames) {
+        this.data = data;
+        this.frames = frames;
+    }
+
+    @Override
+    public int read(short[] buffer, int wanted) {
+        int count = Math.min(wanted, frames - frame);
+        for (int i = 0; i < count; i++, frame++) {
+            int inBlock = frame % ImaAdpcm.BLOCK_FRAMES;
+            int blockStart = ImaAdpcm.HEADER_SIZE + (frame / ImaAdpcm.BLOCK_FRAMES) * ImaAdpcm.BLOCK_SIZE;
+            if (inBlock == 0) {
+                left.readState(data, blockStart);       // Resynchronise at each block
+                right.readState(data, blockStart + 4);
+            }
+            int codes = data[blockStart + ImaAdpcm.BLOCK_HEADER_SIZE + inBlock];
+            buffer[2 * i] = left.decode(codes & 0x0F);
+            buffer[2 * i + 1] = right.decode((codes >> 4) & 0x0F);
+        }
+        return count;
+    }
+}
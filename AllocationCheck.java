@@ -0,0 +1,182 @@
+package game;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+
+/**
+ * AllocationCheck measures how many bytes the game's own per-step code allocates in each level, to
+ * catch code that creates objects (vectors, lists, boxed numbers) creeping back into the hot paths.
+ *
+ * Each level is played headless by a scripted player that walks, runs, jumps and shoots, so there
+ * are bullets in flight for the sub-stepper to account for. After a warm-up, the level counts the
+ * bytes its own code allocates in every step: the step pipeline's listeners and the sub-stepper's
+ * work between steps (see {@link GameLevel#setAllocationCounter}). The physics step itself is not
+ * counted, as that is the engine's; the whole step is reported alongside for comparison. Steps that
+ * spawn something, such as a bullet, are expected to allocate and only show in the mean and the
+ * 99th percentile.
+ *
+ * The engine returns a new vector from every getter, so each position or velocity the game reads
+ * is a 24-byte copy until the JIT compiles the reading code and removes copies that do not escape.
+ * The default warm-up is about five minutes of play, not long enough to rely on that, so those
+ * copies are counted and the median is mostly the game's reads of positions and velocities.
+ * The default limit sits just above the busiest level's reads (level 2's median is about 300 bytes).
+ * Lighter levels have more room under it, so check one of them on its own with a lower -limit.
+ *
+ * Usage: java game.AllocationCheck [-levels 1,2,3] [-warmup N] [-steps N] [-limit bytes] [-verbose]
+ * Exits with status 1 if any level's median step allocates more than the limit (default 352 bytes)
+ * in the game's code.
+ */
+public class AllocationCheck {
+
+    private static final String SCRIPT = "right+run:90,right+jump:1,right:60,right+shoot:1,right:60,"
+            + "left+run:90,left+jump:1,left+shoot:1,none:30";
+
+    private final com.sun.management.ThreadMXBean threads;
+    private final long callCost; // Bytes one reading of the counter itself allocates
+
+    /**
+     * @throws UnsupportedOperationException if the JVM cannot count allocated bytes per thread.
+     */
+    public AllocationCheck() {
+        if (!(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean)) {
+            throw new UnsupportedOperationException("This JVM cannot count allocated bytes per thread");
+        }
+        threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        if (!threads.isThreadAllocatedMemorySupported()) {
+            throw new UnsupportedOperationException("This JVM cannot count allocated bytes per thread");
+        }
+        threads.setThreadAllocatedMemoryEnabled(true);
+        long min = Long.MAX_VALUE;
+        for (int i = 0; i < 1000; i++) {
+            long before = allocated();
+            min = Math.min(min, allocated() - before);
+        }
+        callCost = min;
+    }
+
+    /** Bytes allocated by each measured step, sorted. */
+    public static final class Result {
+        public final String name;
+        public final long[] bytes;
+
+        Result(String name, long[] bytes) {
+            this.name = name;
+            this.bytes = bytes;
+            Arrays.sort(bytes);
+        }
+
+        /** @return the median bytes per step. */
+        public long median() {
+            return percentile(0.5);
+        }
+
+        /** @return the bytes allocated by the step at a fraction of the way through the sorted steps. */
+        public long percentile(double fraction) {
+            if (bytes.length == 0) return 0;
+            return bytes[Math.min(bytes.length - 1, (int) (fraction * bytes.length))];
+        }
+
+        /** @return the mean bytes per step. */
+        public double mean() {
+            long total = 0;
+            for (long b : bytes) total += b;
+            return bytes.length == 0 ? 0 : (double) total / bytes.length;
+        }
+    }
+
+    /**
+     * Plays a level with the scripted player and measures each game step.
+     *
+     * @param number the level number.
+     * @param warmup steps before measuring.
+     * @param steps  steps measured.
+     * @return the bytes the game's code allocated in each measured step, then the bytes of each whole step.
+     * @throws IllegalArgumentException if there is no such level.
+     */
+    public Result[] measureLevel(int number, int warmup, int steps) {
+        Game game = new Game("allocation");
+        GameLevel level = game.createLevel(number, 1);
+        if (level == null) throw new IllegalArgumentException("No level " + number);
+        // Lives and time to spare, so the run is not cut short by the game ending
+        game.enterLevel(level, 1000, 24 * 60 * 60);
+        new StudentController(game, level.getStudent(), BatchRunner.script(SCRIPT).start(level, 1));
+
+        for (int i = 0; i < warmup && !game.isGameOver(); i++) {
+            level.gameStep();
+        }
+        level.setAllocationCounter(this::allocated);
+        long[] gameBytes = new long[steps];
+        long[] stepBytes = new long[steps];
+        int measured = 0;
+        while (measured < steps && !game.isGameOver()) {
+            long before = allocated();
+            level.gameStep();
+            stepBytes[measured] = Math.max(0, allocated() - before - callCost);
+            // The pipeline reads the counter around its pre and post step passes, the sub-stepper around its work
+            gameBytes[measured++] = Math.max(0, level.getLastStepBytes() - 3 * callCost);
+        }
+        level.setAllocationCounter(null);
+        return new Result[] {
+                new Result("level " + number, Arrays.copyOf(gameBytes, measured)),
+                new Result("  step", Arrays.copyOf(stepBytes, measured))
+        };
+    }
+
+    private long allocated() {
+        return threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    public static void main(String[] args) {
+        int[] levels = LevelRegistry.numbers();
+        int warmup = 20000;
+        int steps = 5000;
+        long limit = 352;
+        boolean verbose = false;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "-levels":  levels = Arrays.stream(args[++i].split(",")).mapToInt(Integer::parseInt).toArray(); break;
+                case "-warmup":  warmup = Integer.parseInt(args[++i]); break;
+                case "-steps":   steps = Integer.parseInt(args[++i]); break;
+                case "-limit":   limit = Long.parseLong(args[++i]); break;
+                case "-verbose": verbose = true; break;
+                default:
+                    System.out.println("Usage: java game.AllocationCheck [-levels 1,2,3] [-warmup N] [-steps N] [-limit bytes] [-verbose]");
+                    return;
+            }
+        }
+
+        AllocationCheck check = new AllocationCheck();
+        PrintStream out = System.out;
+        if (!verbose) {
+            System.setOut(new PrintStream(OutputStream.nullOutputStream())); // Levels print as they play
+        }
+        Result[][] results = new Result[levels.length][];
+        try {
+            for (int i = 0; i < levels.length; i++) {
+                results[i] = check.measureLevel(levels[i], warmup, steps);
+            }
+        } finally {
+            System.setOut(out);
+        }
+
+        System.out.printf("%-10s %8s %8s %8s %10s%n", "", "steps", "median", "p99", "mean");
+        boolean failed = false;
+        for (Result[] result : results) {
+            long over = result[0].median() - limit;
+            print(result[0], over);
+            print(result[1], 0);
+            if (over > 0) failed = true;
+        }
+        System.out.println(failed
+                ? "FAILED: a level's median step allocates more than " + limit + " bytes in the game's code"
+                : "OK: every level's median step allocates at most " + limit + " bytes in the game's code");
+        if (failed) System.exit(1);
+    }
+
+    private static void print(Result result, long over) {
+        System.out.printf("%-10s %8d %7dB %7dB %9.1fB%s%n", result.name, result.bytes.length, result.median(),
+                result.percentile(0.99), result.mean(), over > 0 ? "  (+" + over + "B)" : "");
+    }
+}
@@ -0,0 +1,76 @@
+package game;
+
+import java.io.File;
+import java.nio.file.Files;
+
+/**
+ * Compares loading game sounds from WAV against their ADPCM copies.
+ * For every WAV in the directory that has been converted by {@link AdpcmConverter}, this reports
+ * size on disk, time to load, and memory held while cached (decoded PCM vs compressed bytes).
+ *
+ * Usage:
+ *
+ *  java game.AudioBenchmark [directory] [repeats]
+ */
+public class AudioBenchmark {
+
+    /**
+     * Runs the benchmark.
+     *
+     * @param args optional directory (default data) and number of timed repeats (default 20).
+     */
+    public static void main(String[] args) throws Exception {
+        File dir = new File(args.length > 0 ? args[0] : "data");
+        int repeats = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+        File[] wavs = dir.listFiles((d, name) -> name.toLowerCase().endsWith(".wav"));
+        if (wavs == null || wavs.length == 0) {
+            System.out.println("No WAV files in " + dir);
+            return;
+        }
+
+        System.out.printf("%-28s %10s %10s %10s %10s %12s %12s%n",
+                "file", "wav KB", "ima KB", "wav ms", "ima ms", "pcm heap KB", "ima heap KB");
+
+        for (File wav : wavs) {
+            File ima = new File(wav.getParentFile(), wav.getName().replaceAll("(?i)\\.wav$", ImaAdpcm.EXTENSION));
+            if (!ima.isFile()) {
+                System.out.println(wav.getName() + ": no .ima copy, run AdpcmConverter first");
+                continue;
+            }
+
+            // Warm up both paths so JIT compilation is not measured
+            short[] pcm = SoundManager.decode(wav);
+            byte[] encoded = loadAndDecode(ima);
+
+            long start = System.nanoTime();
+            for (int i = 0; i < repeats; i++) {
+                pcm = SoundManager.decode(wav);
+            }
+            double wavMs = (System.nanoTime() - start) / 1e6 / repeats;
+
+            start = System.nanoTime();
+            for (int i = 0; i < repeats; i++) {
+                encoded = loadAndDecode(ima);
+            }
+            double imaMs = (System.nanoTime() - start) / 1e6 / repeats;
+
+            System.out.printf("%-28s %10d %10d %10.2f %10.2f %12d %12d%n",
+                    wav.getName(), wav.length() / 1024, ima.length() / 1024, wavMs, imaMs,
+                    pcm.length * 2L / 1024, encoded.length / 1024);
+        }
+    }
+
+    /**
+     * Loads an .ima file the way SoundManager caches it, then decodes it fully once
+     * so the decode cost is included in the comparison.
+     */
+    private static byte[] loadAndDecode(File ima) throws Exception {
+        byte[] data = Files.readAllBytes(ima.toPath());
+        AdpcmSource source = new AdpcmSource(data, ImaAdpcm.readHeader(data));
+        short[] buffer = new short[AudioMixer.FRAMES_PER_BUFFER * 2];
+        while (source.read(buffer, AudioMixer.FRAMES_PER_BUFFER) == AudioMixer.FRAMES_PER_BUFFER) {
+            // Decode to the end
+        }
+        return data;
+    }
+}
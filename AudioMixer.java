@@ -0,0 +1,379 @@
+package game;
+
+import javax.sound.sampled.*;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * AudioMixer sums every active voice (background music and sound effects) into one output line.
+ * All buffers are allocated up front, so the mixer thread does not allocate while running.
+ * In headless mode the mix is written to a WAV file instead of a sound device.
+ */
+public class AudioMixer {
+
+    /** The single format every voice is mixed in: 44.1 kHz, 16-bit, stereo, little-endian. */
+    public static final AudioFormat FORMAT = new AudioFormat(44100f, 16, 2, true, false);
+
+    /** Frames mixed per buffer (about 11.6 ms at 44.1 kHz). */
+    public static final int FRAMES_PER_BUFFER = 512;
+
+    private static final int MAX_VOICES = 16;        // Voices mixed at once
+    private static final int MAX_PENDING = 32;       // Voices waiting to be started
+    private static final int WAV_HEADER_SIZE = 44;
+
+    private final Voice[] voices = new Voice[MAX_VOICES];
+    private final ArrayBlockingQueue<Voice> pending = new ArrayBlockingQueue<>(MAX_PENDING);
+
+    // Preallocated mixing buffers
+    private final float[] mixBuffer = new float[FRAMES_PER_BUFFER * 2];
+    private final short[] voiceBuffer = new short[FRAMES_PER_BUFFER * 2];
+    private final byte[] outBuffer = new byte[FRAMES_PER_BUFFER * 4];
+
+    private final SourceDataLine line;     // Device output, or null when headless
+    private final RandomAccessFile file;   // Headless output, or null when playing to a device
+    private long bytesWritten = 0;         // PCM bytes written to the headless file
+
+    private volatile float masterGain = 1f;
+    private volatile boolean running = false;
+    private Thread thread;
+
+    private AudioMixer(SourceDataLine line, RandomAccessFile file) {
+        this.line = line;
+        this.file = file;
+    }
+
+    /**
+     * Creates a mixer that plays through the default sound device.
+     *
+     * @return a mixer bound to a single {@link SourceDataLine}.
+     * @throws LineUnavailableException if the system cannot open an output line.
+     */
+    public static AudioMixer open() throws LineUnavailableException {
+        SourceDataLine line = AudioSystem.getSourceDataLine(FORMAT);
+        line.open(FORMAT, FRAMES_PER_BUFFER * 4 * 4); // Four mix buffers of device latency
+        line.start();
+        return new AudioMixer(line, null);
+    }
+
+    /**
+     * Creates a headless mixer that writes its output to a WAV file.
+     *
+     * @param output the file to write the mix to.
+     * @return a mixer with no sound device attached.
+     * @throws IOException if the file cannot be created.
+     */
+    public static AudioMixer headless(File output) throws IOException {
+        RandomAccessFile file = new RandomAccessFile(output, "rw");
+        file.setLength(0);
+        file.write(new byte[WAV_HEADER_SIZE]); // Filled in by close() once the length is known
+        return new AudioMixer(null, file);
+    }
+
+    /**
+     * Creates a mixer that discards its output, used when no sound device is available.
+     *
+     * @return a silent mixer.
+     */
+    public static AudioMixer silent() {
+        return new AudioMixer(null, null);
+    }
+
+    /**
+     * Starts the mixer thread.
+     */
+    public void start() {
+        if (running) return;
+        running = true;
+        thread = new Thread(this::run, "audio-mixer");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MAX_PRIORITY);
+        thread.start();
+    }
+
+    /**
+     * Queues a source for playback.
+     *
+     * @param source   the audio to play.
+     * @param gain     linear gain for this voice (1 = unchanged).
+     * @param priority higher priorities steal the slots of lower ones when all voices are busy.
+     * @return a handle for changing the gain or stopping the voice, or null if the queue is full.
+     */
+    public Voice play(AudioSource source, float gain, int priority) {
+        Voice voice = new Voice(source, gain, priority);
+        return pending.offer(voice) ? voice : null;
+    }
+
+    /**
+     * Sets the gain applied to the whole mix.
+     *
+     * @param gain linear gain (1 = unchanged).
+     */
+    public void setMasterGain(float gain) {
+        masterGain = gain;
+    }
+
+    /**
+     * Mixes and outputs a number of buffers on the calling thread.
+     * Intended for headless use where the mixer thread is not started.
+     *
+     * @param buffers the number of buffers to render.
+     */
+    public void render(int buffers) {
+        for (int i = 0; i < buffers; i++) {
+            mixOnce();
+            output();
+        }
+    }
+
+    /**
+     * Stops the mixer thread and releases the output line or file.
+     */
+    public void close() {
+        running = false;
+        if (thread != null) {
+            try {
+                thread.join(500);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        if (line != null) {
+            line.drain();
+            line.close();
+        }
+        if (file != null) {
+            try {
+                writeWavHeader();
+                file.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Converts a volume in decibels to a linear gain.
+     *
+     * @param decibels volume in dB; -80 is treated as silence.
+     * @return the linear gain.
+     */
+    public static float dbToGain(float decibels) {
+        return decibels <= -80f ? 0f : (float) Math.pow(10.0, decibels / 20.0);
+    }
+
+    private void run() {
+        long bufferNanos = (long) (FRAMES_PER_BUFFER * 1_000_000_000L / FORMAT.getFrameRate());
+        while (running) {
+            mixOnce();
+            if (line != null) {
+                output(); // Blocks until the device has room, which paces the loop
+            } else {
+                output();
+                LockSupport.parkNanos(bufferNanos); // No device to pace us, so pace in real time
+            }
+        }
+    }
+
+    /**
+     * Starts pending voices and mixes one buffer of every active voice into the output buffer.
+     */
+    private void mixOnce() {
+        Voice next;
+        while ((next = pending.poll()) != null) {
+            assignSlot(next);
+        }
+
+        Arrays.fill(mixBuffer, 0f);
+        for (int v = 0; v < MAX_VOICES; v++) {
+            Voice voice = voices[v];
+            if (voice == null) continue;
+            if (voice.stopRequested) {
+                voices[v] = null;
+                continue;
+            }
+
+            int frames = voice.source.read(voiceBuffer, FRAMES_PER_BUFFER);
+            if (voice.fadeRequested) {
+                voice.startFade();
+            }
+            if (voice.fadeRemaining > 0) {
+                mixFading(voice, frames);
+            } else {
+                float gain = voice.gain;
+                for (int i = 0; i < frames * 2; i++) {
+                    mixBuffer[i] += voiceBuffer[i] * gain;
+                }
+            }
+            if (voice.stopRequested) {
+                voices[v] = null; // Faded out completely
+            } else if (frames < FRAMES_PER_BUFFER) {
+                voice.finished = true;
+                voices[v] = null; // Source ended, free the slot
+            }
+        }
+
+        float master = masterGain;
+        for (int i = 0, b = 0; i < mixBuffer.length; i++, b += 2) {
+            float sample = mixBuffer[i] * master;
+            if (sample > Short.MAX_VALUE) sample = Short.MAX_VALUE;       // Clip rather than wrap
+            else if (sample < Short.MIN_VALUE) sample = Short.MIN_VALUE;
+            int s = (int) sample;
+            outBuffer[b] = (byte) s;
+            outBuffer[b + 1] = (byte) (s >> 8);
+        }
+    }
+
+    /**
+     * Mixes a voice whose gain is ramping, stepping the gain once per frame to avoid clicks.
+     */
+    private void mixFading(Voice voice, int frames) {
+        float gain = voice.gain;
+        for (int f = 0, i = 0; f < frames; f++, i += 2) {
+            if (voice.fadeRemaining > 0) {
+                gain += voice.fadeStep;
+                voice.fadeRemaining--;
+                if (voice.fadeRemaining == 0) gain = voice.fadeTarget; // Land exactly on the target
+            }
+            mixBuffer[i] += voiceBuffer[i] * gain;
+            mixBuffer[i + 1] += voiceBuffer[i + 1] * gain;
+        }
+        voice.gain = gain;
+        if (voice.fadeRemaining == 0 && voice.stopAfterFade) {
+            voice.stopRequested = true;
+        }
+    }
+
+    /**
+     * Places a new voice in a free slot, stealing the lowest-priority voice if all slots are busy.
+     */
+    private void assignSlot(Voice voice) {
+        int lowest = -1;
+        for (int v = 0; v < MAX_VOICES; v++) {
+            if (voices[v] == null) {
+                voices[v] = voice;
+                return;
+            }
+            if (lowest < 0 || voices[v].priority < voices[lowest].priority) {
+                lowest = v;
+            }
+        }
+        if (voices[lowest].priority <= voice.priority) {
+            voices[lowest].finished = true;
+            voices[lowest] = voice;
+        } else {
+            voice.finished = true; // Everything playing matters more, drop the new voice
+        }
+    }
+
+    /** Writes the mixed buffer to the device or file. */
+    private void output() {
+        if (line != null) {
+            line.write(outBuffer, 0, outBuffer.length);
+        } else if (file != null) {
+            try {
+                file.write(outBuffer);
+                bytesWritten += outBuffer.length;
+            } catch (IOException e) {
+                e.printStackTrace();
+                running = false;
+            }
+        }
+    }
+
+    /** Fills in the RIFF header at the start of the headless output file. */
+    private void writeWavHeader() throws IOException {
+        int channels = FORMAT.getChannels();
+        int sampleRate = (int) FORMAT.getSampleRate();
+        int blockAlign = FORMAT.getFrameSize();
+
+        file.seek(0);
+        file.writeBytes("RIFF");
+        file.writeInt(Integer.reverseBytes((int) (36 + bytesWritten)));
+        file.writeBytes("WAVEfmt ");
+        file.writeInt(Integer.reverseBytes(16));
+        file.writeShort(Short.reverseBytes((short) 1)); // PCM
+        file.writeShort(Short.reverseBytes((short) channels));
+        file.writeInt(Integer.reverseBytes(sampleRate));
+        file.writeInt(Integer.reverseBytes(sampleRate * blockAlign));
+        file.writeShort(Short.reverseBytes((short) blockAlign));
+        file.writeShort(Short.reverseBytes((short) 16));
+        file.writeBytes("data");
+        file.writeInt(Integer.reverseBytes((int) bytesWritten));
+    }
+
+    /**
+     * A single playing sound within the mixer.
+     */
+    public static class Voice {
+        private final AudioSource source;
+        private final int priority;
+        private volatile float gain;
+        private volatile boolean stopRequested = false;
+        private volatile boolean finished = false;
+
+        // Fade requested by the caller, picked up by the mixer thread at the next buffer
+        private volatile boolean fadeRequested = false;
+        private volatile float fadeTarget;
+        private volatile int fadeFrames;
+        private volatile boolean stopAfterFade;
+
+        // Fade in progress, only touched by the mixer thread
+        private int fadeRemaining = 0;
+        private float fadeStep;
+
+        private Voice(AudioSource source, float gain, int priority) {
+            this.source = source;
+            this.gain = gain;
+            this.priority = priority;
+        }
+
+        /**
+         * Sets the linear gain of this voice.
+         *
+         * @param gain the new gain (1 = unchanged).
+         */
+        public void setGain(float gain) {
+            this.gain = gain;
+        }
+
+        /** @return the current linear gain of this voice. */
+        public float getGain() {
+            return gain;
+        }
+
+        /**
+         * Ramps the gain of this voice smoothly, for fades and crossfades.
+         *
+         * @param target  the gain to end up at.
+         * @param seconds how long the ramp takes.
+         * @param stop    whether to stop the voice when the ramp finishes.
+         */
+        public void fadeTo(float target, float seconds, boolean stop) {
+            fadeTarget = target;
+            fadeFrames = Math.max(1, (int) (seconds * FORMAT.getFrameRate()));
+            stopAfterFade = stop;
+            fadeRequested = true; // Written last so the mixer sees the other fields
+        }
+
+        /** Turns a pending fade request into a per-frame gain step. Called on the mixer thread. */
+        private void startFade() {
+            fadeRequested = false;
+            fadeRemaining = fadeFrames;
+            fadeStep = (fadeTarget - gain) / fadeRemaining;
+        }
+
+        /** Stops the voice at the start of the next mix buffer. */
+        public void stop() {
+            stopRequested = true;
+        }
+
+        /** @return true once the voice has ended, been stopped or been stolen. */
+        public boolean isFinished() {
+            return finished || stopRequested;
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package game;
+
+/**
+ * A stream of interleaved 16-bit stereo samples in the {@link AudioMixer#FORMAT} format.
+ * Sources are pulled by the mixer thread, so implementations must not block or allocate.
+ */
+public interface AudioSource {
+
+    /**
+     * Reads up to the requested number of frames into the buffer.
+     *
+     * @param buffer destination for interleaved left/right samples.
+     * @param frames the number of stereo frames wanted.
+     * @return the number of frames written; fewer than requested means the source has ended.
+     */
+    int read(short[] buffer, int frames);
+}
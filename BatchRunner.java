@@ -0,0 +1,312 @@
+package game;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntSupplier;
+
+/**
+ * BatchRunner plays many independent levels at once, headless and as fast as the machine allows,
+ * for balance testing and throughput measurements.
+ *
+ * Every run has its own {@link Game} and level, built from the level number and a seed, and its
+ * player is driven by a {@link Policy} instead of the keyboard. Runs share nothing that changes
+ * while they play (level files, shapes and tuning are read-only once loaded), so they are spread
+ * over a thread pool with one run per task. A run ends when the level is complete, the game is
+ * over, or the step limit is reached. Results are reported per level: how often and how quickly
+ * it was completed, lives lost and the cost of a step.
+ *
+ * Usage: java game.BatchRunner [-levels 1,2,3] [-runs N] [-threads N] [-seed S] [-steps N]
+ *                              [-policy idle|random|script] [-script actions:steps,...] [-verbose]
+ * Script actions are left, right, run, jump and shoot joined with '+', or 'none'; the script repeats.
+ * Levels default to every level in the levels directory ({@link LevelRegistry}).
+ * Game output is hidden unless -verbose is given.
+ */
+public class BatchRunner {
+
+    /** Drives the player of one run. */
+    public interface Policy {
+        /**
+         * @param level the level about to be played.
+         * @param seed  the run's seed, for policies that make random choices.
+         * @return the action mask (see {@link StudentController}) for each step, called once per step.
+         */
+        IntSupplier start(GameLevel level, long seed);
+    }
+
+    /** Does nothing; shows what the level does to a player who stands still. */
+    public static final Policy IDLE = (level, seed) -> () -> 0;
+
+    /** Walks a random direction for a random time, jumping and shooting now and then. */
+    public static final Policy RANDOM = (level, seed) -> {
+        GameRandom random = new GameRandom(seed ^ 0x5DEECE66DL); // Not the level's own sequence
+        int[] state = new int[2]; // Held direction and run bits, steps left to hold them
+        return () -> {
+            if (state[1]-- <= 0) {
+                int[] moves = {0, StudentController.ACTION_LEFT, StudentController.ACTION_RIGHT, StudentController.ACTION_RIGHT};
+                state[0] = moves[random.nextInt(moves.length)] | (random.nextBoolean() ? StudentController.ACTION_RUN : 0);
+                state[1] = 30 + random.nextInt(90);
+            }
+            int actions = state[0];
+            if (random.nextInt(40) == 0) actions |= StudentController.ACTION_JUMP;
+            if (random.nextInt(30) == 0) actions |= StudentController.ACTION_SHOOT;
+            return actions;
+        };
+    };
+
+    /** The outcome of one run. */
+    public static final class Result {
+        public final int level;
+        public final long seed;
+        public final boolean completed;
+        public final boolean gameOver;
+        public final int steps;
+        public final int livesLost;
+        public final long physicsSteps;
+        public final LatencyHistogram stepCost;
+
+        Result(int level, long seed, boolean completed, boolean gameOver, int steps, int livesLost,
+               long physicsSteps, LatencyHistogram stepCost) {
+            this.level = level;
+            this.seed = seed;
+            this.completed = completed;
+            this.gameOver = gameOver;
+            this.steps = steps;
+            this.livesLost = livesLost;
+            this.physicsSteps = physicsSteps;
+            this.stepCost = stepCost;
+        }
+    }
+
+    private final Policy policy;
+    private final int maxSteps;
+
+    /**
+     * @param policy   drives the player in every run.
+     * @param maxSteps steps after which a run is stopped if it has not ended.
+     */
+    public BatchRunner(Policy policy, int maxSteps) {
+        this.policy = policy;
+        this.maxSteps = maxSteps;
+    }
+
+    /**
+     * Plays one level to the end on the calling thread.
+     *
+     * @param number the level number.
+     * @param seed   seed for the level's layout and the policy.
+     * @return the result.
+     * @throws IllegalArgumentException if there is no such level.
+     */
+    public Result run(int number, long seed) {
+        Game game = new Game("batch");
+        GameLevel level = game.createLevel(number, seed);
+        if (level == null) throw new IllegalArgumentException("No level " + number);
+        int startLives = game.getLives();
+        game.enterLevel(level, startLives, game.getTimeLeft());
+        new StudentController(game, level.getStudent(), policy.start(level, seed));
+
+        LatencyHistogram stepCost = new LatencyHistogram("step");
+        int steps = 0;
+        while (!game.isGameOver() && !level.isComplete() && steps < maxSteps) {
+            long t = System.nanoTime();
+            level.gameStep();
+            stepCost.record(System.nanoTime() - t);
+            steps++;
+        }
+        Result result = new Result(number, seed, level.isComplete(), game.isGameOver(), steps,
+                startLives - game.getLives(), level.getStepMetrics().getPhysicsSteps(), stepCost);
+        if (!game.isGameOver()) {
+            game.getSoundManager().close(); // Otherwise closed when the game ended
+        }
+        return result;
+    }
+
+    /**
+     * Plays every level the given number of times, spread over a thread pool.
+     *
+     * @param levels  the level numbers.
+     * @param runs    runs of each level.
+     * @param seed    seed of the first run; run i of each level uses seed + i.
+     * @param threads worker threads.
+     * @return the results, grouped by level in the order given, then by run.
+     * @throws InterruptedException if interrupted while waiting for the runs.
+     */
+    public List<Result> runAll(int[] levels, int runs, long seed, int threads) throws InterruptedException {
+        AtomicInteger workerNumber = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "batch-" + workerNumber.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        try {
+            List<Future<Result>> futures = new ArrayList<>();
+            for (int number : levels) {
+                for (int i = 0; i < runs; i++) {
+                    long runSeed = seed + i; // SplitMix64 copes well with consecutive seeds
+                    futures.add(pool.submit(() -> run(number, runSeed)));
+                }
+            }
+            List<Result> results = new ArrayList<>(futures.size());
+            for (Future<Result> future : futures) {
+                try {
+                    results.add(future.get());
+                } catch (ExecutionException e) {
+                    throw new IllegalStateException("A batch run failed", e.getCause());
+                }
+            }
+            return results;
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Summarises results level by level.
+     *
+     * @param results the results of {@link #runAll}.
+     * @return the report text.
+     */
+    public static String report(List<Result> results) {
+        StringBuilder text = new StringBuilder();
+        int[] levels = results.stream().mapToInt(r -> r.level).distinct().toArray();
+        for (int number : levels) {
+            int runs = 0, completed = 0, gameOver = 0, livesLost = 0;
+            long physicsSteps = 0, steps = 0;
+            List<Integer> completionSteps = new ArrayList<>();
+            LatencyHistogram stepCost = new LatencyHistogram("level " + number + " step");
+            for (Result r : results) {
+                if (r.level != number) continue;
+                runs++;
+                if (r.completed) {
+                    completed++;
+                    completionSteps.add(r.steps);
+                }
+                if (r.gameOver) gameOver++;
+                livesLost += r.livesLost;
+                steps += r.steps;
+                physicsSteps += r.physicsSteps;
+                stepCost.merge(r.stepCost);
+            }
+            text.append(String.format("Level %d: %d runs, %d completed (%.0f%%), %d game over, %d stopped at the step limit%n",
+                    number, runs, completed, 100.0 * completed / runs, gameOver, runs - completed - gameOver));
+            if (!completionSteps.isEmpty()) {
+                int[] sorted = completionSteps.stream().mapToInt(Integer::intValue).sorted().toArray();
+                text.append(String.format("  completion time: min %.1fs, median %.1fs, max %.1fs%n",
+                        seconds(sorted[0]), seconds(sorted[sorted.length / 2]), seconds(sorted[sorted.length - 1])));
+            }
+            text.append(String.format("  lives lost per run %.2f, %.2f physics steps per game step%n",
+                    (double) livesLost / runs, steps == 0 ? 0 : (double) physicsSteps / steps));
+            text.append("  ").append(stepCost.report());
+        }
+        return text.toString();
+    }
+
+    private static double seconds(int steps) {
+        return (double) steps / GameLevel.STEPS_PER_SECOND;
+    }
+
+    /** Parses a script such as "right:120,right+jump:1,left:60" into a repeating policy. */
+    static Policy script(String text) {
+        String[] parts = text.split(",");
+        int[] actions = new int[parts.length];
+        int[] steps = new int[parts.length];
+        for (int i = 0; i < parts.length; i++) {
+            String[] pair = parts[i].trim().split(":");
+            if (pair.length != 2) throw new IllegalArgumentException("Expected actions:steps, got '" + parts[i] + "'");
+            for (String action : pair[0].split("\\+")) {
+                switch (action) {
+                    case "left":  actions[i] |= StudentController.ACTION_LEFT; break;
+                    case "right": actions[i] |= StudentController.ACTION_RIGHT; break;
+                    case "run":   actions[i] |= StudentController.ACTION_RUN; break;
+                    case "jump":  actions[i] |= StudentController.ACTION_JUMP; break;
+                    case "shoot": actions[i] |= StudentController.ACTION_SHOOT; break;
+                    case "none":  break;
+                    default: throw new IllegalArgumentException("Unknown action '" + action + "'");
+                }
+            }
+            steps[i] = Integer.parseInt(pair[1]);
+            if (steps[i] < 1) throw new IllegalArgumentException("Steps must be at least 1 in '" + parts[i] + "'");
+        }
+        return (level, seed) -> {
+            int[] position = new int[2]; // Entry, steps spent in it
+            return () -> {
+                if (position[1] >= steps[position[0]]) {
+                    position[0] = (position[0] + 1) % steps.length;
+                    position[1] = 0;
+                }
+                position[1]++;
+                return actions[position[0]];
+            };
+        };
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        int[] levels = LevelRegistry.numbers();
+        int runs = 16;
+        int threads = Runtime.getRuntime().availableProcessors();
+        long seed = 1;
+        int maxSteps = 150 * GameLevel.STEPS_PER_SECOND; // A little past the game's two-minute countdown
+        String policyName = "random";
+        String scriptText = null;
+        boolean verbose = false;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "-levels":  levels = Arrays.stream(args[++i].split(",")).mapToInt(Integer::parseInt).toArray(); break;
+                case "-runs":    runs = Integer.parseInt(args[++i]); break;
+                case "-threads": threads = Integer.parseInt(args[++i]); break;
+                case "-seed":    seed = Long.parseLong(args[++i]); break;
+                case "-steps":   maxSteps = Integer.parseInt(args[++i]); break;
+                case "-policy":  policyName = args[++i]; break;
+                case "-script":  scriptText = args[++i]; policyName = "script"; break;
+                case "-verbose": verbose = true; break;
+                default:
+                    System.out.println("Unknown option " + args[i]);
+                    return;
+            }
+        }
+        Policy policy;
+        switch (policyName) {
+            case "idle":   policy = IDLE; break;
+            case "random": policy = RANDOM; break;
+            case "script":
+                if (scriptText == null) {
+                    System.out.println("-policy script needs -script actions:steps,...");
+                    return;
+                }
+                policy = script(scriptText);
+                break;
+            default:
+                System.out.println("Unknown policy " + policyName + ", expected idle, random or script");
+                return;
+        }
+
+        BatchRunner runner = new BatchRunner(policy, maxSteps);
+        PrintStream out = System.out;
+        if (!verbose) {
+            // The game reports every life lost and double jump; thousands of runs would bury the results
+            System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        }
+        long start = System.nanoTime();
+        List<Result> results;
+        try {
+            results = runner.runAll(levels, runs, seed, threads);
+        } finally {
+            System.setOut(out);
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        long steps = results.stream().mapToLong(r -> r.steps).sum();
+        System.out.print(report(results));
+        System.out.printf("%d runs on %d threads: %d steps in %.2fs, %.0f steps/s, %.0fx real time%n",
+                results.size(), threads, steps, seconds, steps / seconds,
+                steps / (double) GameLevel.STEPS_PER_SECOND / seconds);
+    }
+}
@@ -10,15 +10,21 @@ import org.jbox2d.common.Vec2;
 public class BossEnemy extends Walker implements StepListener, CollisionListener {
 
     // Static image and shape shared by all BossEnemy instances
-    private static final BodyImage bossImage = new BodyImage("data/bossEnemy.png", 8f);
+    private static final String IMAGE_FILE = "data/bossEnemy.png";
+    private static final float IMAGE_HEIGHT = 8f;
+    private static final BodyImage bossImage = new BodyImage(IMAGE_FILE, IMAGE_HEIGHT);
+    // Used when the sprite has not been traced into the shape cache (see ShapeCompiler)
     private static final Shape bossShape = new PolygonShape(
             -2.5f, 2.0f,  2.5f, 2.0f,  2.5f, -3.0f,  -2.5f, -3.0f
     );
 
+    private static final Tuning.FloatValue SPEED = Tuning.floatValue("boss.speed", 2.0f); // Movement speed
+    // Steps between each fireball attack. 60fp per second so 3seconds total
+    private static final Tuning.IntValue SHOOT_INTERVAL_STEPS = Tuning.intValue("boss.shootIntervalSteps", 180);
+
     private int health = 5;                  // Boss health
-    private float speed = 2.0f;              // Movement speed
     private int stepsSinceLastShot = 0;      // Counter to regulate fireball shooting
-    private final int shootIntervalSteps = 180; // Steps between each fireball attack. 60fp per second so 3seconds total
+    private final Vec2 velocity = new Vec2(); // Reused every step, as the engine copies it
 
     private final Game game;                 // Reference to the main Game
 
@@ -28,12 +34,15 @@ public class BossEnemy extends Walker implements StepListener, CollisionListener
      * @param game Reference to the main game instance.
      */
     public BossEnemy(GameLevel world, Game game) {
-        super(world, bossShape);
+        super(world);
         this.game = game;
 
+        ShapeCache.addFixtures(this, IMAGE_FILE, IMAGE_HEIGHT, bossShape);
+
         addImage(bossImage);               // Set visual appearance
         addCollisionListener(this);       // Handle collision with bullets
-        world.addStepListener(this);      // Enable step-based behavior (movement/shooting)
+        world.addStepListener(StepPipeline.Phase.AI, this); // Chasing and shooting; removed when destroyed
+        world.addEnemy(this);
     }
 
     /**
@@ -44,20 +53,23 @@ public class BossEnemy extends Walker implements StepListener, CollisionListener
     public void preStep(StepEvent e) {
         Student student = ((GameLevel) getWorld()).getStudent();
         if (student != null) {
-            // Calculate direction vector toward the player
-            Vec2 direction = student.getPosition().sub(getPosition());
-            float distance = direction.length();
+            // Direction toward the player, worked out in floats so nothing is allocated each step
+            Vec2 target = student.getPosition();
+            Vec2 position = getPosition();
+            float dx = target.x - position.x;
+            float dy = target.y - position.y;
+            float distance = (float) Math.sqrt(dx * dx + dy * dy);
 
             if (distance > 0) {
-                direction.normalize();
-                Vec2 targetVelocity = direction.mul(speed);
-                setLinearVelocity(targetVelocity); // Move toward the player
+                float scale = 1.0f / distance;
+                velocity.set(dx * scale * SPEED.get(), dy * scale * SPEED.get());
+                setLinearVelocity(velocity); // Move toward the player
             }
         }
 
         // Fireball shooting logic
         stepsSinceLastShot++;
-        if (stepsSinceLastShot >= shootIntervalSteps) {
+        if (stepsSinceLastShot >= SHOOT_INTERVAL_STEPS.get()) {
             shootFireball();
             stepsSinceLastShot = 0;
         }
@@ -98,6 +110,7 @@ public class BossEnemy extends Walker implements StepListener, CollisionListener
         health--;
         System.out.println("Boss health: " + health);
         if (health <= 0) {
+            ((GameLevel) getWorld()).enemyDefeated(this); // Counts towards the level objective
             destroy();
             System.out.println("Boss defeated!");
         }
@@ -122,4 +135,24 @@ public class BossEnemy extends Walker implements StepListener, CollisionListener
     public boolean isDefeated() {
         return health <= 0;
     }
+
+    /** @return the remaining health. */
+    public int getHealth() {
+        return health;
+    }
+
+    /** @param health the remaining health, restored from a snapshot. */
+    public void setHealth(int health) {
+        this.health = health;
+    }
+
+    /** @return steps since the last fireball was fired. */
+    public int getStepsSinceLastShot() {
+        return stepsSinceLastShot;
+    }
+
+    /** @param steps steps since the last fireball, restored from a snapshot. */
+    public void setStepsSinceLastShot(int steps) {
+        this.stepsSinceLastShot = steps;
+    }
 }
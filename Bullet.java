@@ -11,7 +11,7 @@ public class Bullet extends Projectile {
 
     // Shape and speed constants
     private static final Shape bulletShape = new CircleShape(0.2f); // Small circular shape
-    private static final float SPEED = 10f; // Bullet speed
+    private static final Tuning.FloatValue SPEED = Tuning.floatValue("bullet.speed", 10f); // Bullet speed
 
     /**
      * Constructs a bullet at a given position and shoots it in a direction.
@@ -26,6 +26,6 @@ public class Bullet extends Projectile {
         // Set bullet initial properties
         setPosition(position);                 // Set start position
         setGravityScale(0);                   // No gravity — bullet travels straight
-        setLinearVelocity(direction.mul(SPEED)); // Launch bullet
+        setLinearVelocity(direction.mul(SPEED.get())); // Launch bullet
     }
 }
@@ -12,6 +12,9 @@ public class Collectible extends DynamicBody {
         // Add a solid fixture for collision detection
         new SolidFixture(this, collectibleShape);
         addImage(collectibleImage);
+        if (world instanceof GameLevel) {
+            ((GameLevel) world).addCollectible(this);
+        }
 
 
     }
@@ -0,0 +1,79 @@
+package game;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Lock-free multi-producer, single-consumer queue of world mutations.
+ * Any thread (the EDT, audio or file watcher threads) may post commands; the owning
+ * {@link GameLevel} drains them all at the start of its next step, so bodies are only
+ * ever created, destroyed or changed while the physics step is not running.
+ *
+ * Producers only perform a single atomic swap, and the consumer never takes a lock.
+ */
+public class CommandQueue {
+
+    private final AtomicReference<Node> head; // Most recently posted node, swapped by producers
+    private Node tail;                        // Last consumed node, only touched by the consumer
+
+    /**
+     * Creates an empty queue.
+     */
+    public CommandQueue() {
+        Node stub = new Node(null);
+        head = new AtomicReference<>(stub);
+        tail = stub;
+    }
+
+    /**
+     * Posts a command to run at the start of the next step. Safe to call from any thread.
+     *
+     * @param command the mutation to apply.
+     */
+    public void post(Runnable command) {
+        Node node = new Node(command);
+        Node previous = head.getAndSet(node);
+        previous.next = node; // Publishes the node to the consumer
+    }
+
+    /**
+     * Runs every command posted before this call, in posting order. Only the owning level calls this.
+     * Commands posted by the commands themselves wait for the next drain.
+     *
+     * @return the number of commands run.
+     */
+    public int drain() {
+        Node end = head.get();
+        int count = 0;
+
+        while (tail != end) {
+            Node next = tail.next;
+            if (next == null) {
+                break; // A producer has swapped head but not linked yet; pick it up next step
+            }
+            tail = next;
+            Runnable command = next.command;
+            next.command = null; // Let the command be collected while the node is still the tail
+            count++;
+            try {
+                command.run();
+            } catch (RuntimeException e) {
+                e.printStackTrace(); // One bad command must not stop the rest being applied
+            }
+        }
+        return count;
+    }
+
+    /** @return true if no commands are waiting. */
+    public boolean isEmpty() {
+        return tail.next == null;
+    }
+
+    private static final class Node {
+        private Runnable command;
+        private volatile Node next;
+
+        private Node(Runnable command) {
+            this.command = command;
+        }
+    }
+}
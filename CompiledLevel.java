@@ -0,0 +1,370 @@
+package game;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * CompiledLevel is a level in the binary form written by {@link LevelCompiler}.
+ *
+ * Opening one only reads the section table. Each section is decoded the first time it is asked for
+ * and kept, so reading a level's name or objective does not decode its layout, and building the
+ * level again (after dying, loading or rewinding) does not decode anything.
+ * Opening checks the header and section table; a damaged section is only found when it is first
+ * decoded, and its getter then throws an {@link UncheckedIOException}.
+ *
+ * Instances are shared through {@link LevelCache} and are safe to use from several threads.
+ */
+public class CompiledLevel {
+
+    private final ByteBuffer data;
+    private final int[] offsets = new int[LevelCompiler.SECTION_COUNT + 1];   // 0 when a section is absent
+    private final int[] lengths = new int[LevelCompiler.SECTION_COUNT + 1];
+
+    // Decoded sections, filled on first use
+    private String[] strings;
+    private Meta meta;
+    private float[] boxes;
+    private RandomPlatforms[] randomPlatforms;
+    private MovingPath[] moving;
+    private Placement[] entities;
+    private Placement[] scatters;
+    private Placement[] spawners;
+    private Rule[] rules;
+    private StepConfig stepConfig;
+    private Objective[] objectives;
+
+    /**
+     * Reads the header and section table of a compiled level.
+     *
+     * @param data the compiled level; it is kept, not copied.
+     * @throws IOException if it is not a compiled level or its table is damaged.
+     */
+    public CompiledLevel(ByteBuffer data) throws IOException {
+        this.data = data;
+        try {
+            if (data.getInt(0) != LevelCompiler.MAGIC) throw new IOException("Not a compiled level");
+            short version = data.getShort(4);
+            if (version != LevelCompiler.VERSION) throw new IOException("Compiled level has version " + version);
+            int count = data.getShort(6);
+            for (int i = 0; i < count; i++) {
+                int entry = 8 + i * 10;
+                short id = data.getShort(entry);
+                int offset = data.getInt(entry + 2);
+                int length = data.getInt(entry + 6);
+                if (id < 1 || id > LevelCompiler.SECTION_COUNT || offset < 0 || length < 4
+                        || offset + length > data.limit()) {
+                    throw new IOException("Damaged section table");
+                }
+                offsets[id] = offset;
+                lengths[id] = length;
+            }
+        } catch (IndexOutOfBoundsException e) {
+            throw new IOException("Truncated compiled level", e);
+        }
+        if (offsets[LevelCompiler.SECTION_META] == 0) throw new IOException("Compiled level has no metadata");
+    }
+
+    /** @return the level's name, background and player start. */
+    public synchronized Meta getMeta() {
+        if (meta == null) {
+            meta = decode(LevelCompiler.SECTION_META, in -> {
+                in.getInt(); // Record count
+                return new Meta(in.getInt(), string(in.getShort()), string(in.getShort()), string(in.getShort()),
+                        string(in.getShort()), in.getFloat(), in.getFloat());
+            });
+        }
+        return meta;
+    }
+
+    /** @return static boxes as x, y, half width, half height for each box. */
+    public synchronized float[] getBoxes() {
+        if (boxes == null) boxes = floats(LevelCompiler.SECTION_BOXES, 4);
+        return boxes;
+    }
+
+    /** @return the randomly placed platform fields. */
+    public synchronized RandomPlatforms[] getRandomPlatforms() {
+        if (randomPlatforms == null) {
+            randomPlatforms = decode(LevelCompiler.SECTION_RANDOM_PLATFORMS, in -> {
+                RandomPlatforms[] fields = new RandomPlatforms[in == null ? 0 : in.getInt()];
+                for (int i = 0; i < fields.length; i++) {
+                    fields[i] = new RandomPlatforms(in.getInt(), in.getFloat(), in.getFloat(), in.getFloat(),
+                            in.getFloat(), in.getFloat(), in.getFloat(), in.getFloat());
+                }
+                return fields;
+            });
+        }
+        return randomPlatforms;
+    }
+
+    /** @return the paths of the moving platforms. */
+    public synchronized MovingPath[] getMovingPlatforms() {
+        if (moving == null) {
+            moving = decode(LevelCompiler.SECTION_MOVING, in -> {
+                MovingPath[] paths = new MovingPath[in == null ? 0 : in.getInt()];
+                for (int i = 0; i < paths.length; i++) {
+                    boolean loop = in.get() != 0;
+                    float speed = in.getFloat();
+                    float[] waypoints = new float[in.getShort() * 2];
+                    for (int k = 0; k < waypoints.length; k++) {
+                        waypoints[k] = in.getFloat();
+                    }
+                    paths[i] = new MovingPath(waypoints, speed, loop);
+                }
+                return paths;
+            });
+        }
+        return moving;
+    }
+
+    /** @return entities placed at fixed positions (area of zero size). */
+    public synchronized Placement[] getEntities() {
+        if (entities == null) {
+            entities = decode(LevelCompiler.SECTION_ENTITIES, in -> {
+                Placement[] placed = new Placement[in == null ? 0 : in.getInt()];
+                for (int i = 0; i < placed.length; i++) {
+                    String type = entityType(in.getShort());
+                    float x = in.getFloat();
+                    float y = in.getFloat();
+                    placed[i] = new Placement(type, 0, 0, x, x, y, y);
+                }
+                return placed;
+            });
+        }
+        return entities;
+    }
+
+    /** @return entities placed once at a random position in an area. */
+    public synchronized Placement[] getScatters() {
+        if (scatters == null) {
+            scatters = decode(LevelCompiler.SECTION_SCATTER, in -> {
+                Placement[] placed = new Placement[in == null ? 0 : in.getInt()];
+                for (int i = 0; i < placed.length; i++) {
+                    placed[i] = new Placement(entityType(in.getShort()), 0, 0,
+                            in.getFloat(), in.getFloat(), in.getFloat(), in.getFloat());
+                }
+                return placed;
+            });
+        }
+        return scatters;
+    }
+
+    /** @return entities spawned repeatedly at random positions in an area. */
+    public synchronized Placement[] getSpawners() {
+        if (spawners == null) {
+            spawners = decode(LevelCompiler.SECTION_SPAWNERS, in -> {
+                Placement[] placed = new Placement[in == null ? 0 : in.getInt()];
+                for (int i = 0; i < placed.length; i++) {
+                    placed[i] = new Placement(entityType(in.getShort()), in.getInt(), in.getInt(),
+                            in.getFloat(), in.getFloat(), in.getFloat(), in.getFloat());
+                }
+                return placed;
+            });
+        }
+        return spawners;
+    }
+
+    /** @return what happens when the player touches each kind of entity. */
+    public synchronized Rule[] getRules() {
+        if (rules == null) {
+            rules = decode(LevelCompiler.SECTION_RULES, in -> {
+                Rule[] decoded = new Rule[in == null ? 0 : in.getInt()];
+                for (int i = 0; i < decoded.length; i++) {
+                    byte kind = in.get();
+                    String type = entityType(in.getShort());
+                    short value = in.getShort();
+                    decoded[i] = kind == LevelCompiler.RULE_HAZARD
+                            ? new Rule(kind, type, string(value), 0)
+                            : new Rule(kind, type, null, value);
+                }
+                return decoded;
+            });
+        }
+        return rules;
+    }
+
+    /** @return how the level's physics is stepped; {@link StepConfig#DEFAULT} unless the level sets it. */
+    public synchronized StepConfig getStepConfig() {
+        if (stepConfig == null) {
+            stepConfig = decode(LevelCompiler.SECTION_PHYSICS, in -> {
+                if (in == null) return StepConfig.DEFAULT;
+                in.getInt(); // Record count
+                return new StepConfig(in.getInt(), in.getFloat(), in.getInt(), in.getInt(), in.getFloat());
+            });
+        }
+        return stepConfig;
+    }
+
+    /** @return the goals that finish the level, all of which must be met. */
+    public synchronized Objective[] getObjectives() {
+        if (objectives == null) {
+            objectives = decode(LevelCompiler.SECTION_OBJECTIVES, in -> {
+                Objective[] goals = new Objective[in == null ? 0 : in.getInt()];
+                for (int i = 0; i < goals.length; i++) {
+                    goals[i] = new Objective(in.get(), in.getInt());
+                }
+                return goals;
+            });
+        }
+        return objectives;
+    }
+
+    /** Decodes a section from a view of it, which is null if the level does not have it. */
+    private interface Decoder<T> {
+        T decode(ByteBuffer in);
+    }
+
+    /**
+     * Decodes a section, reporting a damaged one.
+     *
+     * @throws UncheckedIOException if the section is truncated or refers to a missing string or an unknown entity type.
+     */
+    private <T> T decode(short id, Decoder<T> decoder) {
+        try {
+            return decoder.decode(section(id));
+        } catch (BufferUnderflowException | IndexOutOfBoundsException | NegativeArraySizeException | NullPointerException
+                 | IllegalArgumentException e) {
+            throw new UncheckedIOException(new IOException("Damaged section " + id + " in compiled level", e));
+        }
+    }
+
+    /** @return a view of a section after its table entry, ending with the section, or null if the level does not have it. */
+    private ByteBuffer section(short id) {
+        if (offsets[id] == 0) return null;
+        return data.duplicate().limit(offsets[id] + lengths[id]).position(offsets[id]);
+    }
+
+    private float[] floats(short id, int stride) {
+        return decode(id, in -> {
+            float[] values = new float[in == null ? 0 : in.getInt() * stride];
+            for (int i = 0; i < values.length; i++) {
+                values[i] = in.getFloat();
+            }
+            return values;
+        });
+    }
+
+    /** @return the entity type named by the string at an index in the string table. */
+    private String entityType(short index) {
+        String type = string(index);
+        if (!DataLevel.isEntityType(type)) throw new IllegalArgumentException("Unknown entity type " + type);
+        return type;
+    }
+
+    /** @return the string at an index in the string table, or null for -1. */
+    private String string(short index) {
+        if (index < 0) return null;
+        if (strings == null) {
+            strings = decode(LevelCompiler.SECTION_STRINGS, in -> {
+                String[] table = new String[in.getInt()];
+                for (int i = 0; i < table.length; i++) {
+                    byte[] utf = new byte[in.getShort() & 0xFFFF];
+                    in.get(utf);
+                    table[i] = new String(utf, StandardCharsets.UTF_8);
+                }
+                return table;
+            });
+        }
+        return strings[index];
+    }
+
+    /** Level-wide settings from the META section. */
+    public static final class Meta {
+        public final int number;
+        public final String name;
+        public final String background;
+        public final String music;          // May be null
+        public final String description;    // May be null
+        public final float playerX, playerY;
+
+        Meta(int number, String name, String background, String music, String description,
+             float playerX, float playerY) {
+            this.number = number;
+            this.name = name;
+            this.background = background;
+            this.music = music;
+            this.description = description;
+            this.playerX = playerX;
+            this.playerY = playerY;
+        }
+    }
+
+    /** A goal the player must meet to finish the level. */
+    public static final class Objective {
+        public final byte kind;     // LevelCompiler.OBJECTIVE_CREDITS, OBJECTIVE_DEFEAT or OBJECTIVE_BOSS
+        public final int value;     // Credits or enemies needed; 1 for the boss
+
+        Objective(byte kind, int value) {
+            this.kind = kind;
+            this.value = value;
+        }
+    }
+
+    /** A number of platforms placed at random, kept a minimum distance apart. */
+    public static final class RandomPlatforms {
+        public final int count;
+        public final float xMin, xMax, yMin, yMax;
+        public final float halfWidthMin, halfWidthMax;
+        public final float spacing;
+
+        RandomPlatforms(int count, float xMin, float xMax, float yMin, float yMax,
+                        float halfWidthMin, float halfWidthMax, float spacing) {
+            this.count = count;
+            this.xMin = xMin;
+            this.xMax = xMax;
+            this.yMin = yMin;
+            this.yMax = yMax;
+            this.halfWidthMin = halfWidthMin;
+            this.halfWidthMax = halfWidthMax;
+            this.spacing = spacing;
+        }
+    }
+
+    /** The path of one moving platform. */
+    public static final class MovingPath {
+        public final float[] waypoints;     // x0, y0, x1, y1, ...
+        public final float speed;           // World units per step
+        public final boolean loop;          // Round the points rather than back and forth
+
+        MovingPath(float[] waypoints, float speed, boolean loop) {
+            this.waypoints = waypoints;
+            this.speed = speed;
+            this.loop = loop;
+        }
+    }
+
+    /** Where, and for spawners when, an entity type is placed. */
+    public static final class Placement {
+        public final String type;
+        public final int delay, interval;   // Steps; spawners only
+        public final float xMin, xMax, yMin, yMax;
+
+        Placement(String type, int delay, int interval, float xMin, float xMax, float yMin, float yMax) {
+            this.type = type;
+            this.delay = delay;
+            this.interval = interval;
+            this.xMin = xMin;
+            this.xMax = xMax;
+            this.yMin = yMin;
+            this.yMax = yMax;
+        }
+    }
+
+    /** A hazard (costs a life, optionally with a sound) or a pickup (gives credits). */
+    public static final class Rule {
+        public final byte kind;             // LevelCompiler.RULE_HAZARD or RULE_PICKUP
+        public final String type;
+        public final String sound;          // Hazards only; may be null
+        public final int credits;           // Pickups only
+
+        Rule(byte kind, String type, String sound, int credits) {
+            this.kind = kind;
+            this.type = type;
+            this.sound = sound;
+            this.credits = credits;
+        }
+    }
+}
@@ -0,0 +1,244 @@
+package game;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * ConvexDecomposer splits a simple polygon outline, convex or not, into convex pieces that
+ * {@code PolygonShape} accepts, so a concave outline becomes one body with a few fixtures.
+ *
+ * The outline is triangulated by ear clipping, then neighbouring pieces are merged across their
+ * shared edges whenever the result is still convex and within {@link #MAX_VERTICES}
+ * (Hertel-Mehlhorn). That gives at most four times the optimal number of pieces, and usually
+ * the optimum for the hand-drawn outlines used in this game.
+ *
+ * Coordinates are flat x, y lists, in the same form as the {@code PolygonShape(float...)} constructor.
+ */
+public final class ConvexDecomposer {
+
+    /** Most vertices a polygon fixture may have (the physics engine's limit). */
+    public static final int MAX_VERTICES = 8;
+
+    private static final float EPSILON = 1e-6f;
+
+    private ConvexDecomposer() {
+    }
+
+    /**
+     * Splits an outline into convex pieces.
+     *
+     * @param coords the outline as x0, y0, x1, y1, ...; clockwise or anticlockwise, not closed.
+     * @return the pieces, each anticlockwise with 3 to {@link #MAX_VERTICES} vertices.
+     * @throws IllegalArgumentException if there are fewer than three points or the outline crosses itself.
+     */
+    public static List<float[]> decompose(float[] coords) {
+        int n = coords.length / 2;
+        if (n < 3) {
+            throw new IllegalArgumentException("An outline needs at least 3 points");
+        }
+        if (crossesItself(coords)) {
+            throw new IllegalArgumentException("The outline crosses itself");
+        }
+        float[] x = new float[n];
+        float[] y = new float[n];
+        boolean clockwise = signedArea(coords) < 0;
+        for (int i = 0; i < n; i++) {
+            int src = clockwise ? n - 1 - i : i; // Work anticlockwise throughout
+            x[i] = coords[2 * src];
+            y[i] = coords[2 * src + 1];
+        }
+
+        List<List<Integer>> pieces = triangulate(x, y);
+        merge(pieces, x, y);
+
+        List<float[]> result = new ArrayList<>(pieces.size());
+        for (List<Integer> piece : pieces) {
+            float[] polygon = new float[piece.size() * 2];
+            for (int i = 0; i < piece.size(); i++) {
+                polygon[2 * i] = x[piece.get(i)];
+                polygon[2 * i + 1] = y[piece.get(i)];
+            }
+            result.add(polygon);
+        }
+        return result;
+    }
+
+    /**
+     * Checks whether an outline can be used as a single fixture as it is.
+     *
+     * @param coords the outline as x0, y0, x1, y1, ...
+     * @return true if it is convex and has no more than {@link #MAX_VERTICES} vertices.
+     */
+    public static boolean isConvex(float[] coords) {
+        int n = coords.length / 2;
+        if (n < 3 || n > MAX_VERTICES) return false;
+        float sign = Math.signum(signedArea(coords));
+        for (int i = 0; i < n; i++) {
+            int a = (i + n - 1) % n, c = (i + 1) % n;
+            float turn = cross(coords[2 * a], coords[2 * a + 1], coords[2 * i], coords[2 * i + 1],
+                    coords[2 * c], coords[2 * c + 1]);
+            if (turn * sign < -EPSILON) return false;
+        }
+        return true;
+    }
+
+    /** Ear clipping: repeatedly cuts off a convex corner with no other vertex inside it. */
+    private static List<List<Integer>> triangulate(float[] x, float[] y) {
+        List<Integer> remaining = new ArrayList<>();
+        for (int i = 0; i < x.length; i++) {
+            remaining.add(i);
+        }
+        List<List<Integer>> triangles = new ArrayList<>();
+
+        while (remaining.size() > 3) {
+            int size = remaining.size();
+            int ear = -1;
+            int flat = -1;
+            for (int i = 0; i < size && ear < 0; i++) {
+                int a = remaining.get((i + size - 1) % size);
+                int b = remaining.get(i);
+                int c = remaining.get((i + 1) % size);
+                float turn = cross(x[a], y[a], x[b], y[b], x[c], y[c]);
+                if (Math.abs(turn) <= EPSILON) {
+                    if (flat < 0) flat = i;
+                } else if (turn > 0 && isEmpty(remaining, a, b, c, x, y)) {
+                    ear = i;
+                }
+            }
+            if (ear >= 0) {
+                int a = remaining.get((ear + size - 1) % size);
+                int c = remaining.get((ear + 1) % size);
+                triangles.add(new ArrayList<>(List.of(a, remaining.get(ear), c)));
+                remaining.remove(ear);
+            } else if (flat >= 0) {
+                remaining.remove(flat); // A point on a straight edge or a repeated point adds nothing
+            } else {
+                throw new IllegalArgumentException("The outline crosses itself");
+            }
+        }
+        int a = remaining.get(0), b = remaining.get(1), c = remaining.get(2);
+        if (cross(x[a], y[a], x[b], y[b], x[c], y[c]) > EPSILON) {
+            triangles.add(new ArrayList<>(remaining));
+        }
+        return triangles;
+    }
+
+    /** @return true if no remaining vertex other than the corners lies in triangle a, b, c. */
+    private static boolean isEmpty(List<Integer> remaining, int a, int b, int c, float[] x, float[] y) {
+        for (int p : remaining) {
+            if (p == a || p == b || p == c) continue;
+            if ((x[p] == x[a] && y[p] == y[a]) || (x[p] == x[b] && y[p] == y[b]) || (x[p] == x[c] && y[p] == y[c])) {
+                continue; // A repeated point at a corner
+            }
+            if (cross(x[a], y[a], x[b], y[b], x[p], y[p]) >= -EPSILON
+                    && cross(x[b], y[b], x[c], y[c], x[p], y[p]) >= -EPSILON
+                    && cross(x[c], y[c], x[a], y[a], x[p], y[p]) >= -EPSILON) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Hertel-Mehlhorn: removes shared edges between pieces while the union stays convex and small enough. */
+    private static void merge(List<List<Integer>> pieces, float[] x, float[] y) {
+        boolean merged = true;
+        while (merged) {
+            merged = false;
+            search:
+            for (int i = 0; i < pieces.size(); i++) {
+                for (int j = i + 1; j < pieces.size(); j++) {
+                    List<Integer> union = union(pieces.get(i), pieces.get(j));
+                    if (union != null && union.size() <= MAX_VERTICES && isConvex(union, x, y)) {
+                        pieces.set(i, union);
+                        pieces.remove(j);
+                        merged = true;
+                        break search;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Joins two anticlockwise pieces along an edge they share.
+     *
+     * @return the joined piece, or null if they do not share an edge.
+     */
+    private static List<Integer> union(List<Integer> p, List<Integer> q) {
+        int np = p.size(), nq = q.size();
+        for (int i = 0; i < np; i++) {
+            int a = p.get(i), b = p.get((i + 1) % np);
+            for (int j = 0; j < nq; j++) {
+                if (q.get(j) != b || q.get((j + 1) % nq) != a) continue;
+                // p from b round to a, then q's vertices between a and b
+                List<Integer> union = new ArrayList<>(np + nq - 2);
+                for (int k = 0; k < np; k++) {
+                    union.add(p.get((i + 1 + k) % np));
+                }
+                for (int k = 2; k < nq; k++) {
+                    union.add(q.get((j + k) % nq));
+                }
+                return union;
+            }
+        }
+        return null;
+    }
+
+    private static boolean isConvex(List<Integer> piece, float[] x, float[] y) {
+        int n = piece.size();
+        for (int i = 0; i < n; i++) {
+            int a = piece.get((i + n - 1) % n), b = piece.get(i), c = piece.get((i + 1) % n);
+            if (cross(x[a], y[a], x[b], y[b], x[c], y[c]) < -EPSILON) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Checks an outline for edges that cross.
+     *
+     * @param c the outline as x0, y0, x1, y1, ...
+     * @return true if any two edges that are not neighbours intersect.
+     */
+    static boolean crossesItself(float[] c) {
+        int n = c.length / 2;
+        for (int i = 0; i < n; i++) {
+            int i2 = (i + 1) % n;
+            for (int j = i + 2; j < n; j++) {
+                int j2 = (j + 1) % n;
+                if (j2 == i) continue; // The last edge meets the first
+                if (intersects(c[2 * i], c[2 * i + 1], c[2 * i2], c[2 * i2 + 1],
+                        c[2 * j], c[2 * j + 1], c[2 * j2], c[2 * j2 + 1])) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /** @return true if segments ab and cd properly cross (touching at an end does not count). */
+    private static boolean intersects(float ax, float ay, float bx, float by,
+                                      float cx, float cy, float dx, float dy) {
+        float d1 = cross(ax, ay, bx, by, cx, cy);
+        float d2 = cross(ax, ay, bx, by, dx, dy);
+        float d3 = cross(cx, cy, dx, dy, ax, ay);
+        float d4 = cross(cx, cy, dx, dy, bx, by);
+        return ((d1 > EPSILON && d2 < -EPSILON) || (d1 < -EPSILON && d2 > EPSILON))
+                && ((d3 > EPSILON && d4 < -EPSILON) || (d3 < -EPSILON && d4 > EPSILON));
+    }
+
+    /** @return twice the signed area; positive for anticlockwise outlines. */
+    private static float signedArea(float[] coords) {
+        int n = coords.length / 2;
+        float area = 0;
+        for (int i = 0; i < n; i++) {
+            int j = (i + 1) % n;
+            area += coords[2 * i] * coords[2 * j + 1] - coords[2 * j] * coords[2 * i + 1];
+        }
+        return area;
+    }
+
+    /** @return the z component of (b - a) x (c - b); positive when a, b, c turn left. */
+    private static float cross(float ax, float ay, float bx, float by, float cx, float cy) {
+        return (bx - ax) * (cy - by) - (by - ay) * (cx - bx);
+    }
+}
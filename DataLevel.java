@@ -0,0 +1,268 @@
+package game;
+
+import city.cs.engine.*;
+import org.jbox2d.common.Vec2;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiFunction;
+
+/**
+ * DataLevel is a level built from a {@link CompiledLevel} rather than from code.
+ * Everything placed in the level, its objective and its collision rules come from the level file,
+ * so new levels only need a new file in the levels directory.
+ */
+public class DataLevel extends GameLevel {
+
+    // Entity types a level file can name, with how to build them
+    private static final Map<String, EntityType> ENTITY_TYPES = new HashMap<>();
+
+    static {
+        register("Enemy", Enemy.class, (level, game) -> new Enemy(level));
+        register("Level2Enemy", Level2Enemy.class, Level2Enemy::new);
+        register("Level2Enemy_2", Level2Enemy_2.class, Level2Enemy_2::new);
+        register("BossEnemy", BossEnemy.class, BossEnemy::new);
+        register("Collectible", Collectible.class, (level, game) -> new Collectible(level));
+    }
+
+    private final CompiledLevel data;
+    private final CompiledLevel.Meta meta;
+    private final LevelObjectives objectives;
+
+    /**
+     * Builds a level from its compiled description.
+     *
+     * @param game The main game instance.
+     * @param seed Seed for the level's random layout and spawns.
+     * @param data The compiled level, usually from {@link LevelCache}.
+     */
+    public DataLevel(Game game, long seed, CompiledLevel data) {
+        super(game, seed);
+        this.data = data;
+        this.meta = data.getMeta();
+        this.objectives = new LevelObjectives(data.getObjectives());
+        objectives.setCompletionListener(this::completed);
+        setStepConfig(data.getStepConfig());
+        populate(game);
+    }
+
+    /**
+     * Places everything the level file describes. Random placements are made in file order,
+     * so the same seed always gives the same layout.
+     */
+    @Override
+    protected void populate(Game game) {
+        student = new Student(this, game);
+        student.setPosition(new Vec2(meta.playerX, meta.playerY));
+
+        float[] boxes = data.getBoxes();
+        for (int i = 0; i < boxes.length; i += 4) {
+            StaticBody box = new StaticBody(this, new BoxShape(boxes[i + 2], boxes[i + 3]));
+            box.setPosition(new Vec2(boxes[i], boxes[i + 1]));
+        }
+
+        for (CompiledLevel.RandomPlatforms field : data.getRandomPlatforms()) {
+            placeRandomPlatforms(field);
+        }
+
+        for (CompiledLevel.MovingPath path : data.getMovingPlatforms()) {
+            new MovingPlatform(this, path.waypoints, path.speed, path.loop);
+        }
+
+        for (CompiledLevel.Placement entity : data.getEntities()) {
+            spawn(entity.type, new Vec2(entity.xMin, entity.yMin));
+        }
+        for (CompiledLevel.Placement scatter : data.getScatters()) {
+            spawnInArea(scatter);
+        }
+
+        CompiledLevel.Placement[] spawners = data.getSpawners();
+        for (int i = 0; i < spawners.length; i++) {
+            CompiledLevel.Placement spawner = spawners[i];
+            getScheduler().scheduleRepeating(spawnerName(spawner.type, i), spawner.delay, spawner.interval,
+                    () -> spawnInArea(spawner));
+        }
+
+        // Collision rules for the player
+        CompiledLevel.Rule[] rules = data.getRules();
+        List<Class<? extends Body>> ruleTypes = new ArrayList<>();
+        for (CompiledLevel.Rule rule : rules) {
+            ruleTypes.add(ENTITY_TYPES.get(rule.type).type);
+        }
+        student.addCollisionListener(e -> {
+            for (int i = 0; i < rules.length; i++) {
+                if (ruleTypes.get(i).isInstance(e.getOtherBody())) {
+                    applyRule(rules[i], e.getOtherBody());
+                }
+            }
+        });
+    }
+
+    /**
+     * Places up to a number of platforms in a field with {@link PlatformGenerator}, spaced apart
+     * and each reachable with a running jump from the ground the player starts on or another platform.
+     */
+    private void placeRandomPlatforms(CompiledLevel.RandomPlatforms field) {
+        PlatformGenerator generator = new PlatformGenerator(student.getJumpSpeed(true),
+                Student.getMoveSpeed(true), getGravity());
+
+        // The ground is the highest box under the player's start, or the start itself if there is none
+        float groundX = meta.playerX, groundTop = meta.playerY, groundHalfWidth = 0;
+        float best = Float.NEGATIVE_INFINITY;
+        float[] boxes = data.getBoxes();
+        for (int i = 0; i < boxes.length; i += 4) {
+            float top = boxes[i + 1] + boxes[i + 3];
+            if (top <= meta.playerY && top > best && Math.abs(meta.playerX - boxes[i]) <= boxes[i + 2]) {
+                best = top;
+                groundX = boxes[i];
+                groundTop = top;
+                groundHalfWidth = boxes[i + 2];
+            }
+        }
+
+        float[] platforms = generator.generate(random, field, groundX, groundTop, groundHalfWidth);
+        for (int i = 0; i < platforms.length; i += 3) {
+            StaticBody platform = new StaticBody(this, new BoxShape(platforms[i + 2], PlatformGenerator.HALF_HEIGHT));
+            platform.setPosition(new Vec2(platforms[i], platforms[i + 1]));
+        }
+        if (platforms.length / 3 < field.count) {
+            System.out.println("Level " + meta.number + ": room for " + platforms.length / 3 + " of "
+                    + field.count + " reachable platforms");
+        }
+    }
+
+    /** Spawns an entity at a random position in a placement's area. */
+    private void spawnInArea(CompiledLevel.Placement area) {
+        float x = area.xMin + random.nextFloat() * (area.xMax - area.xMin);
+        float y = area.yMin + random.nextFloat() * (area.yMax - area.yMin);
+        spawn(area.type, new Vec2(x, y));
+    }
+
+    /**
+     * Creates an entity of a named type.
+     *
+     * @param type     the entity type, as named in level files.
+     * @param position where to place it.
+     * @return the new body.
+     */
+    public Body spawn(String type, Vec2 position) {
+        Body body = ENTITY_TYPES.get(type).factory.apply(this, game);
+        body.setPosition(position);
+        return body;
+    }
+
+    /** Applies a collision rule to the body the player touched. */
+    private void applyRule(CompiledLevel.Rule rule, Body body) {
+        if (rule.kind == LevelCompiler.RULE_PICKUP) {
+            student.incrementCredits(rule.credits);  // Give points
+            student.activateDoubleJump();            // Grant power-up
+            body.destroy();                          // Remove from world
+        } else {
+            game.loseLife();
+            if (rule.sound != null) {
+                game.getSoundManager().playSound(rule.sound);
+            }
+        }
+    }
+
+    /**
+     * Names a spawner's task after its entity type, e.g. "collectibleSpawner",
+     * so snapshots restore the spawner's timing.
+     */
+    private static String spawnerName(String type, int index) {
+        String name = Character.toLowerCase(type.charAt(0)) + type.substring(1) + "Spawner";
+        return index == 0 ? name : name + index;
+    }
+
+    @Override
+    public void enemyDefeated(Body enemy) {
+        objectives.enemyDefeated(enemy instanceof BossEnemy);
+    }
+
+    @Override
+    public void creditsChanged(int credits) {
+        objectives.creditsChanged(credits);
+    }
+
+    @Override
+    public int getEnemiesDefeated() {
+        return objectives.getDefeated();
+    }
+
+    @Override
+    protected void writeState(ByteBuffer out) {
+        out.putInt(objectives.getDefeated());
+        out.put((byte) (objectives.isBossDefeated() ? 1 : 0));
+    }
+
+    @Override
+    protected void readState(ByteBuffer in) {
+        // Saves from before levels were data files may hold less (or nothing) for some levels
+        int defeated = in.remaining() >= 4 ? in.getInt() : 0;
+        boolean boss = in.hasRemaining() && in.get() != 0;
+        objectives.restore(defeated, boss);
+    }
+
+    /**
+     * Determines if the level is complete. The answer is kept up to date as the player's credits and
+     * defeated enemies change, so this costs nothing to call every step.
+     *
+     * @return true once every objective in the level file is met.
+     */
+    @Override
+    public boolean isComplete() {
+        return objectives.isComplete();
+    }
+
+    @Override
+    public String getBackgroundImage() {
+        return meta.background;
+    }
+
+    @Override
+    public int getNumber() {
+        return meta.number;
+    }
+
+    @Override
+    public String getMusic() {
+        return meta.music;
+    }
+
+    @Override
+    public String getObjective() {
+        if (meta.description != null) return meta.description;
+        return objectives.describe();
+    }
+
+    /** @return the level's name from its file. */
+    public String getName() {
+        return meta.name;
+    }
+
+    /**
+     * @param type an entity type name.
+     * @return true if level files can place entities of this type.
+     */
+    public static boolean isEntityType(String type) {
+        return ENTITY_TYPES.containsKey(type);
+    }
+
+    private static void register(String name, Class<? extends Body> type, BiFunction<GameLevel, Game, Body> factory) {
+        ENTITY_TYPES.put(name, new EntityType(type, factory));
+    }
+
+    /** An entity class and how to create one in a level. */
+    private static final class EntityType {
+        final Class<? extends Body> type;
+        final BiFunction<GameLevel, Game, Body> factory;
+
+        EntityType(Class<? extends Body> type, BiFunction<GameLevel, Game, Body> factory) {
+            this.type = type;
+            this.factory = factory;
+        }
+    }
+}
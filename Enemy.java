@@ -14,10 +14,11 @@ public class Enemy extends Walker implements StepListener, CollisionListener {
     private static final Shape enemyShape = new BoxShape(1, 2);
     private static final BodyImage enemyImage = new BodyImage("data/enemy.png", 4f);
 
-    private float moveSpeed = 2f; // Movement speed of the enemy
+    private static final Tuning.FloatValue MOVE_SPEED = Tuning.floatValue("enemy.moveSpeed", 2f); // Movement speed of the enemy
+    private static final Tuning.FloatValue JUMP_FORCE = Tuning.floatValue("enemy.jumpForce", 10f); // Jump force for the enemy
+
     private boolean movingRight = true;  // Flag to track movement direction
-    private float jumpForce = 10f;  // Jump force for the enemy
-    private SoundManager soundManager;
+    private final Vec2 velocity = new Vec2(); // Reused every step, as the engine copies it
 
     /**
      * Constructor: Creates an enemy in the given world.
@@ -25,12 +26,12 @@ public class Enemy extends Walker implements StepListener, CollisionListener {
      */
     public Enemy(World world) {
         super(world);
-        this.soundManager = new SoundManager();
         new SolidFixture(this, enemyShape);
         addImage(enemyImage);
 
-        // Register the Enemy as a StepListener to enable movement logic
-        world.addStepListener(this);
+        // Register the Enemy as a StepListener to enable movement logic, until it is destroyed
+        ((GameLevel) world).addStepListener(StepPipeline.Phase.AI, this);
+        ((GameLevel) world).addEnemy(this);
 
         // Register as a CollisionListener to detect interactions with other objects
         addCollisionListener(this);
@@ -43,7 +44,7 @@ public class Enemy extends Walker implements StepListener, CollisionListener {
     public void changeApperance() {
         removeAllImages();
         addImage(new BodyImage("data/enemy2.png", 4f)); // Change to a different enemy sprite
-        soundManager.playSound("data/enemy_hit_sound.wav");
+        ((GameLevel) getWorld()).getGame().getSoundManager().playSound("data/enemy_hit_sound.wav"); // Shared mixer
     }
 
     /**
@@ -62,14 +63,11 @@ public class Enemy extends Walker implements StepListener, CollisionListener {
         }
 
         // Apply movement velocity depending on the direction
-        if (movingRight) {
-            setLinearVelocity(new Vec2(moveSpeed, getLinearVelocity().y));
-        } else {
-            setLinearVelocity(new Vec2(-moveSpeed, getLinearVelocity().y));
-        }
+        velocity.set(movingRight ? MOVE_SPEED.get() : -MOVE_SPEED.get(), getLinearVelocity().y);
+        setLinearVelocity(velocity);
 
         // Randomly jump every few steps (1% chance per step)
-        if (Math.random() < 0.01) {
+        if (((GameLevel) getWorld()).getRandom().nextFloat() < 0.01f) {
             jump();
         }
     }
@@ -78,7 +76,8 @@ public class Enemy extends Walker implements StepListener, CollisionListener {
      * Makes the enemy jump by applying vertical velocity.
      */
     public void jump() {
-        setLinearVelocity(new Vec2(getLinearVelocity().x, jumpForce));
+        velocity.set(getLinearVelocity().x, JUMP_FORCE.get());
+        setLinearVelocity(velocity);
     }
 
     /**
@@ -88,7 +87,7 @@ public class Enemy extends Walker implements StepListener, CollisionListener {
     @Override
     public void collide(CollisionEvent e) {
         // If the enemy collides with a static object (e.g., walls), it changes direction
-        if (e.getOtherBody() instanceof StaticBody) {
+        if (e.getOtherBody() instanceof StaticBody || e.getOtherBody() instanceof MovingPlatform) {
             movingRight = !movingRight;
         }
 
@@ -99,6 +98,16 @@ public class Enemy extends Walker implements StepListener, CollisionListener {
         }
     }
 
+    /** @return true if the enemy is currently walking right. */
+    public boolean isMovingRight() {
+        return movingRight;
+    }
+
+    /** @param movingRight the walking direction, restored from a snapshot. */
+    public void setMovingRight(boolean movingRight) {
+        this.movingRight = movingRight;
+    }
+
     /**
      * Called before each physics step.
      * Moves the enemy every step.
@@ -31,6 +31,8 @@ public class Fireball extends DynamicBody implements CollisionListener {
 
         // Set velocity toward target direction
         setLinearVelocity(direction.mul(20)); // Speed multiplier
+        world.addFastBody(this);              // Fast enough to need sub-steps
+        world.addProjectile(this);
 
         addCollisionListener(this);
     }
@@ -46,7 +48,7 @@ public class Fireball extends DynamicBody implements CollisionListener {
         if (e.getOtherBody() instanceof Student) {
             game.loseLife();  // Player takes damage
             destroy();        // Fireball vanishes on impact
-        } else if (e.getOtherBody() instanceof StaticBody) {
+        } else if (e.getOtherBody() instanceof StaticBody || e.getOtherBody() instanceof MovingPlatform) {
             destroy();        // Disappears when hitting environment
         } else if (e.getOtherBody() instanceof Walker && !(e.getOtherBody() instanceof BossEnemy)) {
             destroy();        // Avoid hitting the boss itself or other walkers
@@ -3,17 +3,29 @@ package game;
 import java.awt.event.KeyListener;
 import javax.swing.*;
 import java.awt.event.ActionEvent;
-
-import org.jbox2d.common.Vec2;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Objects;
+import java.util.Properties;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 /**
  * The main Game class handles overall game logic such as level transitions,
  * life management, timer, pausing, sound management, saving/loading, etc.
  */
 public class Game {
+    private static final String LATENCY_REPORT_FILE = "latency-report.txt";
+    private static final String SNAPSHOT_REPORT_FILE = "snapshot-report.txt";
+    private static final float REWIND_SECONDS = 3f;
+    private static final String SAVE_FILE = "saves.dat";
+    private static final String REPLAY_FILE = "last-session.rpl";
+
     private int lives = 3;                      // Initial number of lives
     private int timeLeft = 120;                // Initial timer in seconds
-    private Timer gameTimer;                   // Swing Timer for countdown
+    private StepScheduler.Task countdownTask;  // Per-second countdown on the current level's scheduler
 
     private GameLevel currentLevel;            // Currently active level
     private GameView view;                     // Game view (GUI)
@@ -21,11 +33,31 @@ public class Game {
     private String playerName;                 // Player's name
     private boolean paused = false;            // Game pause state
     private PauseMenuPanel pauseMenu;          // Pause menu overlay panel
+    private final LatencyTracer latencyTracer = new LatencyTracer(); // Key press to screen timings
+    private final SnapshotHistory history = new SnapshotHistory(this); // Rewind and quick-save
+    private final boolean headless;            // Run without a window or sound, e.g. for benchmarks
+    private boolean gameOver = false;          // Set once endGame has run
+    private final InputRecorder recorder;      // Logs the session for replay; null when headless or replaying
+    private final ReplayPlayer replay;         // Recording being watched, or null when playing
+
+    private SaveContainer saves;               // Save slots, opened on first save or load
+    private HotReloader hotReloader;           // Watches level and tuning files; null when not playing live
+    private final LevelPreloader preloader = new LevelPreloader(this); // Builds the next level while this one is played
+
+    // Save slots are written and read here so the EDT never waits on the disk
+    private final ExecutorService saveExecutor = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "save-io");
+        t.setDaemon(true);
+        return t;
+    });
 
     /**
      * Constructor: Initializes sound, asks for player's name, and shows main menu.
      */
     public Game() {
+        headless = false;
+        replay = null;
+        Tuning.loadDefaultFile();
         soundManager = new SoundManager();
         soundManager.setVolume(-10.0f); // Default volume
 
@@ -34,37 +66,159 @@ public class Game {
             playerName = "Player";
         }
 
+        // Every session is recorded, and written out however the game exits
+        recorder = new InputRecorder(playerName, Tuning.getApplied());
+        Runtime.getRuntime().addShutdownHook(new Thread(this::writeReplay, "replay-writer"));
+
         new MainMenu(this); // Show the main menu
     }
 
+    /**
+     * Creates a game with no window, menu or sound output. Levels are built with
+     * {@link #createLevel(int, long)} and stepped directly by the caller.
+     *
+     * @param playerName the player's name.
+     */
+    public Game(String playerName) {
+        headless = true;
+        replay = null;
+        recorder = null;
+        Tuning.loadDefaultFile();
+        soundManager = new SoundManager(AudioMixer.silent());
+        this.playerName = playerName;
+    }
+
+    /**
+     * Creates a game that plays back a recorded session in a window at normal speed.
+     *
+     * @param replay the recording to play.
+     */
+    public Game(ReplayPlayer replay) {
+        headless = false;
+        recorder = null;
+        this.replay = replay;
+        Tuning.apply(replay.getTuning()); // The values recorded with the session, not today's file
+        soundManager = new SoundManager();
+        soundManager.setVolume(-10.0f);
+        playerName = replay.getPlayerName();
+        nextReplaySegment();
+    }
+
     /**
      * Starts the actual game after the main menu.
      */
     public void start() {
-        currentLevel = new Level1(this);
-        loadLevelMusic("data/background_level1.wav");
+        int first = LevelRegistry.first();
+        currentLevel = first < 0 ? null : createLevel(first, System.nanoTime());
+        if (currentLevel == null) {
+            System.out.println("There are no playable levels in the " + LevelCache.DIRECTORY + " directory.");
+            System.exit(1);
+        }
+        loadLevelMusic(currentLevel.getMusic());
 
-        view = new GameView(currentLevel, 800, 600, this);
+        showWindow();
         bindPauseKey();
 
-        JFrame frame = new JFrame("City Game - Player " + playerName);
+        // Controls
+        StudentController controller = new StudentController(this, currentLevel.getStudent());
+        view.addKeyListener(controller);
+        view.addFocusListener(controller);
+        view.addMouseListener(new MouseHandler(view));
+        view.requestFocus();
+
+        countdownTask = scheduleCountdown(currentLevel);
+        recorder.beginLevel(first, currentLevel.getSeed(), lives, timeLeft);
+        currentLevel.start();
+        history.attach(currentLevel);
+        prepareNextLevel();
+
+        // Edits to level and tuning files show up without restarting
+        hotReloader = HotReloader.start(this);
+    }
+
+    /** Creates the game window showing the current level. */
+    private void showWindow() {
+        view = new GameView(currentLevel, 800, 600, this);
+
+        JFrame frame = new JFrame("City Game - Player " + playerName + (replay != null ? " (replay)" : ""));
         frame.add(view);
         frame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
         frame.setResizable(true);
         frame.pack();
         frame.setVisible(true);
+    }
 
-        // Controls
-        StudentController controller = new StudentController(this, currentLevel.getStudent());
-        view.addKeyListener(controller);
-        view.addMouseListener(new MouseHandler(currentLevel, view));
-        view.requestFocus();
+    /**
+     * Switches to the next segment of the replay being watched, or ends the game after the last one.
+     */
+    private void nextReplaySegment() {
+        if (currentLevel != null) currentLevel.stop();
+        GameLevel level;
+        try {
+            level = replay.nextSegment(this);
+        } catch (IOException e) {
+            e.printStackTrace();
+            level = null;
+        }
+        if (level == null) {
+            System.out.println("Replay finished.");
+            endGame();
+            return;
+        }
 
+        loadLevelMusic(currentLevel.getMusic());
+        if (view == null) {
+            showWindow();
+        } else {
+            view.setWorld(currentLevel);
+            view.updateBackground();
+        }
+        bindPauseKey();
+        new StudentController(this, currentLevel.getStudent(), replay);
         currentLevel.start();
-        startCountdownTimer();
     }
 
-    /** Binds ESC key to toggle pause. */
+    /**
+     * Called by a replaying controller once its segment has no more recorded steps.
+     * A windowed replay moves on to the next segment; a headless replay is driven by its caller.
+     */
+    void replaySegmentFinished() {
+        if (replay != null && !headless) {
+            GameLevel finished = currentLevel;
+            SwingUtilities.invokeLater(() -> {
+                if (currentLevel == finished) nextReplaySegment(); // Only once per segment
+            });
+        }
+    }
+
+    /**
+     * Makes a level current without starting it, with the given lives and time, and schedules its
+     * countdown. Used when a level is driven by a replay rather than by the player.
+     *
+     * @param level    the level.
+     * @param lives    the player's lives.
+     * @param timeLeft the countdown in seconds.
+     */
+    void enterLevel(GameLevel level, int lives, int timeLeft) {
+        currentLevel = level;
+        this.lives = lives;
+        this.timeLeft = timeLeft;
+        countdownTask = scheduleCountdown(level);
+    }
+
+    /** Writes the recording of this session to last-session.rpl. */
+    private void writeReplay() {
+        try {
+            recorder.write(Path.of(REPLAY_FILE));
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Binds ESC key to toggle pause, F3 to export the performance reports,
+     * F5/F9 to quick-save and quick-load, and Backspace to rewind.
+     */
     private void bindPauseKey() {
         InputMap inputMap = view.getInputMap(JComponent.WHEN_IN_FOCUSED_WINDOW);
         ActionMap actionMap = view.getActionMap();
@@ -76,31 +230,128 @@ public class Game {
                 togglePause();
             }
         });
+
+        inputMap.put(KeyStroke.getKeyStroke("F3"), "exportLatency");
+        actionMap.put("exportLatency", new AbstractAction() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                exportReports();
+            }
+        });
+
+        if (replay != null) {
+            return; // Changing the world would make the replay diverge from the recording
+        }
+
+        inputMap.put(KeyStroke.getKeyStroke("F5"), "quickSave");
+        actionMap.put("quickSave", new AbstractAction() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                currentLevel.post(() -> {
+                    history.quickSave();
+                    System.out.println("Quick-saved.");
+                });
+            }
+        });
+
+        inputMap.put(KeyStroke.getKeyStroke("F9"), "quickLoad");
+        actionMap.put("quickLoad", new AbstractAction() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                quickLoad();
+            }
+        });
+
+        inputMap.put(KeyStroke.getKeyStroke("BACK_SPACE"), "rewind");
+        actionMap.put("rewind", new AbstractAction() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                currentLevel.post(() -> {
+                    if (history.rewind(REWIND_SECONDS)) {
+                        recordRestore();
+                        System.out.println("Rewound " + REWIND_SECONDS + " seconds.");
+                    }
+                });
+            }
+        });
     }
 
-    /** Starts the countdown timer and checks for level completion. */
-    private void startCountdownTimer() {
-        gameTimer = new Timer(1000, e -> {
-            if (!paused) {
-                if (timeLeft > 0) {
-                    timeLeft--;
+    /**
+     * Restores the quick-save between steps. A quick-save from another level
+     * switches level through the normal load path instead.
+     */
+    private void quickLoad() {
+        currentLevel.post(() -> {
+            ByteBuffer snapshot = history.getQuickSave();
+            if (snapshot == null) {
+                System.out.println("Nothing quick-saved yet (F5).");
+                return;
+            }
+            try {
+                if (WorldSnapshot.readHeader(snapshot).levelNumber == getCurrentLevelNumber()) {
+                    if (history.load(snapshot)) recordRestore();
                 } else {
-                    System.out.println("Time is up! Game Over!");
-                    gameTimer.stop();
-                    endGame();
-                }
-                if (currentLevel.isComplete()) {
-                    goToNextLevel();
+                    ByteBuffer copy = ByteBuffer.allocate(snapshot.remaining()).put(snapshot).flip();
+                    SwingUtilities.invokeLater(() -> applySnapshot(copy));
                 }
+            } catch (IOException e) {
+                e.printStackTrace();
             }
         });
-        gameTimer.start();
+    }
+
+    /** Starts a new replay segment from the current state, after the level was restored in place. */
+    private void recordRestore() {
+        if (recorder != null) {
+            recorder.beginSnapshot(WorldSnapshot.capture(this, currentLevel));
+            currentLevel.recordStepQuality(); // The level may be running below full quality
+        }
+    }
+
+    /** Writes the input latency histograms to latency-report.txt and the snapshot history costs to snapshot-report.txt. */
+    private void exportReports() {
+        try {
+            latencyTracer.exportReport(Path.of(LATENCY_REPORT_FILE));
+            System.out.println("Latency report written to " + LATENCY_REPORT_FILE);
+            Files.writeString(Path.of(SNAPSHOT_REPORT_FILE), history.report());
+            System.out.println("Snapshot report written to " + SNAPSHOT_REPORT_FILE);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Starts the countdown on a level's scheduler.
+     * The countdown runs in game time, so it stops whenever the world is paused.
+     *
+     * @return the countdown task.
+     */
+    private StepScheduler.Task scheduleCountdown(GameLevel level) {
+        return level.getScheduler().scheduleRepeating("countdown",
+                GameLevel.STEPS_PER_SECOND, GameLevel.STEPS_PER_SECOND, this::countdownTick);
+    }
+
+    /** Called once per second of game time by the countdown task. */
+    private void countdownTick() {
+        if (timeLeft > 0) {
+            timeLeft--;
+        } else {
+            System.out.println("Time is up! Game Over!");
+            countdownTask.cancel();
+            if (headless) {
+                endGame();
+            } else {
+                SwingUtilities.invokeLater(this::endGame); // Leave the world step before shutting down
+            }
+        }
     }
 
     /**
      * Loads background music for a specific level.
+     * Levels without music of their own keep the current track.
      */
     private void loadLevelMusic(String filePath) {
+        if (filePath == null) return;
         try {
             soundManager.loadBackgroundMusic(filePath);
         } catch (Exception e) {
@@ -109,6 +360,18 @@ public class Game {
         }
     }
 
+    /**
+     * Starts building the level after the current one in the background, if there is one.
+     */
+    private void prepareNextLevel() {
+        int next = LevelRegistry.next(getCurrentLevelNumber());
+        if (next >= 0) {
+            preloader.prepare(next, System.nanoTime());
+        } else {
+            preloader.discard();
+        }
+    }
+
     /**
      * Transitions to the next level if the current one is complete.
      */
@@ -119,29 +382,32 @@ public class Game {
         }
 
         currentLevel.stop();
-        soundManager.stopBackgroundMusic();
-
-        if (currentLevel instanceof Level1) {
-            currentLevel = new Level2(this);
-            loadLevelMusic("data/background_level2.wav");
-        } else if (currentLevel instanceof Level2) {
-            currentLevel = new Level3(this);
-            loadLevelMusic("data/background_level3.wav");
-        } else {
+
+        // The new level's music crossfades from the current track.
+        // The level is usually built already; if not, it is built here.
+        int next = LevelRegistry.next(getCurrentLevelNumber());
+        GameLevel nextLevel = next < 0 ? null : preloader.take(next);
+        if (nextLevel == null && next >= 0) nextLevel = createLevel(next, System.nanoTime());
+        if (nextLevel == null) {
             System.out.println("Congratulations! You completed the game!");
             endGame();
             return;
         }
+        currentLevel = nextLevel;
+        loadLevelMusic(currentLevel.getMusic());
 
-        // Update world and controls
+        // Update world and controls; everything that acts in steps is in place before the level starts
         view.setWorld(currentLevel);
         view.updateBackground();
         bindPauseKey();
+        countdownTask = scheduleCountdown(currentLevel);
+        resetPlayerState();
+        recorder.beginLevel(next, currentLevel.getSeed(), lives, timeLeft);
         currentLevel.start();
+        history.attach(currentLevel);
+        prepareNextLevel();
 
         SwingUtilities.invokeLater(() -> view.requestFocusInWindow());
-
-        resetPlayerState();
         System.out.println("Welcome to the next level!");
     }
 
@@ -149,15 +415,33 @@ public class Game {
      * Prints the current level's objective to the console.
      */
     private void printLevelObjective() {
-        if (currentLevel instanceof Level1) {
-            System.out.println("Collect at least 20 credits to move to level 2!");
-        } else if (currentLevel instanceof Level2) {
-            System.out.println("Defeat both enemies to proceed to level 3!");
-        } else if (currentLevel instanceof Level3) {
-            System.out.println("Defeat the boss enemy to win the game!");
-        } else {
-            System.out.println("Complete the level's objective to continue.");
+        System.out.println(currentLevel.getObjective());
+    }
+
+    /**
+     * Creates a level by number from the level files (see {@link GameLevel#load}).
+     *
+     * @param number the level number (1, 2, 3...).
+     * @param seed   seed for the level's random layout and spawns.
+     * @return the new level, or null if there is no level with that number.
+     */
+    public GameLevel createLevel(int number, long seed) {
+        GameLevel level = GameLevel.load(this, number, seed);
+        if (level != null) {
+            level.setCompletionListener(() -> levelCompleted(level));
         }
+        return level;
+    }
+
+    /**
+     * Called inside the step that completes a level's objective. The level stops at once, so no
+     * further step runs in it, and the next level is entered once the step has finished.
+     * Replays change level where the recording did, and headless callers drive levels themselves.
+     */
+    private void levelCompleted(GameLevel level) {
+        if (replay != null || headless || level != currentLevel) return;
+        level.stop();
+        SwingUtilities.invokeLater(this::goToNextLevel); // Switch worlds outside the step
     }
 
     /**
@@ -166,24 +450,54 @@ public class Game {
     private void resetPlayerState() {
         Student student = currentLevel.getStudent();
         if (student != null) {
-            student.setCredits(0);
+            currentLevel.post(() -> student.setCredits(0));
+            attachController(student);
+        }
+    }
 
-            for (KeyListener kl : view.getKeyListeners()) {
-                if (kl instanceof StudentController) {
-                    view.removeKeyListener(kl);
-                }
+    /** Replaces the keyboard controller with one for the given student. */
+    private void attachController(Student student) {
+        for (KeyListener kl : view.getKeyListeners()) {
+            if (kl instanceof StudentController) {
+                ((StudentController) kl).detach();  // Stop it sampling input on the old level
+                view.removeKeyListener(kl);
+                view.removeFocusListener((StudentController) kl);
             }
-
-            StudentController controller = new StudentController(this, student);
-            view.addKeyListener(controller);
         }
+
+        StudentController controller = new StudentController(this, student);
+        view.addKeyListener(controller);
+        view.addFocusListener(controller);
     }
 
-    /** Ends the game and exits. */
+    /** Ends the game and exits (headless games only stop). */
     private void endGame() {
+        if (gameOver) return;
+        gameOver = true;
         if (currentLevel != null) currentLevel.stop();
-        if (gameTimer != null) gameTimer.stop();
-        System.exit(0);
+        if (latencyTracer.getEventToFrame().getCount() > 0) exportReports();
+        soundManager.close(); // Flush the mixer (finishes the WAV file when headless)
+        saveExecutor.shutdown();
+        closeSaves();
+        if (hotReloader != null) hotReloader.close();
+        preloader.close();
+        if (!headless) System.exit(0);
+    }
+
+    /** Closes the save file once pending saves have been written. */
+    private void closeSaves() {
+        if (saves == null) return;
+        try {
+            saveExecutor.awaitTermination(5, java.util.concurrent.TimeUnit.SECONDS);
+            saves.close();
+        } catch (InterruptedException | IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /** @return true once the game has ended. */
+    public boolean isGameOver() {
+        return gameOver;
     }
 
     /** Reduces player's lives and checks for game over. */
@@ -196,78 +510,175 @@ public class Game {
         }
     }
 
-    /** Saves current game state to a file. */
+    /**
+     * Saves the whole world into a slot chosen by the player.
+     * The snapshot is taken immediately (the world is paused while the menu is open) and
+     * written to the save file on a background thread.
+     */
     public void saveGame() {
-        JFileChooser chooser = new JFileChooser();
-        if (chooser.showSaveDialog(view) == JFileChooser.APPROVE_OPTION) {
-            try (var out = new java.io.ObjectOutputStream(
-                    new java.io.FileOutputStream(chooser.getSelectedFile()))) {
-
-                SaveData data = new SaveData();
-                data.levelNumber = getCurrentLevelNumber();
-                data.credits = currentLevel.getStudent().getCredits();
-                data.playerX = currentLevel.getStudent().getPosition().x;
-                data.playerY = currentLevel.getStudent().getPosition().y;
-                data.lives = lives;
-                data.timeLeft = timeLeft;
-                data.playerName = playerName;
-
-                out.writeObject(data);
-                System.out.println("Game saved.");
-            } catch (Exception e) {
+        SaveContainer container = getSaves();
+        if (container == null) return;
+
+        SaveContainer.SlotInfo[] slots = container.list();
+        SaveContainer.SlotInfo choice = (SaveContainer.SlotInfo) JOptionPane.showInputDialog(view,
+                "Save to which slot?", "Save Game", JOptionPane.PLAIN_MESSAGE, null, slots, slots[0]);
+        if (choice == null) return;
+
+        ByteBuffer snapshot = WorldSnapshot.capture(this, currentLevel);
+        int levelNumber = getCurrentLevelNumber();
+        String name = playerName;
+        saveExecutor.execute(() -> {
+            try {
+                container.save(choice.getSlot(), levelNumber, name, snapshot);
+                System.out.println("Game saved to slot " + (choice.getSlot() + 1) + ".");
+            } catch (IOException e) {
                 e.printStackTrace();
             }
-        }
+        });
     }
 
-    /** Loads saved game state from a file. */
+    /**
+     * Loads a save slot chosen by the player. The slot is read and checked on a background thread,
+     * then the level is rebuilt and restored on the EDT.
+     */
     public void loadGame() {
-        JFileChooser chooser = new JFileChooser();
-        if (chooser.showOpenDialog(view) == JFileChooser.APPROVE_OPTION) {
-            try (var in = new java.io.ObjectInputStream(
-                    new java.io.FileInputStream(chooser.getSelectedFile()))) {
-
-                SaveData data = (SaveData) in.readObject();
-                this.playerName = data.playerName;
-                this.lives = data.lives;
-                this.timeLeft = data.timeLeft;
-
-                if (currentLevel != null) currentLevel.stop();
-
-                switch (data.levelNumber) {
-                    case 1 -> {
-                        currentLevel = new Level1(this);
-                        loadLevelMusic("data/background_level1.wav");
-                    }
-                    case 2 -> {
-                        currentLevel = new Level2(this);
-                        loadLevelMusic("data/background_level2.wav");
-                    }
-                    case 3 -> {
-                        currentLevel = new Level3(this);
-                        loadLevelMusic("data/background_level3.wav");
-                    }
-                    default -> {
-                        System.out.println("Invalid level in save.");
-                        return;
-                    }
-                }
+        SaveContainer container = getSaves();
+        if (container == null) return;
 
-                view.setWorld(currentLevel);
-                view.updateBackground();
-                bindPauseKey();
-                currentLevel.start();
+        java.util.List<SaveContainer.SlotInfo> used = new java.util.ArrayList<>();
+        for (SaveContainer.SlotInfo slot : container.list()) {
+            if (!slot.isEmpty()) used.add(slot);
+        }
+        if (used.isEmpty()) {
+            JOptionPane.showMessageDialog(view, "There are no saved games yet.");
+            return;
+        }
 
-                currentLevel.getStudent().setCredits(data.credits);
-                currentLevel.getStudent().setPosition(new Vec2(data.playerX, data.playerY));
+        SaveContainer.SlotInfo choice = (SaveContainer.SlotInfo) JOptionPane.showInputDialog(view,
+                "Load which slot?", "Load Game", JOptionPane.PLAIN_MESSAGE, null, used.toArray(), used.get(0));
+        if (choice == null) return;
 
-                resetPlayerState();
-                System.out.println("Game loaded successfully.");
+        saveExecutor.execute(() -> {
+            try {
+                ByteBuffer snapshot = container.load(choice.getSlot());
+                SwingUtilities.invokeLater(() -> applySnapshot(snapshot));
+            } catch (IOException e) {
+                System.out.println("Could not load: " + e.getMessage());
+            }
+        });
+    }
 
-            } catch (Exception e) {
-                e.printStackTrace();
+    /** @return the save file, opened on first use, or null if it cannot be opened. */
+    private SaveContainer getSaves() {
+        if (saves == null) {
+            try {
+                saves = new SaveContainer(Path.of(SAVE_FILE));
+            } catch (IOException e) {
+                System.out.println("Saving is unavailable: " + e.getMessage());
             }
         }
+        return saves;
+    }
+
+    /** Replaces the current level with one restored from a snapshot. */
+    private void applySnapshot(ByteBuffer snapshot) {
+        try {
+            WorldSnapshot.Header header = WorldSnapshot.readHeader(snapshot);
+            GameLevel level = createLevel(header.levelNumber, header.seed);
+            if (level == null) {
+                System.out.println("Invalid level in save.");
+                return;
+            }
+            // Restore before switching, so a bad file leaves the game running.
+            // The countdown is scheduled first so it is restored to its saved phase too.
+            StepScheduler.Task countdown = scheduleCountdown(level);
+            WorldSnapshot.restoreInto(level, snapshot);
+
+            if (currentLevel != null) currentLevel.stop();
+            currentLevel = level;
+            countdownTask = countdown;
+            playerName = header.playerName;
+            lives = header.lives;
+            timeLeft = header.timeLeft;
+            loadLevelMusic(currentLevel.getMusic());
+
+            view.setWorld(currentLevel);
+            view.updateBackground();
+            bindPauseKey();
+            attachController(currentLevel.getStudent()); // Credits were restored with the student
+            if (recorder != null) recorder.beginSnapshot(snapshot);
+            currentLevel.start();
+            history.attach(currentLevel);
+            prepareNextLevel();
+
+            System.out.println("Game loaded successfully.");
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Rebuilds the current level from its level file, if it is the given level, keeping the player's
+     * position, credits and power-ups, the level's progress and its timers. The level is captured at
+     * the next step boundary and swapped on the EDT. Called by {@link HotReloader} once the changed
+     * file has compiled.
+     *
+     * @param number the level whose file changed.
+     */
+    void reloadLevel(int number) {
+        SwingUtilities.invokeLater(() -> {
+            if (preloader.discard(number)) prepareNextLevel(); // Built from the old file
+            GameLevel level = currentLevel;
+            if (gameOver || level == null || level.getNumber() != number) return;
+            level.post(() -> {
+                ByteBuffer state = WorldSnapshot.capture(this, level);
+                SwingUtilities.invokeLater(() -> rebuildLevel(level, state));
+            });
+        });
+    }
+
+    /** Replaces a level with a fresh build of the same level, restoring the player from a snapshot. */
+    private void rebuildLevel(GameLevel old, ByteBuffer state) {
+        if (gameOver || currentLevel != old) return; // The level changed in the meantime
+        GameLevel level = createLevel(old.getNumber(), old.getSeed());
+        if (level == null) return;
+        StepScheduler.Task countdown = scheduleCountdown(level);
+        try {
+            WorldSnapshot.restorePlayer(level, state);
+        } catch (IOException e) {
+            e.printStackTrace();
+            return;
+        }
+
+        old.stop();
+        currentLevel = level;
+        countdownTask = countdown;
+        if (!Objects.equals(old.getMusic(), level.getMusic())) {
+            loadLevelMusic(level.getMusic());
+        }
+        view.setWorld(currentLevel);
+        view.updateBackground();
+        bindPauseKey();
+        attachController(currentLevel.getStudent());
+        recordRestore();
+        if (!paused) currentLevel.start(); // Otherwise started when the game resumes
+        history.attach(currentLevel);
+        System.out.println("Level " + level.getNumber() + " reloaded.");
+    }
+
+    /**
+     * Applies changed tuning values at the next step boundary. Called by {@link HotReloader}.
+     *
+     * @param tuning the values read from the tuning file.
+     */
+    void reloadTuning(Properties tuning) {
+        SwingUtilities.invokeLater(() -> {
+            if (gameOver || currentLevel == null) return;
+            currentLevel.post(() -> {
+                if (recorder != null) recorder.recordTuning(tuning);
+                System.out.println("Tuning reloaded, " + Tuning.apply(tuning) + " values changed.");
+            });
+        });
     }
 
     /** Toggles game pause/resume. */
@@ -282,8 +693,7 @@ public class Game {
 
     /** Pauses the game and shows pause menu. */
     public void pauseGame() {
-        if (currentLevel != null) currentLevel.stop();
-        if (gameTimer != null && gameTimer.isRunning()) gameTimer.stop();
+        if (currentLevel != null) currentLevel.stop(); // Also pauses the countdown
 
         pauseMenu = new PauseMenuPanel(this);
         pauseMenu.setSize(200, 100);
@@ -300,7 +710,6 @@ public class Game {
     /** Resumes the game from pause. */
     public void resumeGame() {
         if (currentLevel != null) currentLevel.start();
-        if (gameTimer != null && !gameTimer.isRunning()) gameTimer.start();
 
         if (pauseMenu != null) {
             view.remove(pauseMenu);
@@ -322,6 +731,27 @@ public class Game {
         return timeLeft;
     }
 
+    /**
+     * Sets lives and time left when a level is restored in place from a snapshot.
+     *
+     * @param lives    the restored lives.
+     * @param timeLeft the restored time in seconds.
+     */
+    void restoreProgress(int lives, int timeLeft) {
+        this.lives = lives;
+        this.timeLeft = timeLeft;
+    }
+
+
+    /** @return Tracer timing input from key press to painted frame. */
+    public LatencyTracer getLatencyTracer() {
+        return latencyTracer;
+    }
+
+    /** @return Recorder logging this session for replay, or null when headless or replaying. */
+    public InputRecorder getInputRecorder() {
+        return recorder;
+    }
 
     /** @return Sound manager for the game. */
     public SoundManager getSoundManager() {
@@ -333,16 +763,26 @@ public class Game {
         return currentLevel.getStudent();
     }
 
+    /** @return Player's name. */
+    public String getPlayerName() {
+        return playerName;
+    }
+
     /** @return Current level number (1, 2, 3...) */
-    private int getCurrentLevelNumber() {
-        if (currentLevel instanceof Level1) return 1;
-        if (currentLevel instanceof Level2) return 2;
-        if (currentLevel instanceof Level3) return 3;
-        return -1;
+    int getCurrentLevelNumber() {
+        return currentLevel.getNumber();
     }
 
-    /** Main entry point. */
-    public static void main(String[] args) {
+    /**
+     * Main entry point. With {@code --replay <file>}, plays back a recorded session
+     * (such as last-session.rpl) instead of starting a new game.
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length == 2 && args[0].equals("--replay")) {
+            ReplayPlayer player = new ReplayPlayer(Path.of(args[1]));
+            SwingUtilities.invokeLater(() -> new Game(player));
+            return;
+        }
         new Game();
     }
 }
@@ -0,0 +1,290 @@
+package game;
+
+import city.cs.engine.Body;
+import city.cs.engine.DynamicBody;
+import city.cs.engine.Walker;
+import org.jbox2d.common.Vec2;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.util.List;
+
+/**
+ * GameEnvironment lets an automated player play a level one step at a time, in the style of a
+ * reinforcement-learning environment: {@link #reset(long)} starts an episode and returns the first
+ * observation, and {@link #step(int)} applies one action mask, runs one game step and returns the reward.
+ *
+ * The level runs headless with its own {@link Game}, exactly as it would for a player, with the
+ * actions going through a {@link StudentController}. Observations are written into one direct,
+ * native-order buffer that is reused for the whole life of the environment, so a caller (or native
+ * code) can read it in place after every step. Its layout is fixed:
+ * <pre>
+ * player     x, y, vx, vy, credits, lives, seconds left, enemies defeated
+ * enemies    MAX_ENEMIES slots of     kind, x, y, vx, vy, health
+ * projectile MAX_PROJECTILES slots of kind, x, y, vx, vy, 1 if it hurts the player
+ * pickups    MAX_PICKUPS slots of     kind, x, y, vx, vy, 0
+ * platforms  MAX_PLATFORMS slots of   kind, x, y, vx, vy, 0
+ * </pre>
+ * Positions are world coordinates. Kind 0 marks an empty slot; bodies beyond a group's slots are left out.
+ */
+public class GameEnvironment implements AutoCloseable {
+
+    public static final int PLAYER_FLOATS = 8;
+    public static final int SLOT_FLOATS = 6;
+    public static final int MAX_ENEMIES = 8;
+    public static final int MAX_PROJECTILES = 16;
+    public static final int MAX_PICKUPS = 8;
+    public static final int MAX_PLATFORMS = 8;
+
+    public static final int ENEMY_OFFSET = PLAYER_FLOATS;
+    public static final int PROJECTILE_OFFSET = ENEMY_OFFSET + MAX_ENEMIES * SLOT_FLOATS;
+    public static final int PICKUP_OFFSET = PROJECTILE_OFFSET + MAX_PROJECTILES * SLOT_FLOATS;
+    public static final int PLATFORM_OFFSET = PICKUP_OFFSET + MAX_PICKUPS * SLOT_FLOATS;
+    public static final int OBSERVATION_SIZE = PLATFORM_OFFSET + MAX_PLATFORMS * SLOT_FLOATS;
+
+    /** Actions are masks of the StudentController ACTION_ bits, so there are 32 of them. */
+    public static final int ACTION_COUNT = 32;
+
+    // Kinds written to the first float of a slot
+    public static final int KIND_ENEMY = 1, KIND_LEVEL2_ENEMY = 2, KIND_LEVEL2_ENEMY_2 = 3, KIND_BOSS = 4;
+    public static final int KIND_BULLET = 1, KIND_FIREBALL = 2, KIND_PROJECTILE = 3;
+    public static final int KIND_COLLECTIBLE = 1;
+    public static final int KIND_MOVING_PLATFORM = 1;
+
+    // Rewards
+    public static final float REWARD_CREDIT = 1f;        // Per credit collected
+    public static final float REWARD_DEFEAT = 5f;        // Per enemy defeated
+    public static final float REWARD_LIFE_LOST = -5f;
+    public static final float REWARD_COMPLETE = 20f;
+    public static final float REWARD_STEP = -0.001f;     // A little pressure to finish quickly
+
+    private final int levelNumber;
+    private final int maxSteps;
+    private final ByteBuffer bytes;
+    private final FloatBuffer observation;
+
+    private Game game;
+    private GameLevel level;
+    private int action;            // Read by the controller at the start of the next step
+    private int steps;
+    private int credits, lives, defeated;
+    private boolean done = true;
+    private boolean truncated;
+
+    /**
+     * @param levelNumber the level every episode plays.
+     * @param maxSteps    steps after which an episode is cut short.
+     */
+    public GameEnvironment(int levelNumber, int maxSteps) {
+        this.levelNumber = levelNumber;
+        this.maxSteps = maxSteps;
+        bytes = ByteBuffer.allocateDirect(OBSERVATION_SIZE * Float.BYTES).order(ByteOrder.nativeOrder());
+        observation = bytes.asFloatBuffer();
+    }
+
+    /**
+     * Starts a new episode on a freshly built level.
+     *
+     * @param seed seed for the level's layout and behaviour; the same seed and actions give the same episode.
+     * @return the observation buffer, filled with the first observation.
+     * @throws IllegalArgumentException if the level does not exist.
+     */
+    public FloatBuffer reset(long seed) {
+        close();
+        game = new Game("environment");
+        level = game.createLevel(levelNumber, seed);
+        if (level == null) throw new IllegalArgumentException("No level " + levelNumber);
+        game.enterLevel(level, game.getLives(), game.getTimeLeft());
+        new StudentController(game, level.getStudent(), () -> action);
+
+        action = 0;
+        steps = 0;
+        credits = level.getStudent().getCredits();
+        lives = game.getLives();
+        defeated = level.getEnemiesDefeated();
+        done = false;
+        truncated = false;
+        observe();
+        return observation;
+    }
+
+    /**
+     * Applies an action for one game step.
+     *
+     * @param action a mask of {@code StudentController.ACTION_} bits.
+     * @return the reward for the step; the observation buffer then holds the new state.
+     * @throws IllegalStateException if the episode is over and has not been reset.
+     */
+    public float step(int action) {
+        if (done) throw new IllegalStateException("The episode is over; call reset");
+        this.action = action;
+        level.gameStep();
+        steps++;
+
+        float reward = REWARD_STEP;
+        int newCredits = level.getStudent().getCredits();
+        int newLives = game.getLives();
+        int newDefeated = level.getEnemiesDefeated();
+        reward += (newCredits - credits) * REWARD_CREDIT;
+        reward += (newDefeated - defeated) * REWARD_DEFEAT;
+        reward += (lives - newLives) * REWARD_LIFE_LOST;
+        credits = newCredits;
+        lives = newLives;
+        defeated = newDefeated;
+
+        if (level.isComplete()) {
+            reward += REWARD_COMPLETE;
+            done = true;
+        } else if (game.isGameOver()) {
+            done = true;
+        } else if (steps >= maxSteps) {
+            done = true;
+            truncated = true;
+        }
+        observe();
+        return reward;
+    }
+
+    /** @return the observation buffer, the same one every time; read it with absolute gets. */
+    public FloatBuffer getObservation() {
+        return observation;
+    }
+
+    /** @return the observation buffer as bytes in native order, for passing to native code. */
+    public ByteBuffer getObservationBytes() {
+        return bytes;
+    }
+
+    /** @return true once the episode has ended, for any reason. */
+    public boolean isDone() {
+        return done;
+    }
+
+    /** @return true if the episode ended because it reached the step limit. */
+    public boolean isTruncated() {
+        return truncated;
+    }
+
+    /** @return true if the episode ended with the level complete. */
+    public boolean isComplete() {
+        return level != null && level.isComplete();
+    }
+
+    /** @return steps taken in the current episode. */
+    public int getSteps() {
+        return steps;
+    }
+
+    /** @return the level of the current episode, or null before the first reset. */
+    public GameLevel getLevel() {
+        return level;
+    }
+
+    /** Ends the current episode's game, releasing its resources. */
+    @Override
+    public void close() {
+        if (game != null && !game.isGameOver()) {
+            game.getSoundManager().close(); // Otherwise closed when the game ended
+        }
+        game = null;
+    }
+
+    /** Writes the current state into the observation buffer. */
+    private void observe() {
+        FloatBuffer o = observation;
+        Student student = level.getStudent();
+        Vec2 position = student.getPosition();
+        Vec2 velocity = student.getLinearVelocity();
+        o.put(0, position.x);
+        o.put(1, position.y);
+        o.put(2, velocity.x);
+        o.put(3, velocity.y);
+        o.put(4, credits);
+        o.put(5, lives);
+        o.put(6, game.getTimeLeft());
+        o.put(7, defeated);
+
+        // The level's own lists, rather than getDynamicBodies(), which builds a new list every call
+        int enemies = 0, projectiles = 0, pickups = 0, platforms = 0;
+        List<Walker> walkers = level.getEnemies();
+        for (int i = 0; i < walkers.size() && enemies < MAX_ENEMIES; i++) {
+            Walker body = walkers.get(i);
+            if (body instanceof Enemy) {
+                slot(ENEMY_OFFSET, enemies++, KIND_ENEMY, body, 1);
+            } else if (body instanceof Level2Enemy) {
+                slot(ENEMY_OFFSET, enemies++, KIND_LEVEL2_ENEMY, body, ((Level2Enemy) body).getHealth());
+            } else if (body instanceof Level2Enemy_2) {
+                slot(ENEMY_OFFSET, enemies++, KIND_LEVEL2_ENEMY_2, body, ((Level2Enemy_2) body).getHealth());
+            } else if (body instanceof BossEnemy) {
+                slot(ENEMY_OFFSET, enemies++, KIND_BOSS, body, ((BossEnemy) body).getHealth());
+            }
+        }
+        List<DynamicBody> shots = level.getProjectiles();
+        for (int i = 0; i < shots.size() && projectiles < MAX_PROJECTILES; i++) {
+            DynamicBody body = shots.get(i);
+            if (body instanceof Fireball) {
+                slot(PROJECTILE_OFFSET, projectiles++, KIND_FIREBALL, body, 1);
+            } else {
+                slot(PROJECTILE_OFFSET, projectiles++, body instanceof Bullet ? KIND_BULLET : KIND_PROJECTILE, body, 0);
+            }
+        }
+        List<Collectible> collectibles = level.getCollectibles();
+        for (int i = 0; i < collectibles.size() && pickups < MAX_PICKUPS; i++) {
+            slot(PICKUP_OFFSET, pickups++, KIND_COLLECTIBLE, collectibles.get(i), 0);
+        }
+        List<MovingPlatform> moving = level.getMovingPlatforms();
+        for (int i = 0; i < moving.size() && platforms < MAX_PLATFORMS; i++) {
+            slot(PLATFORM_OFFSET, platforms++, KIND_MOVING_PLATFORM, moving.get(i), 0);
+        }
+        clear(ENEMY_OFFSET, enemies, MAX_ENEMIES);
+        clear(PROJECTILE_OFFSET, projectiles, MAX_PROJECTILES);
+        clear(PICKUP_OFFSET, pickups, MAX_PICKUPS);
+        clear(PLATFORM_OFFSET, platforms, MAX_PLATFORMS);
+    }
+
+    private void slot(int offset, int index, int kind, Body body, float extra) {
+        int at = offset + index * SLOT_FLOATS;
+        Vec2 position = body.getPosition();
+        Vec2 velocity = body.getLinearVelocity();
+        observation.put(at, kind);
+        observation.put(at + 1, position.x);
+        observation.put(at + 2, position.y);
+        observation.put(at + 3, velocity.x);
+        observation.put(at + 4, velocity.y);
+        observation.put(at + 5, extra);
+    }
+
+    /** Zeroes the unused slots of a group. */
+    private void clear(int offset, int used, int slots) {
+        for (int i = offset + used * SLOT_FLOATS; i < offset + slots * SLOT_FLOATS; i++) {
+            observation.put(i, 0);
+        }
+    }
+
+    /**
+     * Plays random episodes and reports the step rate.
+     *
+     * Usage: java game.GameEnvironment [level] [steps]
+     */
+    public static void main(String[] args) {
+        int number = args.length > 0 ? Integer.parseInt(args[0]) : 1;
+        int total = args.length > 1 ? Integer.parseInt(args[1]) : 100_000;
+        GameEnvironment env = new GameEnvironment(number, 60 * GameLevel.STEPS_PER_SECOND);
+        GameRandom random = new GameRandom(1);
+        int episodes = 0;
+        double rewards = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < total; i++) {
+            if (env.isDone()) {
+                env.reset(episodes++);
+            }
+            rewards += env.step(random.nextInt(ACTION_COUNT));
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        env.close();
+        System.out.printf("Level %d: %d steps in %d episodes, %.2fs, %.0f steps/s, mean reward per episode %.2f%n",
+                number, total, episodes, seconds, total / seconds, rewards / episodes);
+        System.out.println("Observation: " + OBSERVATION_SIZE + " floats");
+    }
+}
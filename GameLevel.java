@@ -2,13 +2,35 @@ package game;
 
 import city.cs.engine.*;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.LongSupplier;
+
 /**
  * Abstract base class for all game levels.
  * Defines common properties and methods used across all levels.
  */
 public abstract class GameLevel extends World {
+
+    /** Simulation steps per second of game time. */
+    public static final int STEPS_PER_SECOND = 60;
+
     protected Student student; // The main player character
     protected Game game;       // Reference to the main game instance
+    private final StepScheduler scheduler = new StepScheduler(); // Step-driven timers for this level
+    private final CommandQueue commands = new CommandQueue();   // Mutations posted from other threads
+    private final long seed;                // Seed for everything random in this level
+    protected final GameRandom random;      // Level's random source, so a seed reproduces the layout
+    private final SubStepper stepper;       // Splits game steps into physics steps
+    private final StepPipeline pipeline = new StepPipeline(); // Per-step logic, run in phases once per game step
+    private Runnable completionListener;    // Told the moment the objective is met
+    private final List<Walker> enemies = new ArrayList<>(); // Live enemies, so steps need not list every body
+    private final List<DynamicBody> projectiles = new ArrayList<>();      // Live bullets, projectiles and fireballs
+    private final List<Collectible> collectibles = new ArrayList<>();
+    private final List<MovingPlatform> movingPlatforms = new ArrayList<>();
 
     /**
      * Constructor to create a level and attach it to the game.
@@ -16,8 +38,39 @@ public abstract class GameLevel extends World {
      * @param game The main game object.
      */
     public GameLevel(Game game) {
+        this(game, System.nanoTime());
+    }
+
+    /**
+     * Constructor to create a level with a specific random seed, so it can be rebuilt exactly.
+     *
+     * @param game The main game object.
+     * @param seed The seed for the level's random layout and behaviour.
+     */
+    public GameLevel(Game game, long seed) {
         super();
         this.game = game;
+        this.seed = seed;
+        this.random = new GameRandom(seed);
+        this.stepper = new SubStepper(getSimulationSettings(), StepConfig.DEFAULT);
+        super.addStepListener(stepper); // Sees every physics step; everything else sees game steps
+        super.addStepListener(stepper.gate(pipeline));
+        stepper.setQualityListener(this::recordQuality);
+
+        // Registered before any other input listener, so it runs first in every step:
+        // apply queued mutations, then advance the level's timers (which pause along with the world)
+        addStepListener(StepPipeline.Phase.INPUT, new StepListener() {
+            @Override
+            public void preStep(StepEvent e) {
+                commands.drain();
+                scheduler.advance();
+            }
+
+            @Override
+            public void postStep(StepEvent e) {
+                // No action needed after the step
+            }
+        });
     }
 
     /**
@@ -29,6 +82,65 @@ public abstract class GameLevel extends World {
         return student;
     }
 
+    /**
+     * Adds an enemy to the level's list of live enemies. It leaves the list when it is destroyed.
+     *
+     * @param enemy the new enemy.
+     */
+    public void addEnemy(Walker enemy) {
+        track(enemies, enemy);
+    }
+
+    /**
+     * Returns the live enemies, in the order they were created. Unlike {@link #getDynamicBodies()}
+     * this is not a new list, so enemies can look at each other every step without allocating.
+     *
+     * @return the enemies; do not modify.
+     */
+    public List<Walker> getEnemies() {
+        return enemies;
+    }
+
+    /**
+     * Adds a projectile (a bullet, fireball or other shot) to the level's list of live projectiles.
+     *
+     * @param projectile the new projectile.
+     */
+    public void addProjectile(DynamicBody projectile) {
+        track(projectiles, projectile);
+    }
+
+    /** @return the live projectiles, in the order they were fired; do not modify. */
+    public List<DynamicBody> getProjectiles() {
+        return projectiles;
+    }
+
+    /** @param collectible a new collectible, listed until it is picked up. */
+    public void addCollectible(Collectible collectible) {
+        track(collectibles, collectible);
+    }
+
+    /** @return the collectibles not yet picked up, in the order they were placed; do not modify. */
+    public List<Collectible> getCollectibles() {
+        return collectibles;
+    }
+
+    /** @param platform a new moving platform. */
+    public void addMovingPlatform(MovingPlatform platform) {
+        track(movingPlatforms, platform);
+    }
+
+    /** @return the moving platforms, in the order they were built; do not modify. */
+    public List<MovingPlatform> getMovingPlatforms() {
+        return movingPlatforms;
+    }
+
+    /** Keeps a body in a list until it is destroyed. */
+    private static <T extends Body> void track(List<T> list, T body) {
+        list.add(body);
+        body.addDestructionListener(e -> list.remove(body));
+    }
+
     /**
      * Assigns the student (player) to this level.
      *
@@ -47,6 +159,264 @@ public abstract class GameLevel extends World {
         return game;
     }
 
+    /**
+     * Returns the scheduler for delayed and repeating tasks in this level.
+     *
+     * @return the level's step scheduler.
+     */
+    public StepScheduler getScheduler() {
+        return scheduler;
+    }
+
+    /**
+     * Returns the seed the level was built with.
+     *
+     * @return the random seed.
+     */
+    public long getSeed() {
+        return seed;
+    }
+
+    /**
+     * Returns the level's random source, shared by everything random in the level.
+     *
+     * @return the seeded random generator.
+     */
+    public GameRandom getRandom() {
+        return random;
+    }
+
+    /**
+     * Sets how the level's physics is stepped. Call before the level starts.
+     *
+     * @param config the sub-step, iteration and budget settings.
+     */
+    public void setStepConfig(StepConfig config) {
+        stepper.setConfig(config);
+    }
+
+    /**
+     * Returns how the level's physics is stepped.
+     *
+     * @return the step configuration.
+     */
+    public StepConfig getStepConfig() {
+        return stepper.getConfig();
+    }
+
+    /**
+     * Makes the step quality follow a recording: the level no longer adjusts it to its budget,
+     * and the replay sets it with {@link #setStepQuality} at the steps it changed.
+     */
+    void followRecordedQuality() {
+        stepper.setAdaptive(false);
+    }
+
+    /**
+     * Sets the sub-step cap and solver iterations, as recorded. Takes effect from the next game step.
+     */
+    void setStepQuality(int cap, int velocityIterations, int positionIterations) {
+        stepper.setQuality(cap, velocityIterations, positionIterations);
+    }
+
+    /** Logs the current step quality in the session recording, e.g. when a segment starts mid-level. */
+    void recordStepQuality() {
+        stepper.announceQuality();
+    }
+
+    private void recordQuality(int cap, int velocityIterations, int positionIterations) {
+        InputRecorder recorder = game == null ? null : game.getInputRecorder();
+        if (recorder != null) recorder.recordQuality(cap, velocityIterations, positionIterations);
+    }
+
+    /**
+     * Returns the sub-stepping decisions and physics cost measured since the level was configured.
+     *
+     * @return the level's step metrics.
+     */
+    public StepMetrics getStepMetrics() {
+        return stepper.getMetrics();
+    }
+
+    /**
+     * Marks a body as fast, so the physics is sub-stepped finely enough for it while it exists.
+     *
+     * @param body a projectile or other quick body.
+     */
+    public void addFastBody(DynamicBody body) {
+        stepper.addFastBody(body);
+    }
+
+    /**
+     * Adds a listener to the {@link StepPipeline.Phase#GAMEPLAY gameplay} phase of the step pipeline.
+     * It runs once per game step, however many physics steps the step is split into.
+     *
+     * @param listener the listener.
+     */
+    @Override
+    public void addStepListener(StepListener listener) {
+        pipeline.add(StepPipeline.Phase.GAMEPLAY, listener);
+    }
+
+    /**
+     * Adds a listener to a phase of the step pipeline. A listener that is a body is removed when the body is destroyed.
+     *
+     * @param phase    when in the step it runs.
+     * @param listener the listener.
+     */
+    public void addStepListener(StepPipeline.Phase phase, StepListener listener) {
+        pipeline.add(phase, listener);
+    }
+
+    /**
+     * Adds a listener to a phase of the step pipeline until a body is destroyed.
+     *
+     * @param phase    when in the step it runs.
+     * @param listener the listener.
+     * @param owner    the body it acts for.
+     */
+    public void addStepListener(StepPipeline.Phase phase, StepListener listener, Body owner) {
+        pipeline.add(phase, listener, owner);
+    }
+
+    /**
+     * Removes a listener from the step pipeline.
+     *
+     * @param listener the listener.
+     */
+    @Override
+    public void removeStepListener(StepListener listener) {
+        pipeline.remove(listener);
+    }
+
+    /**
+     * Counts the bytes the level's own code allocates in each game step: the step pipeline's
+     * listeners and the sub-stepper's work between steps, but not the physics engine.
+     *
+     * @param counter bytes allocated so far by the thread that steps the level, or null to stop counting.
+     */
+    public void setAllocationCounter(LongSupplier counter) {
+        pipeline.setAllocationCounter(counter);
+        stepper.setAllocationCounter(counter);
+    }
+
+    /**
+     * @return the bytes the level's own code allocated in the last game step, including the
+     *         counter's own readings (three pairs of them), or -1 if no allocation counter is set.
+     */
+    public long getLastStepBytes() {
+        long pipelineBytes = pipeline.getLastStepBytes();
+        long stepperBytes = stepper.getLastStepBytes();
+        return pipelineBytes < 0 || stepperBytes < 0 ? -1 : pipelineBytes + stepperBytes;
+    }
+
+    /**
+     * Returns the step pipeline, with each phase's listeners and time per step.
+     *
+     * @return the level's step pipeline.
+     */
+    public StepPipeline getStepPipeline() {
+        return pipeline;
+    }
+
+    /**
+     * Runs one whole game step without the timer, as replays and benchmarks do.
+     */
+    public void gameStep() {
+        do {
+            oneStep();
+        } while (!stepper.isLastSubStep());
+    }
+
+    /**
+     * Writes level-specific progress (counters, flags) into a snapshot.
+     * Bodies and timers are saved separately by {@link WorldSnapshot}.
+     *
+     * @param out the buffer to write to.
+     */
+    protected void writeState(ByteBuffer out) {
+        // No level-specific state by default
+    }
+
+    /**
+     * Restores level-specific progress written by {@link #writeState(ByteBuffer)}.
+     *
+     * @param in the buffer to read from.
+     */
+    protected void readState(ByteBuffer in) {
+        // No level-specific state by default
+    }
+
+    /**
+     * Called by enemies when they are defeated, for levels whose objective counts them.
+     *
+     * @param enemy the enemy defeated.
+     */
+    public void enemyDefeated(Body enemy) {
+        // Not counted by default
+    }
+
+    /**
+     * Called by the player whenever their credits change, for levels whose objective counts them.
+     *
+     * @param credits the player's credits now.
+     */
+    public void creditsChanged(int credits) {
+        // Not counted by default
+    }
+
+    /**
+     * Sets what to do the moment the level's objective is met. Levels call it from inside the step
+     * that completed them, so it must not switch worlds itself.
+     *
+     * @param listener run on completion, or null for nothing.
+     */
+    public void setCompletionListener(Runnable listener) {
+        completionListener = listener;
+    }
+
+    /** Runs the completion listener; called by levels when their objective is met. */
+    protected void completed() {
+        if (completionListener != null) completionListener.run();
+    }
+
+    /**
+     * Returns how many enemies have been defeated in this level.
+     *
+     * @return the count, or 0 for levels that do not count them.
+     */
+    public int getEnemiesDefeated() {
+        return 0;
+    }
+
+    /**
+     * Called when a snapshot recreates a body, so levels can update references they hold to it.
+     *
+     * @param body the recreated body.
+     */
+    protected void onBodyRestored(Body body) {
+        // Nothing referenced by default
+    }
+
+    /**
+     * Queues a world mutation to be applied at the start of the next step.
+     * Use this instead of touching bodies directly from any thread other than the step.
+     *
+     * @param command the spawn, destroy or state change to apply.
+     */
+    public void post(Runnable command) {
+        commands.post(command);
+    }
+
+    /**
+     * Queues a body to be destroyed at the start of the next step.
+     *
+     * @param body the body to remove from the world.
+     */
+    public void postDestroy(Body body) {
+        commands.post(body::destroy);
+    }
+
     /**
      * Populates the level with specific game objects.
      *
@@ -68,6 +438,72 @@ public abstract class GameLevel extends World {
      */
     public abstract String getBackgroundImage();
 
+    /**
+     * Gets the level's number, used to find the next level and to rebuild it from saves.
+     *
+     * @return the level number (1, 2, 3...).
+     */
+    public abstract int getNumber();
+
+    /**
+     * Gets the background music for the level.
+     *
+     * @return the file path for the music, or null to keep the current track.
+     */
+    public abstract String getMusic();
+
+    /**
+     * Describes what the player has to do to finish the level.
+     *
+     * @return the objective, shown when the player tries to leave too early.
+     */
+    public abstract String getObjective();
+
+    /**
+     * Builds a level from its file in the levels directory. Level files are parsed once and cached,
+     * so building the same level again (a new game, a load or a replay) only places its bodies.
+     *
+     * @param game   the main Game object.
+     * @param number the level number.
+     * @param seed   seed for the level's random layout and spawns.
+     * @return the new level, or null if there is no level with that number or its file is broken.
+     */
+    public static GameLevel load(Game game, int number, long seed) {
+        try {
+            return build(game, number, seed);
+        } catch (UncheckedIOException e) {
+            // A damaged section is only found while the level is built; a level with a source is compiled again
+            if (!LevelCache.recompile(number)) return failed(number, e);
+            System.out.println("Level " + number + " is damaged (" + e.getMessage() + "), compiling its source");
+            try {
+                return build(game, number, seed);
+            } catch (IOException | UncheckedIOException again) {
+                return failed(number, again);
+            }
+        } catch (IOException e) {
+            return failed(number, e);
+        }
+    }
+
+    private static GameLevel build(Game game, int number, long seed) throws IOException {
+        CompiledLevel data = LevelCache.get(number);
+        return data == null ? null : new DataLevel(game, seed, data);
+    }
+
+    private static GameLevel failed(int number, Exception e) {
+        e.printStackTrace();
+        System.out.println("Could not load level " + number + ": " + e.getMessage());
+        return null;
+    }
+
+    /**
+     * Starts the level running in real time, where the step budget applies.
+     */
+    @Override
+    public void start() {
+        stepper.setRealTime(true);
+        super.start();
+    }
 
     /**
      * Stops the level logic.
@@ -75,6 +511,6 @@ public abstract class GameLevel extends World {
     @Override
     public void stop() {
         super.stop();
-
+        stepper.setRealTime(false);
     }
 }
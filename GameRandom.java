@@ -0,0 +1,54 @@
+package game;
+
+import java.util.Random;
+
+/**
+ * GameRandom is the random source of a level. Unlike {@link Random}, its whole state is one long
+ * that can be read and restored, so a level restored from a snapshot (or rebuilt by a replay)
+ * continues the exact same sequence of spawns and jumps.
+ * It uses the SplitMix64 generator; {@link #nextGaussian()} is not restored and should not be used.
+ */
+public class GameRandom extends Random {
+
+    private static final long serialVersionUID = 1L;
+
+    private long state;
+
+    /**
+     * Creates a generator from a seed.
+     *
+     * @param seed the seed.
+     */
+    public GameRandom(long seed) {
+        super(seed);
+        state = seed;
+    }
+
+    @Override
+    public synchronized void setSeed(long seed) {
+        state = seed; // Also called by the Random constructor
+    }
+
+    @Override
+    protected int next(int bits) {
+        long z = (state += 0x9E3779B97F4A7C15L);
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        z ^= z >>> 31;
+        return (int) (z >>> (64 - bits));
+    }
+
+    /** @return the complete generator state. */
+    public long getState() {
+        return state;
+    }
+
+    /**
+     * Restores a state returned by {@link #getState()}.
+     *
+     * @param state the state.
+     */
+    public void setState(long state) {
+        this.state = state;
+    }
+}
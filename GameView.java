@@ -3,6 +3,8 @@ package game;
 import city.cs.engine.UserView;
 import javax.swing.*;
 import java.awt.*;
+import java.util.HashMap;
+import java.util.Map;
 
 /**
  * GameView is responsible for drawing and rendering the visual elements on the screen.
@@ -10,6 +12,9 @@ import java.awt.*;
  * It also handles drawing the "Game Over" screen when the player loses all lives.
  */
 public class GameView extends UserView {
+    // Backgrounds loaded so far, so switching level does not read the image on the EDT
+    private static final Map<String, Image> backgrounds = new HashMap<>();
+
     private Image background;  // Image for the background of the game
     private Game game;  // Reference to the Game class to access the time left and the player's lives
 
@@ -27,7 +32,7 @@ public class GameView extends UserView {
     public GameView(GameLevel world, int width, int height, Game game) {
         super(world, width, height);  // Call to the parent constructor for setting the world and dimensions
         this.game = game;  // Store the game reference to access its state
-        background = new ImageIcon(world.getBackgroundImage()).getImage();  // Load the background image
+        background = loadBackground(world.getBackgroundImage());  // Load the background image
         heartIcon = new ImageIcon("data/heartIcon.png").getImage();  // Load the heart icon for displaying lives
         coinIcon = new ImageIcon("data/coinIcon.png").getImage();    // Load the coin icon for displaying credits
     }
@@ -81,12 +86,31 @@ public class GameView extends UserView {
             g.setColor(Color.RED);  // Set the color to red for visibility
             g.drawString("GAME OVER", getWidth() / 2 - 280, getHeight() / 2);  // Draw the "Game Over" message
         }
+
+        game.getLatencyTracer().framePainted();  // Inputs consumed before this frame are now on screen
     }
 
     public void updateBackground() {
         // Cast getWorld() to GameLevel to access getBackgroundImage()
         GameLevel gameLevel = (GameLevel) getWorld();
-        background = new ImageIcon(gameLevel.getBackgroundImage()).getImage();
+        background = loadBackground(gameLevel.getBackgroundImage());
         repaint(); // Redraw the screen with the new background
     }
+
+    /**
+     * Loads a background image, or returns it if it was loaded before.
+     * Safe to call from any thread, so the next level's background can be loaded ahead of time.
+     * @param file The image file.
+     * @return The fully loaded image.
+     */
+    public static Image loadBackground(String file) {
+        synchronized (backgrounds) {
+            Image image = backgrounds.get(file);
+            if (image == null) {
+                image = new ImageIcon(file).getImage(); // ImageIcon waits until the image is loaded
+                backgrounds.put(file, image);
+            }
+            return image;
+        }
+    }
 }
\ No newline at end of file
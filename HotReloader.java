@@ -0,0 +1,159 @@
+package game;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * HotReloader watches the level and tuning files while the game runs, so they can be edited
+ * without restarting.
+ *
+ * Changes are read, and level files compiled, on the watcher's own thread. A broken file is
+ * reported and ignored, leaving the game as it was. Good files are handed to the game, which
+ * applies tuning between steps and rebuilds the current level with the player kept in place
+ * (see {@link Game#reloadLevel(int)}).
+ */
+public class HotReloader implements Runnable, AutoCloseable {
+
+    private static final long QUIET_MILLIS = 100; // Editors often write a file in several events
+
+    private final Game game;
+    private final WatchService watcher;
+    private final Path levelDir;
+    private final Path tuningFile;
+
+    private HotReloader(Game game, WatchService watcher, Path levelDir, Path tuningFile) {
+        this.game = game;
+        this.watcher = watcher;
+        this.levelDir = levelDir;
+        this.tuningFile = tuningFile;
+    }
+
+    /**
+     * Starts watching the levels and tuning directories, whichever exist.
+     *
+     * @param game the game to reload files into.
+     * @return the running watcher, or null if nothing can be watched.
+     */
+    public static HotReloader start(Game game) {
+        Path levelDir = LevelCache.getDirectory().toAbsolutePath();
+        Path tuningFile = Path.of(Tuning.DIRECTORY, Tuning.FILE_NAME).toAbsolutePath();
+        try {
+            WatchService watcher = FileSystems.getDefault().newWatchService();
+            boolean watching = false;
+            for (Path dir : new Path[] {levelDir, tuningFile.getParent()}) {
+                if (Files.isDirectory(dir)) {
+                    dir.register(watcher, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+                    watching = true;
+                }
+            }
+            if (!watching) {
+                watcher.close();
+                return null;
+            }
+            HotReloader reloader = new HotReloader(game, watcher, levelDir, tuningFile);
+            Thread thread = new Thread(reloader, "hot-reload");
+            thread.setDaemon(true);
+            thread.start();
+            return reloader;
+        } catch (IOException e) {
+            System.out.println("Hot reload unavailable: " + e.getMessage());
+            return null;
+        }
+    }
+
+    @Override
+    public void run() {
+        try {
+            while (true) {
+                Set<Path> changed = new LinkedHashSet<>();
+                boolean overflow = collect(watcher.take(), changed);
+                // Wait for the burst of events from one save to finish
+                WatchKey key;
+                while ((key = watcher.poll(QUIET_MILLIS, TimeUnit.MILLISECONDS)) != null) {
+                    overflow |= collect(key, changed);
+                }
+                if (overflow) {
+                    // Events were lost, so check everything
+                    changed.add(tuningFile);
+                    try (java.util.stream.Stream<Path> files = Files.list(levelDir)) {
+                        files.filter(f -> f.toString().endsWith(LevelCache.SOURCE_EXTENSION)).forEach(changed::add);
+                    } catch (IOException e) {
+                        e.printStackTrace();
+                    }
+                }
+                for (Path file : changed) {
+                    reload(file);
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // Closed with the game
+        }
+    }
+
+    /** Adds the files named by a key's events to the set, and re-arms the key. */
+    private boolean collect(WatchKey key, Set<Path> changed) {
+        boolean overflow = false;
+        Path dir = (Path) key.watchable();
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                overflow = true;
+            } else {
+                changed.add(dir.resolve((Path) event.context()));
+            }
+        }
+        key.reset();
+        return overflow;
+    }
+
+    private void reload(Path file) {
+        if (file.equals(tuningFile)) {
+            if (!Files.isRegularFile(file)) return;
+            try {
+                game.reloadTuning(Tuning.read(file));
+            } catch (IOException e) {
+                System.out.println("Could not read " + file + ": " + e.getMessage());
+            }
+            return;
+        }
+
+        String name = file.getFileName().toString();
+        if (!file.getParent().equals(levelDir)
+                || !(name.endsWith(LevelCache.SOURCE_EXTENSION) || name.endsWith(LevelCache.COMPILED_EXTENSION))) {
+            return;
+        }
+        int number = LevelCache.levelNumber(file);
+        if (number < 0) return;
+        LevelRegistry.refresh(); // The file may be a new level, or one that was removed
+
+        // Compile here, so a mistake in the file is reported without disturbing the game
+        LevelCache.invalidate(number);
+        try {
+            if (LevelCache.get(number) == null) return;
+        } catch (IOException e) {
+            System.out.println("Level " + number + " not reloaded: " + e.getMessage());
+            LevelCache.invalidate(number); // Try again after the next edit
+            return;
+        }
+        game.reloadLevel(number);
+    }
+
+    /** Stops watching. */
+    @Override
+    public void close() {
+        try {
+            watcher.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+}
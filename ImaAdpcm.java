@@ -0,0 +1,262 @@
+package game;
+
+import javax.sound.sampled.AudioInputStream;
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * IMA ADPCM codec for game audio assets (.ima files).
+ * Samples are stored at 4 bits each, a quarter of the size of 16-bit WAV data.
+ *
+ * File layout (little-endian):
+ * a 16 byte header ("IMA1", frame count, sample rate, channel count, frames per block),
+ * followed by blocks of {@link #BLOCK_FRAMES} frames. Each block starts with the decoder state
+ * for both channels (predictor and step index) so errors cannot build up across blocks,
+ * then holds one byte per frame: left nibble in the low bits, right nibble in the high bits.
+ * Audio is always stored in the {@link AudioMixer#FORMAT} rate and channel layout.
+ */
+public final class ImaAdpcm {
+
+    /** File extension used for encoded assets. */
+    public static final String EXTENSION = ".ima";
+
+    static final int BLOCK_FRAMES = 1024;
+    static final int HEADER_SIZE = 16;
+    static final int BLOCK_HEADER_SIZE = 8; // Predictor (2 bytes) + index (1) + padding (1), per channel
+    static final int BLOCK_SIZE = BLOCK_HEADER_SIZE + BLOCK_FRAMES;
+
+    private static final byte[] MAGIC = {'I', 'M', 'A', '1'};
+
+    private static final int[] INDEX_TABLE = {
+            -1, -1, -1, -1, 2, 4, 6, 8,
+            -1, -1, -1, -1, 2, 4, 6, 8
+    };
+
+    private static final int[] STEP_TABLE = {
+            7, 8, 9, 10, 11, 12, 13, 14, 16, 17, 19, 21, 23, 25, 28, 31, 34, 37, 41, 45,
+            50, 55, 60, 66, 73, 80, 88, 97, 107, 118, 130, 143, 157, 173, 190, 209, 230,
+            253, 279, 307, 337, 371, 408, 449, 494, 544, 598, 658, 724, 796, 876, 963,
+            1060, 1166, 1282, 1411, 1552, 1707, 1878, 2066, 2272, 2499, 2749, 3024, 3327,
+            3660, 4026, 4428, 4871, 5358, 5894, 6484, 7132, 7845, 8630, 9493, 10442, 11487,
+            12635, 13899, 15289, 16818, 18500, 20350, 22385, 24623, 27086, 29794, 32767
+    };
+
+    private ImaAdpcm() {
+        // Static codec only
+    }
+
+    /**
+     * Encodes interleaved stereo PCM into a complete .ima file image.
+     *
+     * @param pcm interleaved stereo samples in the mixer format.
+     * @return the encoded file contents.
+     */
+    public static byte[] encode(short[] pcm) {
+        int frames = pcm.length / 2;
+        int blocks = (frames + BLOCK_FRAMES - 1) / BLOCK_FRAMES;
+        ByteBuffer out = ByteBuffer.allocate(HEADER_SIZE + blocks * BLOCK_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+
+        out.put(MAGIC);
+        out.putInt(frames);
+        out.putInt((int) AudioMixer.FORMAT.getSampleRate());
+        out.putShort((short) 2);
+        out.putShort((short) BLOCK_FRAMES);
+
+        Channel left = new Channel();
+        Channel right = new Channel();
+        for (int frame = 0; frame < blocks * BLOCK_FRAMES; frame++) {
+            if (frame % BLOCK_FRAMES == 0) {
+                left.writeState(out);
+                right.writeState(out);
+            }
+            // Pad the final block with silence
+            int l = frame < frames ? pcm[2 * frame] : 0;
+            int r = frame < frames ? pcm[2 * frame + 1] : 0;
+            out.put((byte) (left.encode(l) | (right.encode(r) << 4)));
+        }
+        return out.array();
+    }
+
+    /**
+     * Reads and validates the header of an encoded file image.
+     *
+     * @param data the encoded file contents.
+     * @return the number of frames of audio in the file.
+     * @throws IOException if the data is not an .ima file in the mixer format.
+     */
+    public static int readHeader(byte[] data) throws IOException {
+        if (data.length < HEADER_SIZE) {
+            throw new IOException("Truncated ADPCM header");
+        }
+        return readHeader(ByteBuffer.wrap(data, 0, HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN));
+    }
+
+    private static int readHeader(ByteBuffer header) throws IOException {
+        for (byte b : MAGIC) {
+            if (header.get() != b) throw new IOException("Not an ADPCM asset");
+        }
+        int frames = header.getInt();
+        int sampleRate = header.getInt();
+        int channels = header.getShort();
+        int blockFrames = header.getShort();
+        if (sampleRate != (int) AudioMixer.FORMAT.getSampleRate() || channels != 2 || blockFrames != BLOCK_FRAMES) {
+            throw new IOException("Unsupported ADPCM layout: " + sampleRate + " Hz, "
+                    + channels + " channels, " + blockFrames + " frames per block");
+        }
+        return frames;
+    }
+
+    /**
+     * Opens an encoded file as a PCM stream in the mixer format, decoding as it is read.
+     *
+     * @param file the .ima file.
+     * @return a stream of 16-bit stereo PCM.
+     * @throws IOException if the file cannot be read or is not a valid asset.
+     */
+    public static AudioInputStream openStream(File file) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+        try {
+            byte[] header = new byte[HEADER_SIZE];
+            in.readFully(header);
+            int frames = readHeader(header);
+            return new AudioInputStream(new DecodingStream(in, frames), AudioMixer.FORMAT, frames);
+        } catch (IOException e) {
+            in.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Encoder or decoder state for one channel.
+     */
+    static final class Channel {
+        int predictor = 0;
+        int index = 0;
+
+        /** Encodes one sample, updating the state exactly as the decoder will. */
+        int encode(int sample) {
+            int step = STEP_TABLE[index];
+            int diff = sample - predictor;
+            int nibble = 0;
+            if (diff < 0) {
+                nibble = 8;
+                diff = -diff;
+            }
+
+            int delta = step >> 3;
+            if (diff >= step) { nibble |= 4; diff -= step; delta += step; }
+            step >>= 1;
+            if (diff >= step) { nibble |= 2; diff -= step; delta += step; }
+            step >>= 1;
+            if (diff >= step) { nibble |= 1; delta += step; }
+
+            update(nibble, delta);
+            return nibble;
+        }
+
+        /** Decodes one 4-bit code into a 16-bit sample. */
+        short decode(int nibble) {
+            int step = STEP_TABLE[index];
+            int delta = step >> 3;
+            if ((nibble & 4) != 0) delta += step;
+            if ((nibble & 2) != 0) delta += step >> 1;
+            if ((nibble & 1) != 0) delta += step >> 2;
+
+            update(nibble, delta);
+            return (short) predictor;
+        }
+
+        private void update(int nibble, int delta) {
+            predictor += (nibble & 8) != 0 ? -delta : delta;
+            if (predictor > Short.MAX_VALUE) predictor = Short.MAX_VALUE;
+            else if (predictor < Short.MIN_VALUE) predictor = Short.MIN_VALUE;
+
+            index += INDEX_TABLE[nibble];
+            if (index < 0) index = 0;
+            else if (index > 88) index = 88;
+        }
+
+        void writeState(ByteBuffer out) {
+            out.putShort((short) predictor);
+            out.put((byte) index);
+            out.put((byte) 0);
+        }
+
+        void readState(byte[] data, int offset) {
+            predictor = (short) ((data[offset] & 0xFF) | (data[offset + 1] << 8));
+            index = Math.min(88, data[offset + 2] & 0xFF);
+        }
+    }
+
+    /**
+     * Decodes an .ima file body to little-endian PCM bytes one block at a time.
+     * Used for streamed music, where only one block is held in memory.
+     */
+    private static final class DecodingStream extends InputStream {
+        private final DataInputStream in;
+        private final byte[] block = new byte[BLOCK_SIZE];
+        private final byte[] pcm = new byte[BLOCK_FRAMES * 4];
+        private final Channel left = new Channel();
+        private final Channel right = new Channel();
+        private int framesLeft;
+        private int pcmPos = 0;
+        private int pcmLen = 0;
+
+        DecodingStream(DataInputStream in, int frames) {
+            this.in = in;
+            this.framesLeft = frames;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (pcmPos == pcmLen && !decodeBlock()) {
+                return -1;
+            }
+            return pcm[pcmPos++] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (pcmPos == pcmLen && !decodeBlock()) {
+                return -1;
+            }
+            int n = Math.min(len, pcmLen - pcmPos);
+            System.arraycopy(pcm, pcmPos, b, off, n);
+            pcmPos += n;
+            return n;
+        }
+
+        private boolean decodeBlock() throws IOException {
+            if (framesLeft <= 0) return false;
+            in.readFully(block);
+            left.readState(block, 0);
+            right.readState(block, 4);
+
+            int frames = Math.min(framesLeft, BLOCK_FRAMES);
+            for (int f = 0; f < frames; f++) {
+                int codes = block[BLOCK_HEADER_SIZE + f];
+                short l = left.decode(codes & 0x0F);
+                short r = right.decode((codes >> 4) & 0x0F);
+                pcm[4 * f] = (byte) l;
+                pcm[4 * f + 1] = (byte) (l >> 8);
+                pcm[4 * f + 2] = (byte) r;
+                pcm[4 * f + 3] = (byte) (r >> 8);
+            }
+            framesLeft -= frames;
+            pcmPos = 0;
+            pcmLen = frames * 4;
+            return true;
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+}
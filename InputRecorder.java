@@ -0,0 +1,265 @@
+package game;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Properties;
+import java.util.TreeSet;
+
+/**
+ * InputRecorder logs everything needed to reproduce a session: the tuning values in effect, the seed each level was built with
+ * (or the snapshot it was restored from), the player's actions consumed in every step, and the balls
+ * spawned by mouse clicks, tuning files reloaded while playing, and every change the level made to
+ * its physics quality to keep within its step budget. {@link ReplayPlayer} plays the log back.
+ *
+ * Actions are a bitmask per step. Most steps repeat the previous mask, so the log stores tokens:
+ * a run of steps with the current mask, a change of mask (XOR against the previous one), or an
+ * event for the next step. Each token is a varint of (value &lt;&lt; 2 | kind); an event's value says
+ * which event it is, and its data follows the token.
+ *
+ * Layout:
+ * <pre>
+ * header   magic "GRPL", version, player name, tuning
+ * segment  LEVEL number, seed, lives, time left | SNAPSHOT length, bytes; then tokens up to END
+ * end      END_OF_LOG
+ * </pre>
+ * Tuning is a count of entries followed by each key and value, sorted by key. Strings are a length and UTF-8 bytes.
+ */
+public class InputRecorder {
+
+    static final int MAGIC = 0x4752504C; // "GRPL"
+    static final short VERSION = 3;
+
+    // Segment kinds
+    static final byte SEGMENT_LEVEL = 1;
+    static final byte SEGMENT_SNAPSHOT = 2;
+    static final byte END_OF_LOG = 0;
+
+    // Token kinds, in the low two bits
+    static final int TOKEN_RUN = 0;
+    static final int TOKEN_MASK = 1;
+    static final int TOKEN_EVENT = 2;
+    static final int TOKEN_END = 3;
+
+    // Event values
+    static final int EVENT_BALL = 0;     // x, y as float bits
+    static final int EVENT_QUALITY = 1;  // sub-step cap, velocity and position iterations, a byte each
+    static final int EVENT_TUNING = 2;   // the tuning values applied
+
+    private byte[] data = new byte[4096];
+    private int size = 0;
+    private boolean inSegment = false;
+    private int mask = 0;        // Mask of the current run
+    private int run = 0;         // Steps in the current run, not yet written
+
+    /**
+     * Starts a recording.
+     *
+     * @param playerName the player's name, restored on replay.
+     * @param tuning     the tuning values in effect when the session starts, see {@link Tuning#getApplied()}.
+     */
+    public InputRecorder(String playerName, Properties tuning) {
+        putInt(MAGIC);
+        putShort(VERSION);
+        putString(playerName);
+        putTuning(tuning);
+    }
+
+    /**
+     * Starts a segment for a level built from scratch.
+     *
+     * @param levelNumber the level number.
+     * @param seed        the seed the level was built with.
+     * @param lives       the player's lives at the start.
+     * @param timeLeft    the countdown at the start.
+     */
+    public synchronized void beginLevel(int levelNumber, long seed, int lives, int timeLeft) {
+        endSegment();
+        ensure(1 + 4 + 8 + 4 + 4);
+        data[size++] = SEGMENT_LEVEL;
+        putInt(levelNumber);
+        putLong(seed);
+        putInt(lives);
+        putInt(timeLeft);
+        inSegment = true;
+    }
+
+    /**
+     * Starts a segment for a level restored from a snapshot (loading, quick-loading or rewinding).
+     *
+     * @param snapshot the restored state; its position is not changed.
+     */
+    public synchronized void beginSnapshot(ByteBuffer snapshot) {
+        endSegment();
+        int length = snapshot.remaining();
+        ensure(1 + 4 + length);
+        data[size++] = SEGMENT_SNAPSHOT;
+        putInt(length);
+        snapshot.duplicate().get(data, size, length);
+        size += length;
+        inSegment = true;
+    }
+
+    /**
+     * Records the actions consumed in one step. Called once per step by {@link StudentController}.
+     *
+     * @param actions the action bitmask, see {@link StudentController#ACTION_LEFT} and the others.
+     */
+    public synchronized void recordStep(int actions) {
+        if (!inSegment) return;
+        if (actions != mask) {
+            flushRun();
+            putToken(TOKEN_MASK, actions ^ mask);
+            mask = actions;
+        }
+        run++;
+    }
+
+    /**
+     * Records a ball spawned by a mouse click, applied at the start of the next step.
+     *
+     * @param x world x of the ball.
+     * @param y world y of the ball.
+     */
+    public synchronized void recordBall(float x, float y) {
+        if (!inSegment) return;
+        flushRun();
+        putToken(TOKEN_EVENT, EVENT_BALL);
+        putInt(Float.floatToIntBits(x));
+        putInt(Float.floatToIntBits(y));
+    }
+
+    /**
+     * Records a change of the level's physics quality, applied from the next step.
+     *
+     * @param cap                the sub-step limit.
+     * @param velocityIterations solver velocity iterations.
+     * @param positionIterations solver position iterations.
+     */
+    public synchronized void recordQuality(int cap, int velocityIterations, int positionIterations) {
+        if (!inSegment) return;
+        flushRun();
+        putToken(TOKEN_EVENT, EVENT_QUALITY);
+        ensure(3);
+        data[size++] = (byte) cap;
+        data[size++] = (byte) velocityIterations;
+        data[size++] = (byte) positionIterations;
+    }
+
+    /**
+     * Records a tuning file applied while playing, applied at the start of the next step.
+     *
+     * @param tuning the values applied.
+     */
+    public synchronized void recordTuning(Properties tuning) {
+        if (!inSegment) return;
+        flushRun();
+        putToken(TOKEN_EVENT, EVENT_TUNING);
+        putTuning(tuning);
+    }
+
+    /**
+     * Writes the log so far to a file. Recording can continue afterwards.
+     *
+     * @param file the file to write.
+     * @throws IOException if the file cannot be written.
+     */
+    public void write(Path file) throws IOException {
+        byte[] log;
+        synchronized (this) {
+            int savedSize = size;
+            int savedRun = run;
+            int savedMask = mask;
+            boolean savedInSegment = inSegment;
+            endSegment();
+            ensure(1);
+            data[size++] = END_OF_LOG;
+            log = Arrays.copyOf(data, size);
+            // Undo the terminators so recording carries on in the same segment
+            size = savedSize;
+            run = savedRun;
+            mask = savedMask;
+            inSegment = savedInSegment;
+        }
+        Files.write(file, log);
+    }
+
+    /** @return bytes recorded so far. */
+    public synchronized int size() {
+        return size;
+    }
+
+    private void endSegment() {
+        if (!inSegment) return;
+        flushRun();
+        putToken(TOKEN_END, 0);
+        inSegment = false;
+        mask = 0;
+    }
+
+    private void flushRun() {
+        if (run > 0) {
+            putToken(TOKEN_RUN, run);
+            run = 0;
+        }
+    }
+
+    private void putToken(int kind, int value) {
+        long token = ((long) value << 2) | kind;
+        ensure(10);
+        while ((token & ~0x7FL) != 0) {
+            data[size++] = (byte) ((token & 0x7F) | 0x80);
+            token >>>= 7;
+        }
+        data[size++] = (byte) token;
+    }
+
+    private void putTuning(Properties tuning) {
+        TreeSet<String> keys = new TreeSet<>(tuning.stringPropertyNames());
+        putShort((short) keys.size());
+        for (String key : keys) {
+            putString(key);
+            putString(tuning.getProperty(key));
+        }
+    }
+
+    private void putString(String text) {
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        putShort((short) bytes.length);
+        put(bytes, 0, bytes.length);
+    }
+
+    private void putInt(int v) {
+        ensure(4);
+        data[size++] = (byte) (v >>> 24);
+        data[size++] = (byte) (v >>> 16);
+        data[size++] = (byte) (v >>> 8);
+        data[size++] = (byte) v;
+    }
+
+    private void putShort(short v) {
+        ensure(2);
+        data[size++] = (byte) (v >>> 8);
+        data[size++] = (byte) v;
+    }
+
+    private void putLong(long v) {
+        putInt((int) (v >>> 32));
+        putInt((int) v);
+    }
+
+    private void put(byte[] bytes, int offset, int length) {
+        ensure(length);
+        System.arraycopy(bytes, offset, data, size, length);
+        size += length;
+    }
+
+    private void ensure(int extra) {
+        if (size + extra > data.length) {
+            data = Arrays.copyOf(data, Math.max(data.length * 2, size + extra));
+        }
+    }
+}
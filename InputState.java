@@ -0,0 +1,110 @@
+package game;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * InputState is a key-state bitset shared between the EDT and the physics step.
+ * AWT key events set and clear bits as they arrive; the step calls {@link #sample()} once
+ * to take a consistent copy, so game logic sees every key that is held at the same moment
+ * instead of reacting to one key event at a time.
+ *
+ * A key pressed and released between two steps is still reported as pressed by the next sample,
+ * and OS key-repeat events are ignored, so behaviour does not depend on repeat timing.
+ */
+public class InputState {
+
+    private static final int KEY_COUNT = 256;             // Covers every key code the game uses
+    private static final int WORDS = KEY_COUNT / 64;
+
+    // Written by the EDT
+    private final AtomicLongArray held = new AtomicLongArray(WORDS);     // Keys currently down
+    private final AtomicLongArray pressed = new AtomicLongArray(WORDS);  // Keys pressed since the last sample
+    private final AtomicLongArray pressTime = new AtomicLongArray(KEY_COUNT); // System.nanoTime of each press
+
+    // Written by the step, in sample()
+    private final long[] sampledHeld = new long[WORDS];
+    private final long[] sampledPressed = new long[WORDS];
+
+    /**
+     * Records a key going down. Repeated presses while the key is held are ignored.
+     *
+     * @param keyCode the AWT key code.
+     * @param nanos   when the event was received, from {@link System#nanoTime()}.
+     */
+    public void press(int keyCode, long nanos) {
+        if (keyCode < 0 || keyCode >= KEY_COUNT) return;
+        int word = keyCode >>> 6;
+        long bit = 1L << (keyCode & 63);
+        if ((held.get(word) & bit) != 0) return; // OS key repeat
+
+        pressTime.set(keyCode, nanos);
+        setBits(pressed, word, bit);
+        setBits(held, word, bit);
+    }
+
+    /**
+     * Records a key going up.
+     *
+     * @param keyCode the AWT key code.
+     */
+    public void release(int keyCode) {
+        if (keyCode < 0 || keyCode >= KEY_COUNT) return;
+        int word = keyCode >>> 6;
+        long bit = 1L << (keyCode & 63);
+        long current;
+        do {
+            current = held.get(word);
+        } while (!held.compareAndSet(word, current, current & ~bit));
+    }
+
+    /**
+     * Releases every key, for example when the game window loses focus.
+     */
+    public void clear() {
+        for (int w = 0; w < WORDS; w++) {
+            held.set(w, 0);
+        }
+    }
+
+    /**
+     * Takes the state for this step. Call once per step, before querying keys.
+     */
+    public void sample() {
+        for (int w = 0; w < WORDS; w++) {
+            long newlyPressed = pressed.getAndSet(w, 0);
+            sampledPressed[w] = newlyPressed;
+            sampledHeld[w] = held.get(w) | newlyPressed; // A quick tap still counts as held for one step
+        }
+    }
+
+    /**
+     * @param keyCode the AWT key code.
+     * @return true if the key was down in the last sample.
+     */
+    public boolean isDown(int keyCode) {
+        return (sampledHeld[keyCode >>> 6] & (1L << (keyCode & 63))) != 0;
+    }
+
+    /**
+     * @param keyCode the AWT key code.
+     * @return true if the key went down since the sample before the last.
+     */
+    public boolean wasPressed(int keyCode) {
+        return (sampledPressed[keyCode >>> 6] & (1L << (keyCode & 63))) != 0;
+    }
+
+    /**
+     * @param keyCode the AWT key code.
+     * @return when the key was last pressed, from {@link System#nanoTime()}.
+     */
+    public long getPressTime(int keyCode) {
+        return pressTime.get(keyCode);
+    }
+
+    private static void setBits(AtomicLongArray bits, int word, long bit) {
+        long current;
+        do {
+            current = bits.get(word);
+        } while (!bits.compareAndSet(word, current, current | bit));
+    }
+}
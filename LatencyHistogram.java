@@ -0,0 +1,120 @@
+package game;
+
+/**
+ * Fixed-size histogram of latencies with 0.5 ms buckets up to 100 ms and one overflow bucket.
+ * Recording never allocates, so it can be used on the step and paint paths.
+ */
+public class LatencyHistogram {
+
+    private static final long BUCKET_NANOS = 500_000L;  // 0.5 ms per bucket
+    private static final int BUCKETS = 200;             // Covers 0 - 100 ms
+
+    private final String name;
+    private final long[] counts = new long[BUCKETS + 1]; // Last bucket holds everything above 100 ms
+    private long total = 0;
+    private long sumNanos = 0;
+    private long maxNanos = 0;
+
+    /**
+     * Creates an empty histogram.
+     *
+     * @param name label used in reports.
+     */
+    public LatencyHistogram(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Adds one measurement.
+     *
+     * @param nanos the latency in nanoseconds; negative values are treated as 0.
+     */
+    public synchronized void record(long nanos) {
+        nanos = Math.max(0, nanos);
+        int bucket = (int) Math.min(BUCKETS, nanos / BUCKET_NANOS);
+        counts[bucket]++;
+        total++;
+        sumNanos += nanos;
+        maxNanos = Math.max(maxNanos, nanos);
+    }
+
+    /**
+     * Adds every measurement of another histogram to this one, for example to combine per-thread histograms.
+     *
+     * @param other the histogram to add; it is not changed.
+     */
+    public void merge(LatencyHistogram other) {
+        long[] otherCounts;
+        long otherTotal, otherSum, otherMax;
+        synchronized (other) {
+            otherCounts = other.counts.clone();
+            otherTotal = other.total;
+            otherSum = other.sumNanos;
+            otherMax = other.maxNanos;
+        }
+        synchronized (this) {
+            for (int i = 0; i <= BUCKETS; i++) {
+                counts[i] += otherCounts[i];
+            }
+            total += otherTotal;
+            sumNanos += otherSum;
+            maxNanos = Math.max(maxNanos, otherMax);
+        }
+    }
+
+    /** @return the number of measurements recorded. */
+    public synchronized long getCount() {
+        return total;
+    }
+
+    /** @return the mean latency in milliseconds. */
+    public synchronized double getMeanMillis() {
+        return total == 0 ? 0 : sumNanos / 1e6 / total;
+    }
+
+    /** @return the largest latency recorded, in milliseconds. */
+    public synchronized double getMaxMillis() {
+        return maxNanos / 1e6;
+    }
+
+    /**
+     * Estimates a percentile from the bucket counts.
+     *
+     * @param percentile a value between 0 and 100.
+     * @return the upper edge of the bucket containing the percentile, in milliseconds.
+     */
+    public synchronized double getPercentileMillis(double percentile) {
+        if (total == 0) return 0;
+        long target = (long) Math.ceil(total * percentile / 100.0);
+        long seen = 0;
+        for (int i = 0; i <= BUCKETS; i++) {
+            seen += counts[i];
+            if (seen >= target) {
+                return i == BUCKETS ? getMaxMillis() : (i + 1) * BUCKET_NANOS / 1e6;
+            }
+        }
+        return getMaxMillis();
+    }
+
+    /**
+     * Formats the summary statistics and a text bar chart of the non-empty buckets.
+     *
+     * @return the report text.
+     */
+    public synchronized String report() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("%s: n=%d mean=%.2fms p50=%.1fms p90=%.1fms p99=%.1fms max=%.2fms%n",
+                name, total, getMeanMillis(), getPercentileMillis(50), getPercentileMillis(90),
+                getPercentileMillis(99), getMaxMillis()));
+
+        long peak = 1;
+        for (long c : counts) peak = Math.max(peak, c);
+        for (int i = 0; i <= BUCKETS; i++) {
+            if (counts[i] == 0) continue;
+            String label = i == BUCKETS ? ">100.0ms" : String.format("%5.1f-%5.1fms", i * 0.5, (i + 1) * 0.5);
+            int bar = (int) Math.max(1, 50 * counts[i] / peak);
+            sb.append(String.format("  %-14s %7d %s%n", label, counts[i], "#".repeat(bar)));
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,86 @@
+package game;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * LatencyTracer follows each input event from the key press, through the step that consumes it,
+ * to the first frame painted after that step.
+ * The step thread hands consumed inputs to the painting thread through a small lock-free ring,
+ * and three histograms record event-to-step, step-to-frame and the end-to-end event-to-frame time.
+ */
+public class LatencyTracer {
+
+    private static final int RING_SIZE = 256;   // Inputs consumed but not yet painted
+    private static final int RING_MASK = RING_SIZE - 1;
+
+    private final long[] eventNanos = new long[RING_SIZE];
+    private final long[] stepNanos = new long[RING_SIZE];
+    private volatile long written = 0;  // Advanced by the step thread
+    private volatile long painted = 0;  // Advanced by the painting thread
+
+    private final LatencyHistogram eventToStep = new LatencyHistogram("event -> step");
+    private final LatencyHistogram stepToFrame = new LatencyHistogram("step  -> frame");
+    private final LatencyHistogram eventToFrame = new LatencyHistogram("event -> frame");
+
+    /**
+     * Called by the step that acts on an input event.
+     *
+     * @param eventTime when the key event was received, from {@link System#nanoTime()}.
+     */
+    public void inputConsumed(long eventTime) {
+        long now = System.nanoTime();
+        eventToStep.record(now - eventTime);
+
+        long w = written;
+        if (w - painted >= RING_SIZE) {
+            return; // Nothing is painting; drop rather than overwrite unpainted entries
+        }
+        int i = (int) (w & RING_MASK);
+        eventNanos[i] = eventTime;
+        stepNanos[i] = now;
+        written = w + 1; // Publish to the painting thread
+    }
+
+    /**
+     * Called when a frame has been painted. Every input consumed before this point is now visible.
+     */
+    public void framePainted() {
+        long now = System.nanoTime();
+        long end = written;
+        for (long p = painted; p < end; p++) {
+            int i = (int) (p & RING_MASK);
+            stepToFrame.record(now - stepNanos[i]);
+            eventToFrame.record(now - eventNanos[i]);
+        }
+        painted = end;
+    }
+
+    /** @return the end-to-end histogram, from key event to painted frame. */
+    public LatencyHistogram getEventToFrame() {
+        return eventToFrame;
+    }
+
+    /**
+     * Formats all three histograms.
+     *
+     * @return the report text.
+     */
+    public String report() {
+        return "Input latency report\n\n"
+                + eventToStep.report() + "\n"
+                + stepToFrame.report() + "\n"
+                + eventToFrame.report();
+    }
+
+    /**
+     * Writes the report to a file.
+     *
+     * @param file the file to write.
+     * @throws IOException if the file cannot be written.
+     */
+    public void exportReport(Path file) throws IOException {
+        Files.writeString(file, report());
+    }
+}
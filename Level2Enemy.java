@@ -3,24 +3,31 @@ package game;
 import city.cs.engine.*;
 import org.jbox2d.common.Vec2;
 
+import java.util.List;
+
 /**
  * Level2Enemy is a more advanced enemy that follows the player horizontally
  * and includes basic separation behavior from other enemies.
  */
 public class Level2Enemy extends Walker implements StepListener, CollisionListener {
 
-    // Define enemy's shape for physics and collisions
+    // Define enemy's shape for physics and collisions, used when the sprite
+    // has not been traced into the shape cache (see ShapeCompiler)
     private static final Shape enemyShape = new PolygonShape(
             -1.2f, 1.5f,   1.2f, 1.5f,   1.5f, 0.75f,
             1.5f, -1.5f,   -1.5f, -1.5f,   -1.5f, 0.75f
     );
 
     // Load image for enemy appearance
-    private static final BodyImage enemyImage = new BodyImage("data/level2_enemy.png", 6.0f);
+    private static final String IMAGE_FILE = "data/level2_enemy.png";
+    private static final float IMAGE_HEIGHT = 6.0f;
+    private static final BodyImage enemyImage = new BodyImage(IMAGE_FILE, IMAGE_HEIGHT);
+
+    private static final Tuning.FloatValue SPEED = Tuning.floatValue("level2Enemy.speed", 2.0f); // Horizontal speed
 
     private int health = 5;          // Enemy's hit points
-    private float speed = 2.0f;      // Horizontal speed
     private Game game;              // Reference to main game object
+    private final Vec2 velocity = new Vec2(); // Reused every step, as the engine copies it
 
     /**
      * Constructor that initializes the enemy in the level.
@@ -29,12 +36,15 @@ public class Level2Enemy extends Walker implements StepListener, CollisionListen
      * @param game  the main game logic object
      */
     public Level2Enemy(GameLevel world, Game game) {
-        super(world, enemyShape);
+        super(world);
         this.game = game;
 
+        ShapeCache.addFixtures(this, IMAGE_FILE, IMAGE_HEIGHT, enemyShape);
+
         addImage(enemyImage);             // Add enemy's visual appearance
         addCollisionListener(this);       // Listen for collisions (e.g., bullets)
-        world.addStepListener(this);      // Add to world update cycle
+        world.addStepListener(StepPipeline.Phase.AI, this); // Add to world update cycle until destroyed
+        world.addEnemy(this);             // Found by other enemies when keeping apart
     }
 
     /**
@@ -46,41 +56,37 @@ public class Level2Enemy extends Walker implements StepListener, CollisionListen
         Student student = ((GameLevel) getWorld()).getStudent();
 
         if (student != null) {
-            Vec2 studentPosition = student.getPosition();
             Vec2 enemyPosition = getPosition();
 
-            // Calculate direction vector toward the player
-            Vec2 direction = studentPosition.sub(enemyPosition);
-
-            // Normalize only the X component (to restrict movement to horizontal axis)
-            float lengthX = Math.abs(direction.x);
-            if (lengthX != 0) {
-                direction.x /= lengthX;
-            }
+            // Direction toward the player on the horizontal axis only: -1, 0 or 1
+            float directionX = Math.signum(student.getPosition().x - enemyPosition.x);
 
             // Start with target velocity towards player
-            Vec2 targetVelocity = new Vec2(direction.x * speed, getLinearVelocity().y);
+            float targetX = directionX * SPEED.get();
 
-            // Separation logic: avoid clustering with other Level2 enemies
-            for (Body b : getWorld().getDynamicBodies()) {
+            // Separation logic: avoid clustering with other Level2 enemies.
+            // Done in floats over the level's enemy list, so nothing is allocated each step.
+            List<Walker> enemies = ((GameLevel) getWorld()).getEnemies();
+            for (int i = 0; i < enemies.size(); i++) {
+                Walker b = enemies.get(i);
                 if ((b instanceof Level2Enemy || b instanceof Level2Enemy_2) && b != this) {
                     Vec2 otherEnemyPos = b.getPosition();
-                    Vec2 separationVector = enemyPosition.sub(otherEnemyPos);
-                    float distance = separationVector.length();
+                    float separationX = enemyPosition.x - otherEnemyPos.x;
+                    float separationY = enemyPosition.y - otherEnemyPos.y;
+                    float distance = (float) Math.sqrt(separationX * separationX + separationY * separationY);
 
                     if (distance < 4.0f && distance > 0) {
-                        separationVector.normalize();
                         float repulsionStrength = 8.0f / distance;
-                        separationVector = separationVector.mul(repulsionStrength);
 
                         // Adjust only horizontal component to avoid vertical jumping
-                        targetVelocity.addLocal(new Vec2(separationVector.x, 0));
+                        targetX += separationX * (1.0f / distance) * repulsionStrength;
                     }
                 }
             }
 
             // Apply final movement
-            setLinearVelocity(targetVelocity);
+            velocity.set(targetX, getLinearVelocity().y);
+            setLinearVelocity(velocity);
         }
     }
 
@@ -108,10 +114,18 @@ public class Level2Enemy extends Walker implements StepListener, CollisionListen
     public void takeDamage() {
         health--;
         if (health <= 0) {
-            if (getWorld() instanceof Level2) {
-                ((Level2) getWorld()).incrementDefeatedEnemies(); // Inform level of defeat
-            }
+            ((GameLevel) getWorld()).enemyDefeated(this); // Inform level of defeat
             destroy(); // Remove enemy from world
         }
     }
+
+    /** @return the remaining health. */
+    public int getHealth() {
+        return health;
+    }
+
+    /** @param health the remaining health, restored from a snapshot. */
+    public void setHealth(int health) {
+        this.health = health;
+    }
 }
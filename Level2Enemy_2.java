@@ -3,6 +3,8 @@ package game;
 import city.cs.engine.*;
 import org.jbox2d.common.Vec2;
 
+import java.util.List;
+
 /**
  * Level2Enemy_2 is a secondary enemy type in Level 2.
  * It follows the player horizontally and avoids overlapping with other enemies.
@@ -15,9 +17,11 @@ public class Level2Enemy_2 extends Walker implements StepListener, CollisionList
     // Appearance: enemy sprite/image
     private static final BodyImage newEnemyImage = new BodyImage("data/level2_enemy2.png", 6.0f);
 
+    private static final Tuning.FloatValue SPEED = Tuning.floatValue("level2Enemy_2.speed", 1.5f); // Movement speed
+
     private int health = 3;        // Health points
-    private float speed = 1.5f;    // Movement speed
     private Game game;             // Reference to game
+    private final Vec2 velocity = new Vec2(); // Reused every step, as the engine copies it
 
     /**
      * Constructor to initialize the enemy.
@@ -31,7 +35,8 @@ public class Level2Enemy_2 extends Walker implements StepListener, CollisionList
 
         addImage(newEnemyImage);         // Add the enemy image
         addCollisionListener(this);      // Listen for bullet collisions
-        world.addStepListener(this);     // Add to the world update cycle
+        world.addStepListener(StepPipeline.Phase.AI, this); // Add to the world update cycle until destroyed
+        world.addEnemy(this);            // Found by other enemies when keeping apart
     }
 
     /**
@@ -43,43 +48,37 @@ public class Level2Enemy_2 extends Walker implements StepListener, CollisionList
         Student student = ((GameLevel) getWorld()).getStudent();
 
         if (student != null) {
-            Vec2 studentPosition = student.getPosition();
             Vec2 enemyPosition = getPosition();
 
-            // Get direction vector toward the player
-            Vec2 direction = studentPosition.sub(enemyPosition);
-
-            // Normalize X axis only (for horizontal movement)
-            float lengthX = Math.abs(direction.x);
-            if (lengthX != 0) {
-                direction.x /= lengthX;
-            }
+            // Direction toward the player on the X axis only (for horizontal movement): -1, 0 or 1
+            float directionX = Math.signum(student.getPosition().x - enemyPosition.x);
 
             // Base movement toward player
-            Vec2 targetVelocity = new Vec2(direction.x * speed, getLinearVelocity().y);
+            float targetX = directionX * SPEED.get();
 
-            // Separation logic to avoid clustering with other enemies
-            for (Body b : getWorld().getDynamicBodies()) {
+            // Separation logic to avoid clustering with other enemies.
+            // Done in floats over the level's enemy list, so nothing is allocated each step.
+            List<Walker> enemies = ((GameLevel) getWorld()).getEnemies();
+            for (int i = 0; i < enemies.size(); i++) {
+                Walker b = enemies.get(i);
                 if ((b instanceof Level2Enemy || b instanceof Level2Enemy_2) && b != this) {
                     Vec2 otherEnemyPos = b.getPosition();
-                    Vec2 separationVector = enemyPosition.sub(otherEnemyPos);
-                    float distance = separationVector.length();
-
-                    if (distance < 4.0f && distance > 0) {
-                        separationVector.y = 0; // Ignore vertical difference
-                        separationVector.normalize();
+                    float separationX = enemyPosition.x - otherEnemyPos.x;
+                    float separationY = enemyPosition.y - otherEnemyPos.y;
+                    float distance = (float) Math.sqrt(separationX * separationX + separationY * separationY);
 
+                    if (distance < 4.0f && distance > 0 && separationX != 0) {
                         float repulsionStrength = 8.0f / distance;
-                        separationVector = separationVector.mul(repulsionStrength);
 
-                        // Push away horizontally from nearby enemies
-                        targetVelocity.addLocal(new Vec2(separationVector.x, 0));
+                        // Push away horizontally from nearby enemies, ignoring the vertical difference
+                        targetX += separationX * (1.0f / Math.abs(separationX)) * repulsionStrength;
                     }
                 }
             }
 
             // Apply the calculated movement
-            setLinearVelocity(targetVelocity);
+            velocity.set(targetX, getLinearVelocity().y);
+            setLinearVelocity(velocity);
         }
     }
 
@@ -108,11 +107,18 @@ public class Level2Enemy_2 extends Walker implements StepListener, CollisionList
     public void takeDamage() {
         health--;
         if (health <= 0) {
-            if (getWorld() instanceof Level2) {
-                ((Level2) getWorld()).incrementDefeatedEnemies(); // Notify level
-            }
+            ((GameLevel) getWorld()).enemyDefeated(this); // Inform level of defeat
             destroy(); // Enemy dies
         }
     }
-}
 
+    /** @return the remaining health. */
+    public int getHealth() {
+        return health;
+    }
+
+    /** @param health the remaining health, restored from a snapshot. */
+    public void setHealth(int health) {
+        this.health = health;
+    }
+}
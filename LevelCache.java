@@ -0,0 +1,143 @@
+package game;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * LevelCache keeps every level that has been loaded, so each level file is read and compiled at
+ * most once per run, however many times the level is built.
+ *
+ * Levels live in the levels directory as level&lt;number&gt;.lvl. A compiled level&lt;number&gt;.lvlc
+ * is used when it is at least as new as its source; otherwise the source is compiled in memory.
+ * A compiled file whose sections turn out to be damaged when the level is built is passed over
+ * for its source from then on (see {@link #recompile(int)}).
+ */
+public final class LevelCache {
+
+    public static final String DIRECTORY = "levels";
+    public static final String SOURCE_EXTENSION = ".lvl";
+    public static final String COMPILED_EXTENSION = ".lvlc";
+
+    private static final Map<Integer, CompiledLevel> levels = new HashMap<>();
+    private static final Set<Integer> damaged = new HashSet<>();  // Levels whose compiled file is not used
+    private static Path directory = Path.of(DIRECTORY);
+
+    private LevelCache() {
+    }
+
+    /**
+     * Returns a level, loading it on first use.
+     *
+     * @param number the level number.
+     * @return the level, or null if there is no level with that number.
+     * @throws IOException if the level's files cannot be read or contain an error.
+     */
+    public static synchronized CompiledLevel get(int number) throws IOException {
+        CompiledLevel level = levels.get(number);
+        if (level == null) {
+            level = load(number);
+            if (level != null) levels.put(number, level);
+        }
+        return level;
+    }
+
+    /**
+     * Drops a level from the cache, so its files are read again next time it is built.
+     *
+     * @param number the level number.
+     */
+    public static synchronized void invalidate(int number) {
+        levels.remove(number);
+        damaged.remove(number);
+    }
+
+    /**
+     * Drops a level found to be damaged while it was built, and compiles it from its source from
+     * now on instead of reading its compiled file again.
+     *
+     * @param number the level number.
+     * @return true if the level has a source to compile, so building it again may succeed.
+     */
+    public static synchronized boolean recompile(int number) {
+        levels.remove(number);
+        if (!Files.isRegularFile(directory.resolve("level" + number + SOURCE_EXTENSION))) return false;
+        damaged.add(number);
+        return true;
+    }
+
+    /** Drops every cached level. */
+    public static synchronized void clear() {
+        levels.clear();
+        damaged.clear();
+    }
+
+    /**
+     * Reads levels from another directory from now on, clearing the cache.
+     *
+     * @param dir the directory holding the level files.
+     */
+    public static synchronized void setDirectory(Path dir) {
+        directory = dir;
+        levels.clear();
+        damaged.clear();
+    }
+
+    /** @return the directory levels are read from. */
+    public static synchronized Path getDirectory() {
+        return directory;
+    }
+
+    private static CompiledLevel load(int number) throws IOException {
+        Path source = directory.resolve("level" + number + SOURCE_EXTENSION);
+        Path compiled = compiledPath(source);
+        boolean hasSource = Files.isRegularFile(source);
+
+        if (Files.isRegularFile(compiled) && !damaged.contains(number) && (!hasSource
+                || Files.getLastModifiedTime(compiled).compareTo(Files.getLastModifiedTime(source)) >= 0)) {
+            try {
+                CompiledLevel level = new CompiledLevel(ByteBuffer.wrap(Files.readAllBytes(compiled)));
+                if (level.getMeta().number == number) return level;
+                System.out.println(compiled + " is for level " + level.getMeta().number + ", ignoring it");
+            } catch (IOException | UncheckedIOException e) {
+                if (!hasSource) throw new IOException(compiled + ": " + e.getMessage(), e);
+                System.out.println(compiled + " is damaged (" + e.getMessage() + "), compiling " + source);
+            }
+        }
+        if (!hasSource) {
+            return null;
+        }
+        return new CompiledLevel(ByteBuffer.wrap(LevelCompiler.compile(source, number)));
+    }
+
+    /**
+     * @param source a level source file.
+     * @return the compiled file that goes with it.
+     */
+    static Path compiledPath(Path source) {
+        String name = source.getFileName().toString();
+        if (name.endsWith(SOURCE_EXTENSION)) name = name.substring(0, name.length() - SOURCE_EXTENSION.length());
+        return source.resolveSibling(name + COMPILED_EXTENSION);
+    }
+
+    /**
+     * @param file a level file, such as levels/level2.lvl.
+     * @return the level number in its name, or -1 if it is not named level&lt;number&gt;.
+     */
+    static int levelNumber(Path file) {
+        String name = file.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        if (!name.startsWith("level") || dot <= 5) return -1;
+        try {
+            return Integer.parseInt(name.substring(5, dot));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,364 @@
+package game;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * LevelCompiler turns a level description (levels/levelN.lvl) into the compact binary form
+ * read by {@link CompiledLevel} (levels/levelN.lvlc).
+ *
+ * A description is plain text, one command per line; '#' starts a comment.
+ * Coordinates are world units, delays and intervals are simulation steps (60 per second),
+ * and platform speeds are world units per step.
+ * <pre>
+ * name | background | music | description  rest of the line
+ * objective credits N | defeat N | boss                 may be repeated; every objective must be met
+ * player x y
+ * box x y halfWidth halfHeight
+ * random-platforms count xMin xMax yMin yMax halfWidthMin halfWidthMax spacing
+ * moving-platform x0 y0 x1 y1 [x2 y2 ...] speed [loop]   back and forth along the points, or round them
+ * entity Type x y
+ * scatter Type xMin xMax yMin yMax                     one entity at a random position
+ * spawner Type delay interval xMin xMax yMin yMax      a new entity at a random position every interval
+ * hazard Type [soundFile]                              touching it costs the player a life
+ * pickup Type credits                                  touching it gives credits and a double jump
+ * physics maxSubSteps maxTravel velocityIterations positionIterations budgetMillis   see {@link StepConfig}
+ * </pre>
+ * Entity types are the ones {@link DataLevel} knows how to build.
+ *
+ * The compiled form is a header, a table of sections and the sections themselves, so a reader
+ * only decodes the sections it uses. Strings are stored once in a string table and referred to by index.
+ *
+ * Levels are compiled on load if no up-to-date .lvlc exists; running this ahead of time as a build
+ * step just saves that work.
+ * Usage: java game.LevelCompiler [directory or .lvl files...]   (defaults to the levels directory)
+ */
+public class LevelCompiler {
+
+    static final int MAGIC = 0x474C5643; // "GLVC"
+    static final short VERSION = 4;
+
+    // Section ids
+    static final short SECTION_STRINGS = 1;
+    static final short SECTION_META = 2;
+    static final short SECTION_BOXES = 3;
+    static final short SECTION_RANDOM_PLATFORMS = 4;
+    static final short SECTION_MOVING = 5;
+    static final short SECTION_ENTITIES = 6;
+    static final short SECTION_SCATTER = 7;
+    static final short SECTION_SPAWNERS = 8;
+    static final short SECTION_RULES = 9;
+    static final short SECTION_PHYSICS = 10;
+    static final short SECTION_OBJECTIVES = 11;
+    static final int SECTION_COUNT = 11;
+
+    // Objective kinds
+    static final byte OBJECTIVE_CREDITS = 1;
+    static final byte OBJECTIVE_DEFEAT = 2;
+    static final byte OBJECTIVE_BOSS = 3;
+
+    // Rule kinds
+    static final byte RULE_HAZARD = 1;
+    static final byte RULE_PICKUP = 2;
+
+    private final String file;
+    private final Map<String, Integer> stringIndex = new HashMap<>();
+    private final List<String> strings = new ArrayList<>();
+    private final ByteArrayOutputStream[] sections = new ByteArrayOutputStream[SECTION_COUNT + 1];
+    private final int[] counts = new int[SECTION_COUNT + 1];
+    private int line;
+
+    private String name, background, music, description;
+    private float playerX = Float.NaN, playerY;
+
+    private LevelCompiler(String file) {
+        this.file = file;
+    }
+
+    /**
+     * Compiles a level description.
+     *
+     * @param source the .lvl file.
+     * @param number the level number stored in the compiled level.
+     * @return the compiled level bytes.
+     * @throws IOException if the file cannot be read or has an error, reported with its line number.
+     */
+    public static byte[] compile(Path source, int number) throws IOException {
+        return compile(source.toString(), Files.readAllLines(source, StandardCharsets.UTF_8), number);
+    }
+
+    /**
+     * Compiles the lines of a level description.
+     *
+     * @param file   the name used in error messages.
+     * @param lines  the description.
+     * @param number the level number stored in the compiled level.
+     * @return the compiled level bytes.
+     * @throws IOException if the description has an error.
+     */
+    static byte[] compile(String file, List<String> lines, int number) throws IOException {
+        LevelCompiler compiler = new LevelCompiler(file);
+        for (String text : lines) {
+            compiler.line++;
+            int comment = text.indexOf('#');
+            if (comment >= 0) text = text.substring(0, comment);
+            text = text.trim();
+            if (!text.isEmpty()) compiler.command(text);
+        }
+        return compiler.finish(number);
+    }
+
+    private void command(String text) throws IOException {
+        String[] words = text.split("\\s+");
+        String rest = text.substring(words[0].length()).trim();
+        switch (words[0]) {
+            case "name":        name = rest; break;
+            case "background":  background = rest; break;
+            case "music":       music = rest; break;
+            case "description": description = rest; break;
+            case "objective":
+                if (words.length == 2 && words[1].equals("boss")) {
+                    DataOutputStream boss = section(SECTION_OBJECTIVES);
+                    boss.writeByte(OBJECTIVE_BOSS);
+                    boss.writeInt(1);
+                    break;
+                }
+                expect(words, 3);
+                byte kind;
+                if (words[1].equals("credits")) kind = OBJECTIVE_CREDITS;
+                else if (words[1].equals("defeat")) kind = OBJECTIVE_DEFEAT;
+                else throw error("Unknown objective '" + words[1] + "', expected credits, defeat or boss");
+                DataOutputStream objective = section(SECTION_OBJECTIVES);
+                objective.writeByte(kind);
+                objective.writeInt(integer(words[2]));
+                break;
+            case "player":
+                expect(words, 3);
+                playerX = number(words[1]);
+                playerY = number(words[2]);
+                break;
+            case "box":
+                expect(words, 5);
+                floats(section(SECTION_BOXES), words, 1, 4);
+                break;
+            case "random-platforms":
+                expect(words, 9);
+                DataOutputStream platforms = section(SECTION_RANDOM_PLATFORMS);
+                platforms.writeInt(integer(words[1]));
+                floats(platforms, words, 2, 7);
+                break;
+            case "moving-platform":
+                boolean loop = words[words.length - 1].equals("loop");
+                int numbers = words.length - 1 - (loop ? 1 : 0);
+                if (numbers < 5 || numbers % 2 == 0) {
+                    throw error("Expected: moving-platform x0 y0 x1 y1 [x2 y2 ...] speed [loop]");
+                }
+                DataOutputStream moving = section(SECTION_MOVING);
+                moving.writeBoolean(loop);
+                moving.writeFloat(number(words[numbers]));
+                moving.writeShort((numbers - 1) / 2);
+                floats(moving, words, 1, numbers - 1);
+                break;
+            case "entity":
+                expect(words, 4);
+                DataOutputStream entity = section(SECTION_ENTITIES);
+                entity.writeShort(type(words[1]));
+                floats(entity, words, 2, 2);
+                break;
+            case "scatter":
+                expect(words, 6);
+                DataOutputStream scatter = section(SECTION_SCATTER);
+                scatter.writeShort(type(words[1]));
+                floats(scatter, words, 2, 4);
+                break;
+            case "spawner":
+                expect(words, 8);
+                DataOutputStream spawner = section(SECTION_SPAWNERS);
+                spawner.writeShort(type(words[1]));
+                int interval = integer(words[3]);
+                if (interval <= 0) throw error("Spawner interval must be at least 1 step");
+                spawner.writeInt(integer(words[2]));
+                spawner.writeInt(interval);
+                floats(spawner, words, 4, 4);
+                break;
+            case "hazard":
+                if (words.length != 2 && words.length != 3) throw error("Expected: hazard Type [soundFile]");
+                DataOutputStream hazard = section(SECTION_RULES);
+                hazard.writeByte(RULE_HAZARD);
+                hazard.writeShort(type(words[1]));
+                hazard.writeShort(words.length == 3 ? string(words[2]) : -1);
+                break;
+            case "pickup":
+                expect(words, 3);
+                DataOutputStream pickup = section(SECTION_RULES);
+                pickup.writeByte(RULE_PICKUP);
+                pickup.writeShort(type(words[1]));
+                pickup.writeShort(integer(words[2]));
+                break;
+            case "physics":
+                expect(words, 6);
+                if (sections[SECTION_PHYSICS] != null) throw error("'physics' is already set");
+                try {
+                    new StepConfig(integer(words[1]), number(words[2]), integer(words[3]), integer(words[4]), number(words[5]));
+                } catch (IllegalArgumentException e) {
+                    throw error("Sub-steps and iterations must be at least 1, travel above 0 and the budget 0 or more");
+                }
+                DataOutputStream physics = section(SECTION_PHYSICS);
+                physics.writeInt(integer(words[1]));
+                physics.writeFloat(number(words[2]));
+                physics.writeInt(integer(words[3]));
+                physics.writeInt(integer(words[4]));
+                physics.writeFloat(number(words[5]));
+                break;
+            default:
+                throw error("Unknown command '" + words[0] + "'");
+        }
+    }
+
+    private byte[] finish(int number) throws IOException {
+        if (background == null) throw error("Missing 'background'");
+        if (sections[SECTION_OBJECTIVES] == null) throw error("Missing 'objective'");
+        if (Float.isNaN(playerX)) throw error("Missing 'player'");
+
+        DataOutputStream meta = section(SECTION_META);
+        meta.writeInt(number);
+        meta.writeShort(string(name != null ? name : "Level " + number));
+        meta.writeShort(string(background));
+        meta.writeShort(music != null ? string(music) : -1);
+        meta.writeShort(description != null ? string(description) : -1);
+        meta.writeFloat(playerX);
+        meta.writeFloat(playerY);
+
+        for (String s : strings) {
+            byte[] utf = s.getBytes(StandardCharsets.UTF_8);
+            DataOutputStream out = section(SECTION_STRINGS);
+            out.writeShort(utf.length);
+            out.write(utf);
+        }
+
+        // Header and section table, then each section as its entry count followed by its records
+        int present = 0;
+        for (int id = 1; id <= SECTION_COUNT; id++) {
+            if (sections[id] != null) present++;
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(MAGIC);
+        out.writeShort(VERSION);
+        out.writeShort(present);
+        int offset = 8 + present * 10;
+        for (int id = 1; id <= SECTION_COUNT; id++) {
+            if (sections[id] == null) continue;
+            int length = 4 + sections[id].size();
+            out.writeShort(id);
+            out.writeInt(offset);
+            out.writeInt(length);
+            offset += length;
+        }
+        for (int id = 1; id <= SECTION_COUNT; id++) {
+            if (sections[id] == null) continue;
+            out.writeInt(counts[id]);
+            sections[id].writeTo(out);
+        }
+        return bytes.toByteArray();
+    }
+
+    /** Returns the writer for a section, counting one more record in it. */
+    private DataOutputStream section(short id) {
+        if (sections[id] == null) sections[id] = new ByteArrayOutputStream();
+        counts[id]++;
+        return new DataOutputStream(sections[id]);
+    }
+
+    /** Writes words as floats to a record. */
+    private void floats(DataOutputStream out, String[] words, int from, int count) throws IOException {
+        for (int i = from; i < from + count; i++) {
+            out.writeFloat(number(words[i]));
+        }
+    }
+
+    private short type(String type) throws IOException {
+        if (!DataLevel.isEntityType(type)) throw error("Unknown entity type '" + type + "'");
+        return string(type);
+    }
+
+    private short string(String s) {
+        return (short) (int) stringIndex.computeIfAbsent(s, k -> {
+            strings.add(k);
+            return strings.size() - 1;
+        });
+    }
+
+    private void expect(String[] words, int count) throws IOException {
+        if (words.length != count) {
+            throw error("'" + words[0] + "' takes " + (count - 1) + " values, found " + (words.length - 1));
+        }
+    }
+
+    private float number(String word) throws IOException {
+        try {
+            return Float.parseFloat(word);
+        } catch (NumberFormatException e) {
+            throw error("Not a number: '" + word + "'");
+        }
+    }
+
+    private int integer(String word) throws IOException {
+        try {
+            return Integer.parseInt(word);
+        } catch (NumberFormatException e) {
+            throw error("Not a whole number: '" + word + "'");
+        }
+    }
+
+    private IOException error(String message) {
+        return new IOException(file + ":" + line + ": " + message);
+    }
+
+    /**
+     * Compiles every .lvl file in the levels directory, or the given directories and files,
+     * writing each .lvlc next to its source.
+     */
+    public static void main(String[] args) throws IOException {
+        List<Path> sources = new ArrayList<>();
+        for (String arg : args.length > 0 ? args : new String[] {LevelCache.DIRECTORY}) {
+            Path path = Path.of(arg);
+            if (Files.isDirectory(path)) {
+                try (DirectoryStream<Path> dir = Files.newDirectoryStream(path, "*" + LevelCache.SOURCE_EXTENSION)) {
+                    dir.forEach(sources::add);
+                }
+            } else {
+                sources.add(path);
+            }
+        }
+
+        int failed = 0;
+        for (Path source : sources) {
+            int number = LevelCache.levelNumber(source);
+            if (number < 0) {
+                System.out.println(source + ": name must be level<number>" + LevelCache.SOURCE_EXTENSION);
+                failed++;
+                continue;
+            }
+            try {
+                byte[] compiled = compile(source, number);
+                Path target = LevelCache.compiledPath(source);
+                Files.write(target, compiled);
+                System.out.println(source + " -> " + target + " (" + compiled.length + " bytes)");
+            } catch (IOException e) {
+                System.out.println(e.getMessage());
+                failed++;
+            }
+        }
+        if (failed > 0) System.exit(1);
+    }
+}
@@ -0,0 +1,128 @@
+package game;
+
+/**
+ * LevelObjectives tracks the goals a level declares (see {@link CompiledLevel#getObjectives()})
+ * and reports the moment the last one is met.
+ *
+ * Nothing is polled: the level passes on each change to a counter a goal can depend on (credits,
+ * enemies defeated, the boss), and only the goals of that kind are checked again. When every goal
+ * is met the completion listener runs straight away, inside the step that met it.
+ * If the counters go back (a snapshot is restored) the level is no longer complete, and meeting the
+ * goals again runs the listener again.
+ */
+public class LevelObjectives {
+
+    private final CompiledLevel.Objective[] goals;
+    private final boolean[] met;
+    private int unmet;
+
+    private int credits = 0;
+    private int defeated = 0;
+    private boolean bossDefeated = false;
+
+    private Runnable onComplete;
+
+    /**
+     * @param goals the level's goals, all of which must be met. A level without goals is never complete.
+     */
+    public LevelObjectives(CompiledLevel.Objective[] goals) {
+        this.goals = goals;
+        this.met = new boolean[goals.length];
+        this.unmet = goals.length;
+        evaluate((byte) 0); // Goals of 0 are met from the start
+    }
+
+    /**
+     * @param onComplete run when the last goal is met, or null for nothing.
+     */
+    public void setCompletionListener(Runnable onComplete) {
+        this.onComplete = onComplete;
+    }
+
+    /** @param credits the player's credits, after they changed. */
+    public void creditsChanged(int credits) {
+        this.credits = credits;
+        evaluate(LevelCompiler.OBJECTIVE_CREDITS);
+    }
+
+    /** @param boss true if the enemy defeated was the level's boss. */
+    public void enemyDefeated(boolean boss) {
+        defeated++;
+        if (boss) bossDefeated = true;
+        evaluate(LevelCompiler.OBJECTIVE_DEFEAT);
+        if (boss) evaluate(LevelCompiler.OBJECTIVE_BOSS);
+    }
+
+    /**
+     * Sets the defeat counters restored from a snapshot and checks every goal again.
+     *
+     * @param defeated     enemies defeated.
+     * @param bossDefeated whether the boss has been defeated.
+     */
+    public void restore(int defeated, boolean bossDefeated) {
+        this.defeated = defeated;
+        this.bossDefeated = bossDefeated;
+        evaluate((byte) 0);
+    }
+
+    /** @return true once every goal is met. */
+    public boolean isComplete() {
+        return unmet == 0 && goals.length > 0;
+    }
+
+    /** @return enemies defeated so far. */
+    public int getDefeated() {
+        return defeated;
+    }
+
+    /** @return true once the boss has been defeated. */
+    public boolean isBossDefeated() {
+        return bossDefeated;
+    }
+
+    /** @return what the player still has to do, one goal per sentence. */
+    public String describe() {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < goals.length; i++) {
+            if (met[i]) continue;
+            if (text.length() > 0) text.append(' ');
+            text.append(describe(goals[i]));
+        }
+        return text.length() > 0 ? text.toString() : "Objective complete!";
+    }
+
+    private static String describe(CompiledLevel.Objective goal) {
+        switch (goal.kind) {
+            case LevelCompiler.OBJECTIVE_CREDITS:
+                return "Collect at least " + goal.value + " credits to continue!";
+            case LevelCompiler.OBJECTIVE_BOSS:
+                return "Defeat the boss to continue!";
+            default:
+                return "Defeat " + goal.value + (goal.value == 1 ? " enemy" : " enemies") + " to continue!";
+        }
+    }
+
+    /** Checks the goals of one kind again, or all of them for kind 0. */
+    private void evaluate(byte kind) {
+        boolean wasComplete = isComplete();
+        for (int i = 0; i < goals.length; i++) {
+            if (kind != 0 && goals[i].kind != kind) continue;
+            boolean now = isMet(goals[i]);
+            if (now != met[i]) {
+                met[i] = now;
+                unmet += now ? -1 : 1;
+            }
+        }
+        if (!wasComplete && isComplete() && onComplete != null) {
+            onComplete.run();
+        }
+    }
+
+    private boolean isMet(CompiledLevel.Objective goal) {
+        switch (goal.kind) {
+            case LevelCompiler.OBJECTIVE_CREDITS: return credits >= goal.value;
+            case LevelCompiler.OBJECTIVE_DEFEAT:  return defeated >= goal.value;
+            default:                              return bossDefeated;
+        }
+    }
+}
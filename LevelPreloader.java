@@ -0,0 +1,104 @@
+package game;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * LevelPreloader builds the next level on a background thread while the current one is played,
+ * so moving on to it only has to swap worlds.
+ *
+ * A prepared level is complete but not started: its file is compiled, every body is placed and its
+ * background image is loaded. Nothing else touches it until it is taken, so building it off the EDT
+ * is safe. A level that is not ready when it is needed is waited for; one that was never prepared
+ * (or was discarded) is built by the caller as before.
+ */
+public class LevelPreloader {
+
+    private final Game game;
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "level-preload");
+        t.setDaemon(true);
+        t.setPriority(Thread.MIN_PRIORITY); // Yield to the running level
+        return t;
+    });
+
+    private int number = -1;             // Level being prepared, or -1 for none
+    private Future<GameLevel> prepared;
+
+    /**
+     * @param game the game the levels are built for.
+     */
+    public LevelPreloader(Game game) {
+        this.game = game;
+    }
+
+    /**
+     * Starts building a level in the background, replacing any level already prepared.
+     *
+     * @param number the level number.
+     * @param seed   seed for the level's random layout and spawns.
+     */
+    public synchronized void prepare(int number, long seed) {
+        discard();
+        this.number = number;
+        this.prepared = executor.submit(() -> {
+            long start = System.nanoTime();
+            GameLevel level = game.createLevel(number, seed);
+            if (level != null) {
+                GameView.loadBackground(level.getBackgroundImage());
+                System.out.printf("Level %d prepared in %.0f ms%n", number, (System.nanoTime() - start) / 1e6);
+            }
+            return level;
+        });
+    }
+
+    /**
+     * Takes the prepared level, waiting for it if it is still being built.
+     *
+     * @param number the level wanted.
+     * @return the level, or null if that level was not prepared or could not be built.
+     */
+    public synchronized GameLevel take(int number) {
+        if (prepared == null || this.number != number) return null;
+        Future<GameLevel> future = prepared;
+        prepared = null;
+        this.number = -1;
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (ExecutionException | CancellationException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    /**
+     * Drops the prepared level if it is the given one, e.g. because its file changed.
+     *
+     * @param number the level number.
+     * @return true if it was prepared and has been dropped.
+     */
+    public synchronized boolean discard(int number) {
+        if (prepared == null || this.number != number) return false;
+        discard();
+        return true;
+    }
+
+    /** Drops whatever level is prepared. */
+    public synchronized void discard() {
+        if (prepared != null) prepared.cancel(false);
+        prepared = null;
+        number = -1;
+    }
+
+    /** Stops the background thread. */
+    public synchronized void close() {
+        discard();
+        executor.shutdownNow();
+    }
+}
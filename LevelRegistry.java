@@ -0,0 +1,79 @@
+package game;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.TreeSet;
+
+/**
+ * LevelRegistry lists the levels in the levels directory, in the order they are played.
+ *
+ * A level is any file named level&lt;number&gt;.lvl or level&lt;number&gt;.lvlc; levels are played in
+ * number order, and the numbers need not be consecutive. Adding a level is just adding its file.
+ * The directory is scanned on first use and again after {@link #refresh()}.
+ */
+public final class LevelRegistry {
+
+    private static int[] numbers;     // Sorted; null until scanned
+    private static Path scanned;      // Directory the numbers came from
+
+    private LevelRegistry() {
+    }
+
+    /** @return every level number, in play order. */
+    public static synchronized int[] numbers() {
+        Path directory = LevelCache.getDirectory();
+        if (numbers == null || !directory.equals(scanned)) {
+            numbers = scan(directory);
+            scanned = directory;
+        }
+        return numbers.clone();
+    }
+
+    /** @return the first level, or -1 if there are none. */
+    public static int first() {
+        int[] all = numbers();
+        return all.length > 0 ? all[0] : -1;
+    }
+
+    /**
+     * @param number a level number.
+     * @return the level played after it, or -1 if it is the last.
+     */
+    public static int next(int number) {
+        for (int n : numbers()) {
+            if (n > number) return n;
+        }
+        return -1;
+    }
+
+    /**
+     * @param number a level number.
+     * @return true if the levels directory has a file for it.
+     */
+    public static boolean contains(int number) {
+        return Arrays.binarySearch(numbers(), number) >= 0;
+    }
+
+    /** Scans the levels directory again on next use, e.g. after a level file was added or removed. */
+    public static synchronized void refresh() {
+        numbers = null;
+    }
+
+    private static int[] scan(Path directory) {
+        TreeSet<Integer> found = new TreeSet<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "level*")) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                if (!name.endsWith(LevelCache.SOURCE_EXTENSION) && !name.endsWith(LevelCache.COMPILED_EXTENSION)) continue;
+                int number = LevelCache.levelNumber(file);
+                if (number >= 0) found.add(number);
+            }
+        } catch (IOException e) {
+            System.out.println("Could not list levels in " + directory + ": " + e.getMessage());
+        }
+        return found.stream().mapToInt(Integer::intValue).toArray();
+    }
+}
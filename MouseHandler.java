@@ -5,7 +5,7 @@ import java.awt.event.MouseEvent;
 import java.awt.event.MouseListener;
 import org.jbox2d.common.Vec2;
 import java.awt.Point;
-import javax.swing.Timer;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * MouseHandler listens for mouse events and creates balls in the game world
@@ -14,13 +14,14 @@ import javax.swing.Timer;
  */
 public class MouseHandler implements MouseListener {
 
-    private GameLevel world;
+    private static final int BALL_LIFETIME_STEPS = 5 * GameLevel.STEPS_PER_SECOND; // Balls last 5 seconds
+
     private GameView view;
     private int maxBalls = 5;  // Maximum number of balls allowed in the game world at once
-    private int currentBalls = 0;  // Current number of balls in the game world
+    private final AtomicInteger currentBalls = new AtomicInteger(); // Balls alive, changed on the EDT and the step
+    private volatile GameLevel countedLevel; // Level the balls were counted in
 
-    public MouseHandler(GameLevel w, GameView v) {
-        this.world = w;
+    public MouseHandler(GameView v) {
         this.view = v;
     }
 
@@ -28,34 +29,58 @@ public class MouseHandler implements MouseListener {
     @Override
     public void mousePressed(MouseEvent e) {
         // Check if the maximum number of balls has not been exceeded
-        if (currentBalls < maxBalls) {
-            // Create a new ball with a circular shape
-            Shape circleShape = new CircleShape(1f);
-            DynamicBody ball = new DynamicBody(world, circleShape);
+        if (currentBalls.get() < maxBalls) {
+            GameLevel world = (GameLevel) view.getWorld(); // Follows the view across level changes
+            if (world != countedLevel) {
+                // Balls left in the previous level no longer count
+                countedLevel = world;
+                currentBalls.set(0);
+            }
 
             // Get the mouse coordinates in pixels and convert them to world coordinates
             Point mousePoint = e.getPoint();
             Vec2 worldPoint = view.viewToWorld(mousePoint);
-            ball.setPosition(worldPoint);  // Set the ball's position in the game world
-
-            // Apply a random force to the ball to make it move
-            float randomX = (float) (Math.random() * 10 - 5);  // Random X velocity
-            float randomY = (float) (Math.random() * 10 - 5);  // Random Y velocity
-            ball.setLinearVelocity(new Vec2(randomX, randomY));
 
             // Increment the ball count
-            currentBalls++;
+            currentBalls.incrementAndGet();
 
-            // Set a timer to destroy the ball after 5 seconds
-            Timer timer = new Timer(5000, event -> {
-                ball.destroy();  // Remove the ball after 5 seconds
-                currentBalls--;  // Decrease the ball count
+            // Mouse events arrive on the EDT, so the ball is created between physics steps
+            world.post(() -> {
+                InputRecorder recorder = world.getGame().getInputRecorder();
+                if (recorder != null) recorder.recordBall(worldPoint.x, worldPoint.y);
+                spawnBall(world, worldPoint, () -> {
+                    if (countedLevel == world) currentBalls.decrementAndGet();
+                });
             });
-            timer.setRepeats(false);  // Timer should run only once
-            timer.start();
         }
     }
 
+    /**
+     * Creates a ball at the given position and schedules its removal.
+     * Runs at the start of a step, via the level's command queue (also when replaying a recording).
+     *
+     * @param world      the level to create the ball in.
+     * @param worldPoint where to create the ball.
+     * @param onRemoved  called when the ball is destroyed, however that happens, or null.
+     */
+    static void spawnBall(GameLevel world, Vec2 worldPoint, Runnable onRemoved) {
+        // Create a new ball with a circular shape
+        Shape circleShape = new CircleShape(1f);
+        DynamicBody ball = new DynamicBody(world, circleShape);
+        ball.setPosition(worldPoint);  // Set the ball's position in the game world
+
+        // Apply a random force to the ball to make it move
+        float randomX = world.getRandom().nextFloat() * 10 - 5;  // Random X velocity, from the level's seed
+        float randomY = world.getRandom().nextFloat() * 10 - 5;  // Random Y velocity
+        ball.setLinearVelocity(new Vec2(randomX, randomY));
+        if (onRemoved != null) {
+            ball.addDestructionListener(e -> onRemoved.run());  // Decrease the ball count
+        }
+
+        // Destroy the ball after 5 seconds of game time
+        world.getScheduler().schedule("removeBall", BALL_LIFETIME_STEPS, ball::destroy);
+    }
+
     // Empty implementations for other mouse events
     @Override
     public void mouseClicked(MouseEvent e) {}
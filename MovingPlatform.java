@@ -4,18 +4,34 @@ import city.cs.engine.*;
 import org.jbox2d.common.Vec2;
 
 /**
- * A MovingPlatform is a static body that simulates movement between two positions
- * by manually updating its position every simulation step.
+ * A MovingPlatform follows a path of waypoints, back and forth or round a loop.
+ *
+ * The platform is moved by its velocity rather than by setting its position, so the physics
+ * engine carries anything standing on it and does not have to re-insert it into the broadphase
+ * every step. The engine has no kinematic bodies, so the platform is a very heavy dynamic body
+ * with gravity switched off; each step its velocity is set to reach the next point on the path,
+ * which also takes back any push from a rider.
+ *
+ * The path is split into straight segments when the platform is built, so a step costs the same
+ * however long the path is. Paths should stay clear of the level's scenery, which would block them.
  */
-public class MovingPlatform extends StaticBody {
+public class MovingPlatform extends DynamicBody {
 
     // Define the shape of the platform (a simple rectangle)
     private static final Shape platformShape = new BoxShape(3f, 0.5f);
+    private static final float DENSITY = 1000f;   // Heavy enough that riders barely push it
 
-    private final Vec2 startPos;     // Starting point of the platform
-    private final Vec2 endPos;       // Ending point of the platform
-    private boolean movingToEnd = true;  // Direction flag
-    private float speed;             // Speed of movement
+    // One entry per segment; a back-and-forth path lists its segments forwards then backwards
+    private final float[] startX, startY;    // Segment start
+    private final float[] dirX, dirY;        // Unit direction
+    private final float[] length;
+    private final float pathLength;          // Sum of the segment lengths
+    private final int forwardSegments;       // Segments before the path turns back
+
+    private final float speed;               // World units per step
+    private int segment = 0;                 // Segment holding the next target point
+    private float along = 0;                 // Distance of the target point along that segment
+    private final Vec2 velocity = new Vec2(); // Reused every step, as the engine copies it
 
     /**
      * Constructs a moving platform between two points.
@@ -23,19 +39,59 @@ public class MovingPlatform extends StaticBody {
      * @param world    the physics world the platform belongs to
      * @param startPos the initial position
      * @param endPos   the target position to move toward
-     * @param speed    the movement speed
+     * @param speed    the movement speed in world units per step
      */
     public MovingPlatform(GameLevel world, Vec2 startPos, Vec2 endPos, float speed) {
-        super(world, platformShape);
-        this.startPos = startPos;
-        this.endPos = endPos;
+        this(world, new float[] {startPos.x, startPos.y, endPos.x, endPos.y}, speed, false);
+    }
+
+    /**
+     * Constructs a moving platform that follows waypoints.
+     *
+     * @param world     the physics world the platform belongs to
+     * @param waypoints the path as x0, y0, x1, y1, ...; at least two points
+     * @param speed     the movement speed in world units per step
+     * @param loop      true to go from the last point back to the first, false to retrace the path
+     */
+    public MovingPlatform(GameLevel world, float[] waypoints, float speed, boolean loop) {
+        super(world);
+        new SolidFixture(this, platformShape, DENSITY);
+        setGravityScale(0);
+        setFixedRotation(true);  // Riders landing off-centre must not tip it
+        world.addMovingPlatform(this);
+
+        int points = waypoints.length / 2;
+        if (points < 2) throw new IllegalArgumentException("A moving platform needs at least two waypoints");
+        forwardSegments = loop ? points : points - 1;
+        int segments = loop ? points : 2 * (points - 1);
+        startX = new float[segments];
+        startY = new float[segments];
+        dirX = new float[segments];
+        dirY = new float[segments];
+        length = new float[segments];
+        float total = 0;
+        for (int s = 0; s < segments; s++) {
+            // Waypoint indices at each end of the segment, walking back down the path after the turn
+            int from = s < forwardSegments ? s : segments - s;
+            int to = s < forwardSegments ? (s + 1) % points : from - 1;
+            float dx = waypoints[2 * to] - waypoints[2 * from];
+            float dy = waypoints[2 * to + 1] - waypoints[2 * from + 1];
+            float len = (float) Math.sqrt(dx * dx + dy * dy);
+            startX[s] = waypoints[2 * from];
+            startY[s] = waypoints[2 * from + 1];
+            dirX[s] = len > 0 ? dx / len : 0;
+            dirY[s] = len > 0 ? dy / len : 0;
+            length[s] = len;
+            total += len;
+        }
+        pathLength = total;
         this.speed = speed;
 
         // Set the initial position of the platform
-        this.setPosition(startPos);
+        this.setPosition(new Vec2(waypoints[0], waypoints[1]));
 
-        // Add step listener to move the platform on each simulation step
-        world.addStepListener(new StepListener() {
+        // Add step listener to move the platform on each simulation step, for as long as the platform exists
+        world.addStepListener(StepPipeline.Phase.MOVEMENT, new StepListener() {
             @Override
             public void preStep(StepEvent e) {
                 move();  // Move the platform before each simulation step
@@ -45,26 +101,51 @@ public class MovingPlatform extends StaticBody {
             public void postStep(StepEvent e) {
                 // No action needed after the step
             }
-        });
+        }, this);
+    }
+
+    /** @return true if the platform is on the outward part of its path. */
+    public boolean isMovingToEnd() {
+        return segment < forwardSegments;
+    }
+
+    /** @return how far along its whole path the platform is heading, for snapshots. */
+    public float getPathDistance() {
+        float distance = along;
+        for (int s = 0; s < segment; s++) {
+            distance += length[s];
+        }
+        return distance;
+    }
+
+    /** @param distance how far along its whole path the platform is heading, restored from a snapshot. */
+    public void setPathDistance(float distance) {
+        segment = 0;
+        along = pathLength > 0 ? distance % pathLength : 0;
+        if (along < 0) along += pathLength;
+        while (segment < length.length - 1 && along >= length[segment]) {
+            along -= length[segment];
+            segment++;
+        }
     }
 
     /**
-     * Updates the platform's position, moving it between start and end points.
+     * Advances the target point along the path and sets the velocity that reaches it this step.
      */
     private void move() {
-        Vec2 currentPos = getPosition();
-        Vec2 targetPos = movingToEnd ? endPos : startPos;
-
-        // Calculate direction vector to the target position
-        Vec2 direction = targetPos.sub(currentPos);
-        float distance = direction.length();
-
-        // If the platform is close enough to the target, reverse direction
-        if (distance < 0.1f) {
-            movingToEnd = !movingToEnd;  // Toggle direction
-        } else {
-            direction.normalize();  // Normalize to get unit vector
-            this.setPosition(currentPos.add(direction.mul(speed)));  // Move toward target
+        if (pathLength <= 0) return;
+        along += speed;
+        while (along >= length[segment]) {
+            along -= length[segment];
+            segment = (segment + 1) % length.length;
         }
+
+        // Aim from where the platform actually is, so any drift is corrected within one step
+        float targetX = startX[segment] + dirX[segment] * along;
+        float targetY = startY[segment] + dirY[segment] * along;
+        Vec2 position = getPosition();
+        velocity.set((targetX - position.x) * GameLevel.STEPS_PER_SECOND,
+                (targetY - position.y) * GameLevel.STEPS_PER_SECOND);
+        setLinearVelocity(velocity);
     }
 }
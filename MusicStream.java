@@ -0,0 +1,156 @@
+package game;
+
+import javax.sound.sampled.AudioInputStream;
+import java.io.IOException;
+
+/**
+ * Streams a music file from disk through a small ring buffer.
+ * The {@link MusicStreamer} thread decodes into the ring and the mixer thread reads from it,
+ * so only a fraction of a second of PCM is ever held in memory.
+ * When the file ends it is reopened straight away, giving gapless looping.
+ */
+public class MusicStream implements AudioSource {
+
+    private static final int RING_FRAMES = 16384;           // About 370 ms at 44.1 kHz
+    private static final int RING_SIZE = RING_FRAMES * 2;   // Interleaved stereo samples
+    private static final int RING_MASK = RING_SIZE - 1;
+    private static final int CHUNK_BYTES = 4096;            // Bytes decoded per read from disk
+
+    private final String filePath;
+    private final short[] ring = new short[RING_SIZE];
+    private final byte[] chunk = new byte[CHUNK_BYTES];
+
+    // Single producer (streamer thread) and single consumer (mixer thread)
+    private volatile long writePos = 0;
+    private volatile long readPos = 0;
+
+    private AudioInputStream in;          // Only touched by the streamer thread
+    private boolean readSinceOpen;        // Whether the current stream has given any data yet
+    private volatile boolean closed = false;
+    private volatile AudioMixer.Voice voice; // The mixer voice playing this stream
+    private int underruns = 0;
+
+    /**
+     * Creates a stream for a music file. Nothing is read until the streamer thread first fills it.
+     *
+     * @param filePath the audio file to stream.
+     */
+    public MusicStream(String filePath) {
+        this.filePath = filePath;
+    }
+
+    /**
+     * Links the stream to the mixer voice playing it, so the stream can close once the voice ends.
+     *
+     * @param voice the voice reading from this stream.
+     */
+    void attach(AudioMixer.Voice voice) {
+        this.voice = voice;
+    }
+
+    /**
+     * Reads from the ring buffer. Called on the mixer thread.
+     * If the decoder has fallen behind, the missing part is filled with silence
+     * rather than ending the stream.
+     */
+    @Override
+    public int read(short[] buffer, int frames) {
+        int wanted = frames * 2;
+        long start = readPos;
+        int available = (int) Math.min(wanted, writePos - start);
+
+        for (int i = 0; i < available; i++) {
+            buffer[i] = ring[(int) ((start + i) & RING_MASK)];
+        }
+        if (available < wanted) {
+            java.util.Arrays.fill(buffer, available, wanted, (short) 0);
+            if (!closed) underruns++;
+        }
+        readPos = start + available;
+        return frames;
+    }
+
+    /**
+     * Decodes as much as fits into the ring buffer. Called on the streamer thread.
+     *
+     * @return false once the stream is finished and can be dropped by the streamer.
+     */
+    boolean fill() {
+        AudioMixer.Voice v = voice;
+        if (closed || (v != null && v.isFinished())) {
+            close();
+            return false;
+        }
+
+        try {
+            if (in == null) {
+                in = SoundManager.openStream(filePath);
+                readSinceOpen = false;
+            }
+
+            // Only read whole chunks while there is room for them
+            while (RING_SIZE - (writePos - readPos) >= CHUNK_BYTES / 2) {
+                int n = in.read(chunk, 0, CHUNK_BYTES);
+                if (n < 0) {
+                    in.close();
+                    in = null;
+                    if (!readSinceOpen) {
+                        // Empty or truncated file: reopening would only hit the end again, forever
+                        System.out.println("Music file has no audio to loop: " + filePath);
+                        close();
+                        return false;
+                    }
+                    in = SoundManager.openStream(filePath); // Loop without leaving a gap
+                    readSinceOpen = false;
+                    continue;
+                }
+                if (n == 0) {
+                    break; // Nothing decoded this time; try again on the next fill
+                }
+                readSinceOpen = true;
+
+                long pos = writePos;
+                int samples = n / 2;
+                for (int i = 0; i < samples; i++) {
+                    ring[(int) ((pos + i) & RING_MASK)] =
+                            (short) ((chunk[2 * i] & 0xFF) | (chunk[2 * i + 1] << 8));
+                }
+                writePos = pos + samples; // Publish to the mixer thread
+            }
+        } catch (Exception e) {
+            System.out.println("Failed to stream music: " + filePath);
+            e.printStackTrace();
+            close();
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Stops decoding and releases the file. Safe to call from any thread.
+     */
+    public void close() {
+        closed = true;
+        AudioMixer.Voice v = voice;
+        if (v != null) v.stop();
+    }
+
+    /**
+     * Releases the decoder stream. Called on the streamer thread once the stream has been dropped.
+     */
+    void release() {
+        if (in != null) {
+            try {
+                in.close();
+            } catch (IOException ignored) {
+                // Nothing useful to do if closing fails
+            }
+            in = null;
+        }
+    }
+
+    /** @return the number of mix buffers that had to be padded with silence. */
+    public int getUnderruns() {
+        return underruns;
+    }
+}
@@ -0,0 +1,63 @@
+package game;
+
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * MusicStreamer runs the single background thread that keeps every {@link MusicStream} topped up.
+ * File opening and decoding happen here, never on the EDT or the mixer thread.
+ */
+public class MusicStreamer {
+
+    private static final long FILL_INTERVAL_NANOS = 20_000_000L; // Well under the ring's 370 ms
+
+    private final CopyOnWriteArrayList<MusicStream> streams = new CopyOnWriteArrayList<>();
+    private final Thread thread;
+    private volatile boolean running = true;
+
+    /**
+     * Creates and starts the streaming thread.
+     */
+    public MusicStreamer() {
+        thread = new Thread(this::run, "music-streamer");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Adds a stream to be filled. The first fill (and file open) happens on the streaming thread.
+     *
+     * @param stream the stream to service.
+     */
+    public void add(MusicStream stream) {
+        streams.add(stream);
+        LockSupport.unpark(thread); // Fill it straight away instead of waiting for the next tick
+    }
+
+    /**
+     * Stops the streaming thread and closes every stream.
+     */
+    public void shutdown() {
+        running = false;
+        for (MusicStream stream : streams) {
+            stream.close();
+        }
+        LockSupport.unpark(thread);
+    }
+
+    private void run() {
+        while (running) {
+            for (MusicStream stream : streams) {
+                if (!stream.fill()) {
+                    stream.release();
+                    streams.remove(stream);
+                }
+            }
+            LockSupport.parkNanos(FILL_INTERVAL_NANOS);
+        }
+        for (MusicStream stream : streams) {
+            stream.release();
+        }
+        streams.clear();
+    }
+}
@@ -0,0 +1,264 @@
+package game;
+
+import java.awt.image.BufferedImage;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * OutlineTracer finds the outline of a sprite from its alpha channel and simplifies it into a
+ * polygon with a chosen number of vertices, ready for {@link ConvexDecomposer}.
+ *
+ * The largest opaque blob in the image is traced with marching squares, giving its outer edge
+ * along pixel corners (holes are ignored, since collision shapes are solid). The edge is then
+ * simplified top-down in the style of Douglas-Peucker: starting from the two points furthest apart,
+ * the point furthest from the current polygon is added until the vertex budget is used up or
+ * every point of the edge is within the tolerance.
+ */
+public final class OutlineTracer {
+
+    /** Alpha at or above which a pixel counts as part of the sprite. */
+    public static final int DEFAULT_ALPHA_THRESHOLD = 128;
+
+    private OutlineTracer() {
+    }
+
+    /**
+     * Traces the outer edge of the largest opaque region of an image.
+     *
+     * @param image          the sprite.
+     * @param alphaThreshold alpha from 0 to 255 at or above which a pixel is solid.
+     * @return the edge as x0, y0, x1, y1, ... in pixel corner coordinates (y down), or an empty
+     *         array if the image has no solid pixels.
+     */
+    public static float[] trace(BufferedImage image, int alphaThreshold) {
+        int w = image.getWidth(), h = image.getHeight();
+        boolean[] solid = new boolean[w * h];
+        for (int y = 0; y < h; y++) {
+            for (int x = 0; x < w; x++) {
+                solid[y * w + x] = (image.getRGB(x, y) >>> 24) >= alphaThreshold;
+            }
+        }
+        boolean[] blob = largestRegion(solid, w, h);
+        if (blob == null) return new float[0];
+
+        // Start at the top-left corner of the first pixel of the blob in scan order
+        int start = 0;
+        while (!blob[start]) start++;
+        int x0 = start % w, y0 = start / w;
+
+        // Marching squares around the blob; each state is the 2x2 pixels around a corner
+        List<int[]> corners = new ArrayList<>();
+        int x = x0, y = y0;
+        int dx = 0, dy = 0;
+        do {
+            int state = (at(blob, w, h, x - 1, y - 1) ? 1 : 0) | (at(blob, w, h, x, y - 1) ? 2 : 0)
+                    | (at(blob, w, h, x - 1, y) ? 4 : 0) | (at(blob, w, h, x, y) ? 8 : 0);
+            int ndx, ndy;
+            switch (state) {
+                case 1: case 5: case 13: ndx = 0; ndy = -1; break;   // Up
+                case 8: case 10: case 11: ndx = 0; ndy = 1; break;   // Down
+                case 4: case 12: case 14: ndx = -1; ndy = 0; break;  // Left
+                case 2: case 3: case 7: ndx = 1; ndy = 0; break;     // Right
+                case 6: ndx = dy == -1 ? -1 : 1; ndy = 0; break;    // Saddles: keep to the same blob
+                case 9: ndx = 0; ndy = dx == 1 ? -1 : 1; break;
+                default: throw new IllegalStateException("Lost the outline at " + x + ", " + y);
+            }
+            if (ndx != dx || ndy != dy) {
+                corners.add(new int[] {x, y}); // Only corners where the direction changes
+            }
+            dx = ndx;
+            dy = ndy;
+            x += dx;
+            y += dy;
+        } while (x != x0 || y != y0);
+
+        float[] outline = new float[corners.size() * 2];
+        for (int i = 0; i < corners.size(); i++) {
+            outline[2 * i] = corners.get(i)[0];
+            outline[2 * i + 1] = corners.get(i)[1];
+        }
+        return outline;
+    }
+
+    /**
+     * Simplifies a closed outline. Points are added in order of how far they are from the polygon
+     * so far, stopping at whichever limit is reached first. If the result would cross itself, more
+     * points are added until it does not.
+     *
+     * @param outline     the closed outline as x, y pairs.
+     * @param maxVertices the vertex budget (at least 3), or 0 for no budget.
+     * @param tolerance   the largest distance allowed between the outline and the polygon, or 0 for none.
+     * @return the simplified outline, in the same order and units.
+     */
+    public static float[] simplify(float[] outline, int maxVertices, float tolerance) {
+        int n = outline.length / 2;
+        if (n <= 3) return outline.clone();
+        int budget = maxVertices <= 0 ? n : Math.max(3, maxVertices);
+
+        // The first split is between point 0 and the point furthest from it
+        int far = 0;
+        float best = -1;
+        for (int i = 1; i < n; i++) {
+            float d = distanceSquared(outline, 0, i);
+            if (d > best) {
+                best = d;
+                far = i;
+            }
+        }
+
+        boolean[] keep = new boolean[n];
+        keep[0] = true;
+        keep[far] = true;
+        int kept = 2;
+        PriorityQueue<Span> spans = new PriorityQueue<>((a, b) -> Float.compare(b.error, a.error));
+        spans.add(span(outline, 0, far));
+        spans.add(span(outline, far, n));
+
+        while (!spans.isEmpty()) {
+            Span worst = spans.peek();
+            boolean underBudget = kept < budget;
+            boolean outOfTolerance = worst.error > tolerance;
+            if (worst.split < 0 || !(underBudget && outOfTolerance || kept < 3 || crosses(outline, keep))) break;
+            spans.poll();
+            keep[worst.split] = true;
+            kept++;
+            spans.add(span(outline, worst.from, worst.split));
+            spans.add(span(outline, worst.split, worst.to));
+        }
+
+        float[] result = new float[kept * 2];
+        int k = 0;
+        for (int i = 0; i < n; i++) {
+            if (keep[i]) {
+                result[k++] = outline[2 * i];
+                result[k++] = outline[2 * i + 1];
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Converts pixel corner coordinates to world coordinates centred on the image, the way
+     * images are drawn on bodies and in {@link PolygonEditor}.
+     *
+     * @param pixels      x, y pairs in pixels (y down).
+     * @param width       the image width in pixels.
+     * @param height      the image height in pixels.
+     * @param worldHeight the height the image is drawn at, in world units.
+     * @return x, y pairs in world units (y up).
+     */
+    public static float[] toWorld(float[] pixels, int width, int height, float worldHeight) {
+        float scale = worldHeight / height;
+        float[] world = new float[pixels.length];
+        for (int i = 0; i < pixels.length; i += 2) {
+            world[i] = (pixels[i] - width / 2f) * scale;
+            world[i + 1] = (height / 2f - pixels[i + 1]) * scale;
+        }
+        return world;
+    }
+
+    /** The part of the outline between two kept points, and the point in it furthest from their chord. */
+    private static final class Span {
+        final int from, to;     // Indices; 'to' may be n for the closing span back to point 0
+        final int split;        // Furthest point, or -1 if there are no points in between
+        final float error;      // Its distance from the chord
+
+        Span(int from, int to, int split, float error) {
+            this.from = from;
+            this.to = to;
+            this.split = split;
+            this.error = error;
+        }
+    }
+
+    private static Span span(float[] outline, int from, int to) {
+        int n = outline.length / 2;
+        int split = -1;
+        float error = 0;
+        float ax = outline[2 * from], ay = outline[2 * from + 1];
+        float bx = outline[2 * (to % n)], by = outline[2 * (to % n) + 1];
+        for (int i = from + 1; i < to; i++) {
+            float d = distanceToSegment(outline[2 * i], outline[2 * i + 1], ax, ay, bx, by);
+            if (d > error || split < 0) {
+                error = d;
+                split = i;
+            }
+        }
+        return new Span(from, to, split, error);
+    }
+
+    /** @return true if the polygon made of the kept points crosses itself. */
+    private static boolean crosses(float[] outline, boolean[] keep) {
+        List<Float> coords = new ArrayList<>();
+        for (int i = 0; i < keep.length; i++) {
+            if (keep[i]) {
+                coords.add(outline[2 * i]);
+                coords.add(outline[2 * i + 1]);
+            }
+        }
+        float[] polygon = new float[coords.size()];
+        for (int i = 0; i < polygon.length; i++) {
+            polygon[i] = coords.get(i);
+        }
+        return ConvexDecomposer.crossesItself(polygon);
+    }
+
+    /** @return the solid pixels of the largest 4-connected region, or null if there are none. */
+    private static boolean[] largestRegion(boolean[] solid, int w, int h) {
+        int[] label = new int[w * h];
+        int bestLabel = 0, bestSize = 0, next = 0;
+        ArrayDeque<Integer> queue = new ArrayDeque<>();
+        for (int start = 0; start < solid.length; start++) {
+            if (!solid[start] || label[start] != 0) continue;
+            int id = ++next;
+            int size = 0;
+            label[start] = id;
+            queue.add(start);
+            while (!queue.isEmpty()) {
+                int p = queue.poll();
+                size++;
+                int px = p % w, py = p / w;
+                if (px > 0) visit(solid, label, queue, p - 1, id);
+                if (px < w - 1) visit(solid, label, queue, p + 1, id);
+                if (py > 0) visit(solid, label, queue, p - w, id);
+                if (py < h - 1) visit(solid, label, queue, p + w, id);
+            }
+            if (size > bestSize) {
+                bestSize = size;
+                bestLabel = id;
+            }
+        }
+        if (bestLabel == 0) return null;
+        boolean[] region = new boolean[w * h];
+        for (int i = 0; i < region.length; i++) {
+            region[i] = label[i] == bestLabel;
+        }
+        return region;
+    }
+
+    private static void visit(boolean[] solid, int[] label, ArrayDeque<Integer> queue, int p, int id) {
+        if (solid[p] && label[p] == 0) {
+            label[p] = id;
+            queue.add(p);
+        }
+    }
+
+    private static boolean at(boolean[] blob, int w, int h, int x, int y) {
+        return x >= 0 && y >= 0 && x < w && y < h && blob[y * w + x];
+    }
+
+    private static float distanceSquared(float[] c, int i, int j) {
+        float dx = c[2 * i] - c[2 * j], dy = c[2 * i + 1] - c[2 * j + 1];
+        return dx * dx + dy * dy;
+    }
+
+    private static float distanceToSegment(float px, float py, float ax, float ay, float bx, float by) {
+        float dx = bx - ax, dy = by - ay;
+        float lengthSquared = dx * dx + dy * dy;
+        float t = lengthSquared == 0 ? 0 : Math.max(0, Math.min(1, ((px - ax) * dx + (py - ay) * dy) / lengthSquared));
+        float ex = ax + t * dx - px, ey = ay + t * dy - py;
+        return (float) Math.sqrt(ex * ex + ey * ey);
+    }
+}
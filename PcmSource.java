@@ -0,0 +1,43 @@
+package game;
+
+/**
+ * Plays a fully decoded sample array, either once or looping.
+ * The sample array itself is shared, so many voices can play the same sound effect.
+ */
+public class PcmSource implements AudioSource {
+
+    private final short[] samples; // Interleaved stereo samples
+    private final boolean loop;    // Restart from the beginning when the end is reached
+    private int position = 0;      // Index of the next sample to read
+
+    /**
+     * Creates a source over decoded samples.
+     *
+     * @param samples interleaved stereo samples in the mixer format.
+     * @param loop    whether playback wraps around at the end.
+     */
+    public PcmSource(short[] samples, boolean loop) {
+        this.samples = samples;
+        this.loop = loop;
+    }
+
+    @Override
+    public int read(short[] buffer, int frames) {
+        int wanted = frames * 2;
+        int written = 0;
+
+        while (written < wanted) {
+            if (position >= samples.length) {
+                if (!loop || samples.length == 0) {
+                    break;
+                }
+                position = 0; // Wrap around for looping playback
+            }
+            int count = Math.min(wanted - written, samples.length - position);
+            System.arraycopy(samples, position, buffer, written, count);
+            position += count;
+            written += count;
+        }
+        return written / 2;
+    }
+}
@@ -0,0 +1,186 @@
+package game;
+
+/**
+ * PlatformGenerator scatters platforms over an area so that they are evenly spaced and every one
+ * can be reached by jumping from the ground or from another platform.
+ *
+ * It is Bridson's Poisson-disc sampling: platforms grow outwards from the surface the player
+ * starts on, each new one placed near an existing "active" one, and a platform stops being active
+ * once a number of tries around it all fail. A background grid with cells small enough to hold one
+ * platform each makes the spacing check constant time, so placing n platforms costs O(n).
+ * A candidate is only kept if a jump from its parent reaches it, so the whole field is connected.
+ *
+ * Jumps are modelled as the player's: a launch speed, a horizontal speed and the world's gravity.
+ * Only a fraction ({@link #SAFETY}) of the full jump is used, leaving room for the player's size
+ * and less than perfect timing.
+ *
+ * The same random sequence always gives the same platforms.
+ */
+public final class PlatformGenerator {
+
+    /** Half height of the generated platforms. */
+    public static final float HALF_HEIGHT = 0.5f;
+    /** Fraction of the ideal jump a gap may need. */
+    public static final float SAFETY = 0.8f;
+    private static final int TRIES = 30;   // Candidates around an active platform before giving up on it
+
+    private final float jumpSpeed;   // Upward speed at take-off
+    private final float runSpeed;
+    private final float gravity;
+
+    /**
+     * @param jumpSpeed upward speed at take-off, in world units per second.
+     * @param runSpeed  horizontal speed during the jump.
+     * @param gravity   downward acceleration.
+     */
+    public PlatformGenerator(float jumpSpeed, float runSpeed, float gravity) {
+        if (jumpSpeed <= 0 || runSpeed < 0 || gravity <= 0) {
+            throw new IllegalArgumentException("Jump speed and gravity must be positive");
+        }
+        this.jumpSpeed = jumpSpeed;
+        this.runSpeed = runSpeed;
+        this.gravity = gravity;
+    }
+
+    /** @return the highest rise between standing surfaces that counts as reachable. */
+    public float maxRise() {
+        return SAFETY * jumpSpeed * jumpSpeed / (2 * gravity);
+    }
+
+    /**
+     * @param rise height of the landing surface above the take-off surface; negative for a drop.
+     * @return the widest horizontal gap that counts as reachable for that rise, or -1 if it is too high.
+     */
+    public float maxGap(float rise) {
+        float scaled = rise / SAFETY;
+        float discriminant = jumpSpeed * jumpSpeed - 2 * gravity * scaled;
+        if (discriminant < 0) return -1;
+        // Time until the jump comes back down to the landing height
+        float airTime = (jumpSpeed + (float) Math.sqrt(discriminant)) / gravity;
+        return SAFETY * runSpeed * airTime;
+    }
+
+    /**
+     * Generates platforms.
+     *
+     * @param random        the level's random source.
+     * @param field         the area, count, widths and spacing, as given in the level file.
+     * @param groundX       centre of the surface the player starts on.
+     * @param groundTop     height of that surface.
+     * @param groundHalfWidth half width of that surface (0 for a single point).
+     * @return x, y, half width for each platform; fewer than the field's count if the area fills up.
+     */
+    public float[] generate(GameRandom random, CompiledLevel.RandomPlatforms field,
+                            float groundX, float groundTop, float groundHalfWidth) {
+        float spacing = Math.max(field.spacing, 1e-3f);
+        float cell = spacing / (float) Math.sqrt(2);
+        int columns = Math.max(1, (int) Math.ceil((field.xMax - field.xMin) / cell) + 1);
+        int rows = Math.max(1, (int) Math.ceil((field.yMax - field.yMin) / cell) + 1);
+        int[] grid = new int[columns * rows];   // Platform index + 1 in each cell, 0 when empty
+
+        // Slot 0 is the ground; platforms follow. Each entry is x, standing height, half width
+        float[] placed = new float[3 * (field.count + 1)];
+        placed[0] = groundX;
+        placed[1] = groundTop;
+        placed[2] = groundHalfWidth;
+        int count = 1;
+        int[] active = new int[field.count + 1];
+        int activeCount = 1;
+
+        while (activeCount > 0 && count <= field.count) {
+            int pick = random.nextInt(activeCount);
+            int parent = active[pick];
+            float px = placed[3 * parent], ptop = placed[3 * parent + 1], phw = placed[3 * parent + 2];
+
+            boolean found = false;
+            for (int t = 0; t < TRIES && !found; t++) {
+                float halfWidth = field.halfWidthMin + random.nextFloat() * (field.halfWidthMax - field.halfWidthMin);
+                float x, y;
+                if (parent == 0) {
+                    // Anywhere in the field a jump from the ground could land
+                    float reach = phw + maxGap(0) + halfWidth;
+                    float left = Math.max(field.xMin, px - reach), right = Math.min(field.xMax, px + reach);
+                    float low = Math.max(field.yMin, ptop - HALF_HEIGHT);
+                    float high = Math.min(field.yMax, ptop - HALF_HEIGHT + maxRise());
+                    if (left > right || low > high) break;
+                    x = left + random.nextFloat() * (right - left);
+                    y = low + random.nextFloat() * (high - low);
+                } else {
+                    // Poisson-disc annulus between one and two spacings from the parent
+                    double angle = random.nextDouble() * 2 * Math.PI;
+                    float distance = spacing * (1 + random.nextFloat());
+                    x = px + distance * (float) Math.cos(angle);
+                    y = ptop - HALF_HEIGHT + distance * (float) Math.sin(angle);
+                }
+                if (x < field.xMin || x > field.xMax || y < field.yMin || y > field.yMax) continue;
+
+                float top = y + HALF_HEIGHT;
+                float gap = Math.abs(x - px) - phw - halfWidth;
+                float allowed = maxGap(top - ptop);
+                if (allowed < 0 || gap > allowed) continue;
+
+                int column = (int) ((x - field.xMin) / cell);
+                int row = (int) ((y - field.yMin) / cell);
+                if (crowded(grid, columns, rows, column, row, placed, x, y, spacing)) continue;
+
+                placed[3 * count] = x;
+                placed[3 * count + 1] = top;
+                placed[3 * count + 2] = halfWidth;
+                grid[row * columns + column] = count;   // Index into 'placed' (never 0, the ground)
+                active[activeCount++] = count;
+                count++;
+                found = true;
+            }
+            if (!found) {
+                active[pick] = active[--activeCount]; // Nothing fits around it any more
+            }
+        }
+
+        float[] platforms = new float[3 * (count - 1)];
+        for (int i = 1; i < count; i++) {
+            platforms[3 * (i - 1)] = placed[3 * i];
+            platforms[3 * (i - 1) + 1] = placed[3 * i + 1] - HALF_HEIGHT;
+            platforms[3 * (i - 1) + 2] = placed[3 * i + 2];
+        }
+        return platforms;
+    }
+
+    /** @return true if a platform already lies within the spacing of x, y. */
+    private static boolean crowded(int[] grid, int columns, int rows, int column, int row,
+                                   float[] placed, float x, float y, float spacing) {
+        // With cells of spacing / sqrt(2), anything closer than the spacing is at most two cells away
+        for (int r = Math.max(0, row - 2); r <= Math.min(rows - 1, row + 2); r++) {
+            for (int c = Math.max(0, column - 2); c <= Math.min(columns - 1, column + 2); c++) {
+                int other = grid[r * columns + c];
+                if (other == 0) continue;
+                float dx = placed[3 * other] - x;
+                float dy = placed[3 * other + 1] - HALF_HEIGHT - y;
+                if (dx * dx + dy * dy < spacing * spacing) return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Generates a large field and reports how long it took.
+     *
+     * Usage: java game.PlatformGenerator [count] [seed]
+     */
+    public static void main(String[] args) {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 5000;
+        long seed = args.length > 1 ? Long.parseLong(args[1]) : 1;
+        // The student's jump: 170 impulse on a 2.4 x 4.4 body of density 1, running at 6
+        PlatformGenerator generator = new PlatformGenerator(170f / (2.4f * 4.4f), 6f, 9.8f);
+        float side = (float) Math.sqrt(count) * 8;
+        CompiledLevel.RandomPlatforms field = new CompiledLevel.RandomPlatforms(count, -side / 2, side / 2, 0, side, 2, 4, 6);
+
+        for (int i = 0; i < 5; i++) {
+            generator.generate(new GameRandom(seed + i), field, 0, -1, side / 2); // Warm up
+        }
+        long start = System.nanoTime();
+        float[] platforms = generator.generate(new GameRandom(seed), field, 0, -1, side / 2);
+        double millis = (System.nanoTime() - start) / 1e6;
+        System.out.printf("%d of %d platforms in a %.0f x %.0f area in %.2f ms (max rise %.1f, gap %.1f)%n",
+                platforms.length / 3, count, side, side, millis, generator.maxRise(), generator.maxGap(0));
+    }
+}
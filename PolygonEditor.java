@@ -12,6 +12,7 @@ import java.awt.event.*;
 import java.awt.geom.Ellipse2D;
 import java.awt.geom.Line2D;
 import java.awt.geom.Point2D;
+import java.awt.image.BufferedImage;
 import java.util.*;
 
 /**
@@ -22,11 +23,11 @@ import java.util.*;
  * IT IS NOT PROPERLY DOCUMENTED AND WILL NOT BE SUPPORTED. GOOD LUCK.
  * 
  * Each time a point is added, deleted or moved, a comma-separated list of coordinates
- * is printed to the console; this text can be copied and pasted as a parameter list
- * for the city.cs.engine.PolygonShape(float... coords) constructor BUT you
- * will have problems if the polygon is not convex (remember though that a Body
- * can have multiple shapes, so you can get pretty much any shaped body by using
- * overlapping convex polygons).
+ * is printed to the console (this can be fed back in to carry on editing), followed by
+ * the outline split into convex pieces by {@link ConvexDecomposer}: one
+ * new SolidFixture(body, new PolygonShape(...)) line per piece, ready to paste into a
+ * body's constructor, and the number of fixtures that makes. Concave outlines are fine;
+ * the outline must just not cross itself. The pieces are shaded in the editor.
  * 
  * If the editor is initialised with a non-null file name parameter, the editor
  * will attempt to open the image file and display a scaled up version as
@@ -55,6 +56,16 @@ import java.util.*;
  *  java PolygonEditor yellow-bird.gif -height 2.25 0.149f,0.975f, 0.775f,0.193f, 0.772f,-0.099f, 0.401f,-0.928f, -0.36f,-0.922f, -0.719f,-0.025f, -0.725f,0.163f, -0.14f,0.972f
  * 
  * lets you edit the polygon drawn in a previous session around the image yellow-bird.gif).
+ *
+ * Example 3:
+ *
+ *  java PolygonEditor data/bossEnemy.png -height 8 -trace 12
+ *
+ * traces the outline of the image from its alpha channel with {@link OutlineTracer} instead of
+ * clicking round it, simplified to at most 12 vertices. Use -tolerance (world units) instead of,
+ * or as well as, a vertex count to stop once the polygon is that close to the outline. In the
+ * editor, press T to trace, and + or - to trace again with one vertex more or fewer. Traced points
+ * can then be dragged like any others.
  */
 public class PolygonEditor extends JPanel
 {   private static double WIDTH = 500;
@@ -63,8 +74,17 @@ public class PolygonEditor extends JPanel
 
     private List<Point2D.Float> points;
     private int currentVertex;
+    /** the outline split into convex pieces, updated when the outline changes */
+    private List<float[]> pieces = new ArrayList<float[]>();
+    /** why the outline could not be split, or null */
+    private String problem;
 
     private ImageIcon icon;
+    /** the unscaled image, for tracing its outline */
+    private BufferedImage sprite;
+    /** vertex budget and tolerance (world units) for tracing; 0 means no limit */
+    private int traceVertices = 12;
+    private float traceTolerance = 0;
     /** height of the the icon in the world (in metres) */
     private float boxHeight;
     private int powerOf10;
@@ -107,6 +127,13 @@ public class PolygonEditor extends JPanel
         }
 
         if (f != null) icon = new ImageIcon(f);
+        if (f != null) {
+            try {
+                sprite = javax.imageio.ImageIO.read(new java.io.File(f));
+            } catch (java.io.IOException e) {
+                System.out.println("Cannot read " + f + " for tracing: " + e.getMessage());
+            }
+        }
         if (icon == null) {
             pixelScale = SCALE;
             bitmapWidth = WIDTH/SCALE;
@@ -131,6 +158,7 @@ public class PolygonEditor extends JPanel
         points = new ArrayList<Point2D.Float>();
         addMouseListener(new MouseAdapter() {
             public void mousePressed(MouseEvent e) {
+                requestFocusInWindow(); // for the tracing keys
                 Point2D.Float p = toGridPoint(e.getX(), e.getY());
                 currentVertex = findVertex(p);
                 if (currentVertex < 0) {
@@ -151,6 +179,21 @@ public class PolygonEditor extends JPanel
                 updateView();
             }
         });
+        setFocusable(true);
+        addKeyListener(new KeyAdapter() {
+            public void keyTyped(KeyEvent e) {
+                char c = e.getKeyChar();
+                if (c == 't' || c == 'T') {
+                    traceOutline();
+                } else if (c == '+' || c == '=') {
+                    traceVertices++;
+                    traceOutline();
+                } else if ((c == '-' || c == '_') && traceVertices > 3) {
+                    traceVertices--;
+                    traceOutline();
+                }
+            }
+        });
         addMouseMotionListener(new MouseMotionAdapter() {
             public void mouseDragged(MouseEvent e) {
                 Point2D.Float p = toGridPoint(e.getX(), e.getY());
@@ -218,6 +261,22 @@ public class PolygonEditor extends JPanel
             }
         if (icon != null) icon.paintIcon(this, g, 0, 0);
 
+        // shade the convex pieces, each a separate fixture
+        Color[] shades = { new Color(0, 160, 255, 70), new Color(0, 200, 80, 70), new Color(255, 140, 0, 70) };
+        for (int i = 0; i < pieces.size(); i++) {
+            float[] piece = pieces.get(i);
+            java.awt.geom.Path2D.Float path = new java.awt.geom.Path2D.Float();
+            for (int k = 0; k < piece.length; k += 2) {
+                Point2D.Float p = screenPosition(new Point2D.Float(piece[k], piece[k + 1]));
+                if (k == 0) path.moveTo(p.x, p.y); else path.lineTo(p.x, p.y);
+            }
+            path.closePath();
+            g2.setColor(shades[i % shades.length]);
+            g2.fill(path);
+            g2.setColor(Color.GRAY);
+            g2.draw(path);
+        }
+
         // draw the polygon
         g2.setColor(Color.BLUE);
         Point2D.Float prev = null;
@@ -230,6 +289,9 @@ public class PolygonEditor extends JPanel
             }
             prev = p;
         }
+
+        g2.setColor(Color.BLACK);
+        g2.drawString(problem != null ? problem : pieces.size() + (pieces.size() == 1 ? " fixture" : " fixtures"), 5, 15);
     }
     /**
      * Open an editor.
@@ -243,6 +305,8 @@ public class PolygonEditor extends JPanel
     public static void main(String[] args) {
         String fileName = "data/student.png";
         float boxHeight = 4.0f;
+        int traceVertices = -1;
+        float traceTolerance = 0;
         int firstCoordIndex = 0;
         if (args.length > 0) {
             try {
@@ -251,9 +315,14 @@ public class PolygonEditor extends JPanel
             } catch (NumberFormatException e) {
                 fileName = args[0];
                 firstCoordIndex = 1;
-                if (args.length > 2 && args[1].toLowerCase().equals("-height")) {
-                    boxHeight = Float.parseFloat(args[2]);
-                    firstCoordIndex = 3;
+                while (args.length > firstCoordIndex + 1 && args[firstCoordIndex].startsWith("-")) {
+                    String option = args[firstCoordIndex].toLowerCase();
+                    String value = args[firstCoordIndex + 1];
+                    if (option.equals("-height")) boxHeight = Float.parseFloat(value);
+                    else if (option.equals("-trace")) traceVertices = Integer.parseInt(value);
+                    else if (option.equals("-tolerance")) traceTolerance = Float.parseFloat(value);
+                    else break; // a negative coordinate
+                    firstCoordIndex += 2;
                 }
             }
         }
@@ -284,6 +353,12 @@ public class PolygonEditor extends JPanel
                 i++;
             }
         }
+        if (traceVertices >= 0 || traceTolerance > 0) {
+            editor.traceVertices = Math.max(traceVertices, 0);
+            editor.traceTolerance = traceTolerance;
+            editor.traceOutline();
+        }
+        editor.decompose();
         JFrame frame = new JFrame(fileName == null ? "polygon editor" : fileName);
         frame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
         frame.add(editor);
@@ -291,11 +366,75 @@ public class PolygonEditor extends JPanel
         frame.setVisible(true);
     }
 
-    /** Update the display and print the current coordinate list to console. */
+    /** Update the display and print the current coordinate list and its convex pieces to console. */
     private void updateView()
     {
         System.out.println(this);
+        decompose();
+        if (problem != null) {
+            System.out.println("// " + problem);
+        } else {
+            System.out.println(fixtureCode());
+        }
         repaint();
     }
 
+    /** Replace the points with the image outline, traced and simplified to the current limits. */
+    private void traceOutline()
+    {
+        if (sprite == null) {
+            System.out.println("No image to trace");
+            return;
+        }
+        int w = sprite.getWidth(), h = sprite.getHeight();
+        float[] outline = OutlineTracer.trace(sprite, OutlineTracer.DEFAULT_ALPHA_THRESHOLD);
+        if (outline.length == 0) {
+            System.out.println("The image has no opaque pixels");
+            return;
+        }
+        float pixelTolerance = traceTolerance * h / boxHeight;
+        float[] polygon = OutlineTracer.toWorld(OutlineTracer.simplify(outline, traceVertices, pixelTolerance), w, h, boxHeight);
+        points.clear();
+        for (int i = 0; i < polygon.length; i += 2) {
+            points.add(new Point2D.Float(polygon[i], polygon[i + 1]));
+        }
+        System.out.println("// traced " + outline.length / 2 + " outline points down to " + points.size()
+                + " (vertex limit " + (traceVertices > 0 ? traceVertices : "none")
+                + ", tolerance " + (traceTolerance > 0 ? traceTolerance : "none") + ")");
+        updateView();
+    }
+
+    /** Split the current outline into convex pieces. */
+    private void decompose()
+    {
+        pieces = new ArrayList<float[]>();
+        problem = null;
+        if (points.size() < 3) return;
+        float[] coords = new float[points.size() * 2];
+        for (int i = 0; i < points.size(); i++) {
+            coords[2 * i] = points.get(i).x;
+            coords[2 * i + 1] = points.get(i).y;
+        }
+        try {
+            pieces = ConvexDecomposer.decompose(coords);
+        } catch (IllegalArgumentException e) {
+            problem = e.getMessage();
+        }
+    }
+
+    /** The convex pieces as fixture constructor calls for a body called "body". */
+    private String fixtureCode()
+    {
+        String s = "// " + pieces.size() + (pieces.size() == 1 ? " fixture" : " fixtures") + "\n";
+        for (float[] piece : pieces) {
+            String coords = "";
+            for (int k = 0; k < piece.length; k += 2) {
+                if (coords.length() > 0) coords += ", ";
+                coords += round(piece[k]) + "f," + round(piece[k + 1]) + "f";
+            }
+            s += "new SolidFixture(body, new PolygonShape(" + coords + "));\n";
+        }
+        return s;
+    }
+
 }
@@ -13,6 +13,7 @@ public abstract class Projectile extends DynamicBody {
     private static final float LIFESPAN = 3f;   // Lifespan in seconds before auto-destroy
 
     private final GameLevel level;
+    private float timeElapsed = 0;  // Seconds since the projectile was fired
 
     /**
      * Constructs a new projectile.
@@ -29,11 +30,11 @@ public abstract class Projectile extends DynamicBody {
         setPosition(position);
         setGravityScale(0);  // No gravity so it flies straight
         setLinearVelocity(direction.mul(SPEED));  // Launch in given direction
+        level.addFastBody(this);
+        level.addProjectile(this);
 
-        // Handle projectile lifespan
-        level.addStepListener(new StepListener() {
-            private float timeElapsed = 0;
-
+        // Handle projectile lifespan; the listener goes when the projectile is destroyed
+        level.addStepListener(StepPipeline.Phase.GAMEPLAY, new StepListener() {
             @Override
             public void preStep(StepEvent e) {
                 // Not needed
@@ -41,19 +42,29 @@ public abstract class Projectile extends DynamicBody {
 
             @Override
             public void postStep(StepEvent e) {
-                timeElapsed += e.getStep();  // Accumulate time
+                // Once per game step; e.getStep() is the last physics sub-step's, shorter when sub-stepping
+                timeElapsed += 1f / GameLevel.STEPS_PER_SECOND;
                 if (timeElapsed > LIFESPAN) {
                     destroy();               // Auto-destroy after lifespan
-                    level.removeStepListener(this); // Clean up listener
                 }
             }
-        });
+        }, this);
 
         // Destroy projectile if it hits a wall or static object
         addCollisionListener(e -> {
-            if (e.getOtherBody() instanceof StaticBody) {
+            if (e.getOtherBody() instanceof StaticBody || e.getOtherBody() instanceof MovingPlatform) {
                 destroy();
             }
         });
     }
+
+    /** @return seconds since the projectile was fired. */
+    public float getTimeElapsed() {
+        return timeElapsed;
+    }
+
+    /** @param timeElapsed seconds since the projectile was fired, restored from a snapshot. */
+    public void setTimeElapsed(float timeElapsed) {
+        this.timeElapsed = timeElapsed;
+    }
 }
@@ -0,0 +1,245 @@
+package game;
+
+import org.jbox2d.common.Vec2;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Properties;
+
+/**
+ * ReplayPlayer plays back a log written by {@link InputRecorder}.
+ * Each segment rebuilds its level from the recorded seed or snapshot, and a
+ * {@link StudentController} in replay mode feeds it the recorded actions one step at a time.
+ *
+ * Logs can be watched in a window at normal speed ({@code java game.Game --replay <file>}),
+ * or run headless at maximum speed as a benchmark ({@code java game.ReplayPlayer <file>}).
+ */
+public class ReplayPlayer {
+
+    private final ByteBuffer log;
+    private final String playerName;
+    private final Properties tuning;
+
+    private boolean inSegment = false;
+    private int mask = 0;          // Mask of the current run
+    private int run = 0;           // Steps left in the current run
+    private int nextMask = -1;     // Actions for the step about to run, or -1 at the end of the segment
+
+    /**
+     * Opens a recorded log.
+     *
+     * @param file the log file.
+     * @throws IOException if the file cannot be read or is not a replay.
+     */
+    public ReplayPlayer(Path file) throws IOException {
+        log = ByteBuffer.wrap(Files.readAllBytes(file));
+        try {
+            if (log.getInt() != InputRecorder.MAGIC) throw new IOException("Not a replay: " + file);
+            short version = log.getShort();
+            if (version > InputRecorder.VERSION) throw new IOException("Replay is from a newer version (" + version + ")");
+            playerName = getString();
+            // Recordings before version 3 did not keep their tuning; they replay with the defaults
+            tuning = version >= 3 ? getProperties() : new Properties();
+        } catch (BufferUnderflowException e) {
+            throw new IOException("Truncated replay: " + file, e);
+        }
+    }
+
+    /** @return the name of the player who recorded the log. */
+    public String getPlayerName() {
+        return playerName;
+    }
+
+    /**
+     * @return the tuning values in effect when the log was recorded, to apply before building any level.
+     */
+    public Properties getTuning() {
+        Properties copy = new Properties();
+        copy.putAll(tuning);
+        return copy;
+    }
+
+    /**
+     * Builds the level for the next segment and sets the game's lives and time to match.
+     * The game's countdown is scheduled on the level before any snapshot is restored, so a
+     * restored countdown keeps its recorded phase.
+     *
+     * @param game the game to build the level in.
+     * @return the level, not yet started, or null when the log has no more segments.
+     * @throws IOException if the log or a snapshot in it is malformed.
+     */
+    public GameLevel nextSegment(Game game) throws IOException {
+        try {
+            while (inSegment) {
+                advance(null); // Skip whatever is left of the current segment
+            }
+            byte kind = log.get();
+            GameLevel level;
+            if (kind == InputRecorder.SEGMENT_LEVEL) {
+                int number = log.getInt();
+                long seed = log.getLong();
+                int lives = log.getInt();
+                int timeLeft = log.getInt();
+                level = game.createLevel(number, seed);
+                if (level == null) throw new IOException("Replay has an unknown level " + number);
+                level.followRecordedQuality();
+                game.enterLevel(level, lives, timeLeft);
+            } else if (kind == InputRecorder.SEGMENT_SNAPSHOT) {
+                int length = log.getInt();
+                ByteBuffer snapshot = log.slice().limit(length);
+                log.position(log.position() + length);
+                WorldSnapshot.Header header = WorldSnapshot.readHeader(snapshot);
+                level = game.createLevel(header.levelNumber, header.seed);
+                if (level == null) throw new IOException("Replay has an unknown level " + header.levelNumber);
+                level.followRecordedQuality();
+                game.enterLevel(level, header.lives, header.timeLeft);
+                WorldSnapshot.restoreInto(level, snapshot);
+            } else {
+                return null;
+            }
+            inSegment = true;
+            mask = 0;
+            run = 0;
+            advance(level);
+            return level;
+        } catch (BufferUnderflowException | IllegalArgumentException e) {
+            throw new IOException("Corrupt replay", e);
+        }
+    }
+
+    /**
+     * @return the actions for the step about to run, or -1 once the segment has no more steps.
+     */
+    public int currentActions() {
+        return nextMask;
+    }
+
+    /**
+     * Moves to the next recorded step. Balls spawned before that step are posted to the level,
+     * so they are created at the start of the step, as they were when recording; quality changes
+     * are applied straight away, between this step and the next.
+     *
+     * @param level the level being replayed, or null to skip events.
+     */
+    public void advance(GameLevel level) {
+        while (run == 0) {
+            long token = getVarint();
+            int kind = (int) (token & 3);
+            int value = (int) (token >>> 2);
+            switch (kind) {
+                case InputRecorder.TOKEN_RUN:
+                    run = value;
+                    break;
+                case InputRecorder.TOKEN_MASK:
+                    mask ^= value;
+                    break;
+                case InputRecorder.TOKEN_EVENT:
+                    if (value == InputRecorder.EVENT_QUALITY) {
+                        int cap = log.get();
+                        int velocityIterations = log.get();
+                        int positionIterations = log.get();
+                        if (level != null) level.setStepQuality(cap, velocityIterations, positionIterations);
+                        break;
+                    }
+                    if (value == InputRecorder.EVENT_TUNING) {
+                        Properties reloaded = getProperties();
+                        if (level != null) level.post(() -> Tuning.apply(reloaded));
+                        break;
+                    }
+                    Vec2 position = new Vec2(Float.intBitsToFloat(log.getInt()), Float.intBitsToFloat(log.getInt()));
+                    if (level != null) {
+                        level.post(() -> MouseHandler.spawnBall(level, position, null));
+                    }
+                    break;
+                default: // TOKEN_END
+                    inSegment = false;
+                    nextMask = -1;
+                    return;
+            }
+        }
+        run--;
+        nextMask = mask;
+    }
+
+    private Properties getProperties() {
+        Properties properties = new Properties();
+        int count = log.getShort() & 0xFFFF;
+        for (int i = 0; i < count; i++) {
+            String key = getString();
+            properties.setProperty(key, getString());
+        }
+        return properties;
+    }
+
+    private String getString() {
+        byte[] bytes = new byte[log.getShort() & 0xFFFF];
+        log.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private long getVarint() {
+        long value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = log.get();
+            value |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while (b < 0);
+        return value;
+    }
+
+    /**
+     * Replays a log headless at maximum speed and reports the step times.
+     * The final state hash is the same on every run if the replay is deterministic.
+     *
+     * Usage: java game.ReplayPlayer &lt;replay file&gt;
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length != 1) {
+            System.out.println("Usage: java game.ReplayPlayer <replay file>");
+            return;
+        }
+        ReplayPlayer player = new ReplayPlayer(Path.of(args[0]));
+        Game game = new Game(player.getPlayerName());
+        Tuning.apply(player.getTuning()); // Replaces the tuning file's values with the recorded ones
+        LatencyHistogram stepTimes = new LatencyHistogram("step");
+        long steps = 0;
+        long start = System.nanoTime();
+        GameLevel level = null;
+
+        GameLevel next;
+        while (!game.isGameOver() && (next = player.nextSegment(game)) != null) {
+            level = next;
+            StudentController controller = new StudentController(game, level.getStudent(), player);
+            while (player.currentActions() >= 0 && !game.isGameOver()) {
+                long t = System.nanoTime();
+                level.gameStep();
+                stepTimes.record(System.nanoTime() - t);
+                steps++;
+            }
+            controller.detach();
+        }
+
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("Replayed %d steps (%.1fs of game time) in %.2fs, %.0fx real time%n",
+                steps, (double) steps / GameLevel.STEPS_PER_SECOND, seconds,
+                steps / (double) GameLevel.STEPS_PER_SECOND / seconds);
+        System.out.print(stepTimes.report());
+        if (level != null) {
+            System.out.print(level.getStepMetrics().report());
+            System.out.print(level.getStepPipeline().report());
+        }
+        if (level != null) {
+            System.out.printf("Final state hash: %08x (lives %d, time left %d)%n",
+                    WorldSnapshot.stateHash(WorldSnapshot.capture(game, level)), game.getLives(), game.getTimeLeft());
+        }
+        if (!game.isGameOver()) {
+            game.getSoundManager().close(); // Otherwise closed when the game ended
+        }
+    }
+}
@@ -0,0 +1,272 @@
+package game;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * SaveContainer keeps every save slot in one memory-mapped file.
+ *
+ * The file starts with a header page indexing all slots, followed by the slot data. Each slot has
+ * two banks: a save is written to the bank not currently in use, flushed, and only then is that
+ * bank's index record (with a higher generation number) written and flushed. A crash part-way
+ * through a save therefore leaves the previous save intact. Index records and slot data both carry
+ * a CRC32, so torn or corrupt saves are detected and the older bank is used instead.
+ *
+ * Listing slots checks each slot's data the same way loading does, so a slot is listed with the
+ * save that loading it would actually return.
+ */
+public class SaveContainer implements AutoCloseable {
+
+    public static final int SLOT_COUNT = 8;
+    public static final int BANK_SIZE = 128 * 1024;     // Largest save a slot can hold
+
+    private static final int MAGIC = 0x47534156;        // "GSAV"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 4096;
+    private static final int FILE_HEADER = 16;          // Magic, version, slot count, bank size
+    private static final int RECORD_SIZE = 64;          // One index record per bank
+    private static final int NAME_BYTES = 24;
+    private static final long FILE_SIZE = HEADER_SIZE + (long) SLOT_COUNT * 2 * BANK_SIZE;
+
+    // Index record layout
+    private static final int REC_GENERATION = 0;        // long; 0 means empty
+    private static final int REC_LENGTH = 8;            // int
+    private static final int REC_DATA_CRC = 12;         // int
+    private static final int REC_TIME = 16;             // long, epoch millis
+    private static final int REC_LEVEL = 24;            // int
+    private static final int REC_NAME = 28;             // short length + NAME_BYTES
+    private static final int REC_CRC = 60;              // int, over bytes 0-59
+
+    private final FileChannel channel;
+    private final MappedByteBuffer map;
+
+    /**
+     * Opens a save file, creating and formatting it if it does not exist.
+     *
+     * @param file the save file.
+     * @throws IOException if the file cannot be opened or belongs to something else.
+     */
+    public SaveContainer(Path file) throws IOException {
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            boolean fresh = channel.size() == 0;
+            if (!fresh && channel.size() != FILE_SIZE) {
+                throw new IOException("Save file has the wrong size: " + file);
+            }
+            map = channel.map(FileChannel.MapMode.READ_WRITE, 0, FILE_SIZE);
+            if (fresh) {
+                map.putInt(0, MAGIC);
+                map.putInt(4, VERSION);
+                map.putInt(8, SLOT_COUNT);
+                map.putInt(12, BANK_SIZE);
+                map.force();
+            } else if (map.getInt(0) != MAGIC || map.getInt(4) != VERSION
+                    || map.getInt(8) != SLOT_COUNT || map.getInt(12) != BANK_SIZE) {
+                throw new IOException("Not a save file: " + file);
+            }
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Writes a save into a slot. The previous save in the slot stays valid until this returns.
+     *
+     * @param slot        the slot, from 0 to {@link #SLOT_COUNT} - 1.
+     * @param levelNumber level number shown in the slot list.
+     * @param playerName  player name shown in the slot list.
+     * @param data        the save data; its position is not changed.
+     * @throws IOException if the data does not fit in a slot.
+     */
+    public synchronized void save(int slot, int levelNumber, String playerName, ByteBuffer data) throws IOException {
+        checkSlot(slot);
+        int length = data.remaining();
+        if (length > BANK_SIZE) {
+            throw new IOException("Save is too large for a slot (" + length + " bytes)");
+        }
+
+        // Write into the bank that is not the current save
+        int current = newestValidBank(slot);
+        int bank = current == 0 ? 1 : 0;
+        long generation = current < 0 ? 1 : map.getLong(recordOffset(slot, current) + REC_GENERATION) + 1;
+
+        int dataOffset = dataOffset(slot, bank);
+        ByteBuffer target = map.duplicate();
+        target.position(dataOffset);
+        target.put(data.duplicate());
+        map.force(); // Data must be on disk before the record that points at it
+
+        int rec = recordOffset(slot, bank);
+        map.putLong(rec + REC_GENERATION, generation);
+        map.putInt(rec + REC_LENGTH, length);
+        map.putInt(rec + REC_DATA_CRC, crc(dataOffset, length));
+        map.putLong(rec + REC_TIME, System.currentTimeMillis());
+        map.putInt(rec + REC_LEVEL, levelNumber);
+        byte[] name = playerName.getBytes(StandardCharsets.UTF_8);
+        int nameLength = Math.min(name.length, NAME_BYTES);
+        map.putShort(rec + REC_NAME, (short) nameLength);
+        for (int i = 0; i < NAME_BYTES; i++) {
+            map.put(rec + REC_NAME + 2 + i, i < nameLength ? name[i] : 0);
+        }
+        map.putInt(rec + REC_CRC, crc(rec, REC_CRC));
+        map.force();
+    }
+
+    /**
+     * Reads the newest intact save in a slot.
+     *
+     * @param slot the slot to read.
+     * @return a copy of the save data.
+     * @throws IOException if the slot is empty or every save in it is corrupt.
+     */
+    public synchronized ByteBuffer load(int slot) throws IOException {
+        checkSlot(slot);
+        int bank = newestValidBank(slot);
+        if (bank < 0) {
+            throw new IOException("Slot " + (slot + 1) + " is empty or corrupt");
+        }
+        int length = map.getInt(recordOffset(slot, bank) + REC_LENGTH);
+        ByteBuffer source = map.duplicate();
+        source.position(dataOffset(slot, bank)).limit(dataOffset(slot, bank) + length);
+        ByteBuffer copy = ByteBuffer.allocate(length);
+        copy.put(source).flip();
+        return copy;
+    }
+
+    /**
+     * Describes every slot by its newest intact save, the one {@link #load(int)} would read.
+     *
+     * @return one entry per slot; empty slots have {@link SlotInfo#isEmpty()} true.
+     */
+    public synchronized SlotInfo[] list() {
+        SlotInfo[] slots = new SlotInfo[SLOT_COUNT];
+        for (int slot = 0; slot < SLOT_COUNT; slot++) {
+            int bank = newestValidBank(slot);
+            slots[slot] = bank < 0 ? new SlotInfo(slot, 0, 0, 0, "") : readInfo(slot, bank);
+        }
+        return slots;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private SlotInfo readInfo(int slot, int bank) {
+        int rec = recordOffset(slot, bank);
+        byte[] name = new byte[Math.min(NAME_BYTES, map.getShort(rec + REC_NAME) & 0xFFFF)];
+        for (int i = 0; i < name.length; i++) {
+            name[i] = map.get(rec + REC_NAME + 2 + i);
+        }
+        return new SlotInfo(slot, map.getLong(rec + REC_GENERATION), map.getLong(rec + REC_TIME),
+                map.getInt(rec + REC_LEVEL), new String(name, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Picks the bank with the higher generation among those whose index record and data are intact.
+     *
+     * @return the bank holding the newest intact save in the slot, or -1 if there is none.
+     */
+    private int newestValidBank(int slot) {
+        int best = -1;
+        long bestGeneration = 0;
+        for (int bank = 0; bank < 2; bank++) {
+            int rec = recordOffset(slot, bank);
+            long generation = map.getLong(rec + REC_GENERATION);
+            if (generation <= bestGeneration || map.getInt(rec + REC_CRC) != crc(rec, REC_CRC)) continue;
+            int length = map.getInt(rec + REC_LENGTH);
+            if (length < 0 || length > BANK_SIZE) continue;
+            if (map.getInt(rec + REC_DATA_CRC) != crc(dataOffset(slot, bank), length)) {
+                System.out.println("Save slot " + (slot + 1) + " bank " + bank + " is corrupt, ignoring it");
+                continue;
+            }
+            best = bank;
+            bestGeneration = generation;
+        }
+        return best;
+    }
+
+    private int crc(int offset, int length) {
+        ByteBuffer region = map.duplicate();
+        region.position(offset).limit(offset + length);
+        CRC32 crc = new CRC32();
+        crc.update(region);
+        return (int) crc.getValue();
+    }
+
+    private static int recordOffset(int slot, int bank) {
+        return FILE_HEADER + (slot * 2 + bank) * RECORD_SIZE;
+    }
+
+    private static int dataOffset(int slot, int bank) {
+        return HEADER_SIZE + (slot * 2 + bank) * BANK_SIZE;
+    }
+
+    private static void checkSlot(int slot) {
+        if (slot < 0 || slot >= SLOT_COUNT) {
+            throw new IllegalArgumentException("No save slot " + slot);
+        }
+    }
+
+    /**
+     * Index information for one save slot.
+     */
+    public static final class SlotInfo {
+        private final int slot;
+        private final long generation;
+        private final long savedAt;
+        private final int levelNumber;
+        private final String playerName;
+
+        SlotInfo(int slot, long generation, long savedAt, int levelNumber, String playerName) {
+            this.slot = slot;
+            this.generation = generation;
+            this.savedAt = savedAt;
+            this.levelNumber = levelNumber;
+            this.playerName = playerName;
+        }
+
+        /** @return the slot number, from 0. */
+        public int getSlot() {
+            return slot;
+        }
+
+        /** @return true if nothing has been saved in this slot. */
+        public boolean isEmpty() {
+            return generation == 0;
+        }
+
+        /** @return how many times the slot has been saved to. */
+        public long getGeneration() {
+            return generation;
+        }
+
+        /** @return when the slot was last saved, in epoch milliseconds. */
+        public long getSavedAt() {
+            return savedAt;
+        }
+
+        /** @return the level the save is on. */
+        public int getLevelNumber() {
+            return levelNumber;
+        }
+
+        /** @return the player who saved. */
+        public String getPlayerName() {
+            return playerName;
+        }
+
+        @Override
+        public String toString() {
+            if (isEmpty()) return "Slot " + (slot + 1) + ": empty";
+            return String.format("Slot %d: %s, level %d, %tF %<tR", slot + 1, playerName, levelNumber, savedAt);
+        }
+    }
+}
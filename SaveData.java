@@ -4,6 +4,8 @@ import java.io.Serializable;
 
 /**
  * Serializable class to store the player's game state for saving/loading.
+ * This was the save format before {@link WorldSnapshot}; it only records the player,
+ * and is kept as the baseline in {@link SnapshotBenchmark}.
  */
 public class SaveData implements Serializable {
     private static final long serialVersionUID = 1L;
@@ -0,0 +1,131 @@
+package game;
+
+import city.cs.engine.Body;
+import city.cs.engine.PolygonShape;
+import city.cs.engine.Shape;
+import city.cs.engine.SolidFixture;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * ShapeCache gives bodies the collision shapes traced from their sprites by {@link ShapeCompiler}.
+ *
+ * The cache file is read once, on first use, and only the index of sprite names is built then;
+ * each sprite's pieces are read from the buffer when a body first asks for them, and the shapes
+ * are shared by every body drawn at the same height. If there is no cache, or it has no entry for
+ * a sprite, the body gets the hand-made shape it passes in instead.
+ */
+public final class ShapeCache {
+
+    public static final String DEFAULT_FILE = "data/shapes.bin";
+
+    private static Path file = Path.of(DEFAULT_FILE);
+    private static ByteBuffer buffer;                    // Null until loaded; empty if there is no cache
+    private static final Map<String, Integer> offsets = new HashMap<>();
+    private static final Map<String, Shape[]> shapes = new HashMap<>();
+
+    private ShapeCache() {
+    }
+
+    /**
+     * Adds a sprite's traced shape to a body as solid fixtures.
+     *
+     * @param body     the body, made without fixtures.
+     * @param image    the sprite, as passed to {@code BodyImage}.
+     * @param height   the height the sprite is drawn at.
+     * @param fallback the shape to use if the sprite has not been traced.
+     * @return true if the traced shape was used.
+     */
+    public static boolean addFixtures(Body body, String image, float height, Shape fallback) {
+        Shape[] pieces = get(image, height);
+        if (pieces == null) {
+            new SolidFixture(body, fallback);
+            return false;
+        }
+        for (Shape piece : pieces) {
+            new SolidFixture(body, piece);
+        }
+        return true;
+    }
+
+    /**
+     * Returns the shapes traced from a sprite.
+     *
+     * @param image  the sprite, as passed to {@code BodyImage}.
+     * @param height the height the sprite is drawn at.
+     * @return one convex shape per piece, or null if the sprite is not in the cache.
+     */
+    public static synchronized Shape[] get(String image, float height) {
+        load();
+        String key = image + '@' + height;
+        Shape[] pieces = shapes.get(key);
+        if (pieces != null || shapes.containsKey(key)) return pieces;
+
+        Integer offset = offsets.get(image);
+        if (offset != null) {
+            ByteBuffer in = buffer.duplicate();
+            in.position(offset);
+            float[][] unit = ShapeCompiler.readEntry(in).pieces;
+            pieces = new Shape[unit.length];
+            for (int p = 0; p < unit.length; p++) {
+                float[] coords = new float[unit[p].length];
+                for (int k = 0; k < coords.length; k++) {
+                    coords[k] = unit[p][k] * height;
+                }
+                pieces[p] = new PolygonShape(coords);
+            }
+        }
+        shapes.put(key, pieces);
+        return pieces;
+    }
+
+    /**
+     * Reads shapes from another cache file from now on.
+     *
+     * @param cacheFile the file written by {@link ShapeCompiler}.
+     */
+    public static synchronized void setFile(Path cacheFile) {
+        file = cacheFile;
+        buffer = null;
+        offsets.clear();
+        shapes.clear();
+    }
+
+    private static void load() {
+        if (buffer != null) return;
+        buffer = ByteBuffer.allocate(0);
+        if (!Files.isRegularFile(file)) return;
+        try {
+            ByteBuffer in = ByteBuffer.wrap(Files.readAllBytes(file));
+            if (in.getInt() != ShapeCompiler.MAGIC || in.getShort() != ShapeCompiler.VERSION) {
+                System.out.println(file + " is not a shape cache for this version, ignoring it");
+                return;
+            }
+            in.getInt();   // Settings it was made with, only needed by the compiler
+            in.getFloat();
+            int count = in.getInt();
+            for (int i = 0; i < count; i++) {
+                int offset = in.position();
+                byte[] name = new byte[in.getShort() & 0xFFFF];
+                in.get(name);
+                in.getLong();
+                int pieces = in.getShort();
+                for (int p = 0; p < pieces; p++) {
+                    int vertices = in.get();
+                    in.position(in.position() + vertices * 2 * Float.BYTES);
+                }
+                offsets.put(new String(name, StandardCharsets.UTF_8), offset);
+            }
+            buffer = in;
+        } catch (IOException | RuntimeException e) {
+            System.out.println("Could not read " + file + ": " + e.getMessage());
+            offsets.clear();
+        }
+    }
+}
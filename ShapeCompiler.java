@@ -0,0 +1,244 @@
+package game;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * ShapeCompiler builds the collision-shape cache read by {@link ShapeCache}.
+ *
+ * It walks a directory for sprites, traces each one's outline from its alpha channel
+ * ({@link OutlineTracer}), splits it into convex pieces ({@link ConvexDecomposer}) and writes every
+ * sprite's pieces to one binary file. Sprites are processed in parallel. Each entry records a hash
+ * of the image file, so sprites that have not changed since the last run are copied from the
+ * existing cache instead of being traced again. Images without an alpha channel (backgrounds)
+ * are skipped.
+ *
+ * Shapes are stored for an image one world unit high, and scaled when loaded to the height the
+ * image is drawn at, so one entry serves every size a sprite is used at.
+ *
+ * Usage: java game.ShapeCompiler [directory] [-vertices N] [-tolerance T] [-out file]
+ * where T is a fraction of the image height. Defaults: data, 12 vertices, no tolerance, data/shapes.bin.
+ */
+public class ShapeCompiler {
+
+    static final int MAGIC = 0x47534850;   // "GSHP"
+    static final short VERSION = 1;
+
+    private static final String[] IMAGE_EXTENSIONS = {".png", ".gif"};
+
+    private final int maxVertices;
+    private final float tolerance;
+
+    /** One sprite's pieces in the cache. */
+    static final class Entry {
+        final String name;        // Path as used in the game, e.g. data/bossEnemy.png
+        final long hash;
+        final float[][] pieces;   // Anticlockwise x, y lists for an image 1 unit high
+
+        Entry(String name, long hash, float[][] pieces) {
+            this.name = name;
+            this.hash = hash;
+            this.pieces = pieces;
+        }
+    }
+
+    /**
+     * @param maxVertices vertex budget for each traced outline, or 0 for none.
+     * @param tolerance   largest distance from the outline as a fraction of the image height, or 0 for none.
+     */
+    public ShapeCompiler(int maxVertices, float tolerance) {
+        this.maxVertices = maxVertices;
+        this.tolerance = tolerance;
+    }
+
+    /**
+     * Compiles the shapes of every sprite in a directory (and its subdirectories) into a cache file.
+     *
+     * @param directory the sprite directory.
+     * @param cacheFile the cache to update or create.
+     * @return how many sprites were traced (the rest were unchanged or skipped).
+     * @throws IOException if the directory cannot be listed or the cache cannot be written.
+     */
+    public int compile(Path directory, Path cacheFile) throws IOException {
+        Map<String, Entry> previous = readPrevious(cacheFile);
+        List<Path> images;
+        try (Stream<Path> files = Files.walk(directory)) {
+            images = files.filter(ShapeCompiler::isImage).sorted().collect(Collectors.toList());
+        }
+
+        // Trace in parallel; each result is the entry, or null if the sprite was skipped
+        int[] traced = new int[1];
+        List<Entry> entries = images.parallelStream()
+                .map(image -> {
+                    Entry reused = previous.get(name(image));
+                    try {
+                        long hash = hash(image);
+                        if (reused != null && reused.hash == hash) return reused;
+                        Entry entry = trace(image, hash);
+                        if (entry != null) {
+                            synchronized (traced) {
+                                traced[0]++;
+                            }
+                        }
+                        return entry;
+                    } catch (IOException | RuntimeException e) {
+                        System.out.println(image + ": " + e.getMessage());
+                        return reused; // Keep the old shape rather than none
+                    }
+                })
+                .filter(e -> e != null)
+                .collect(Collectors.toList());
+
+        write(entries, cacheFile);
+        return traced[0];
+    }
+
+    private Entry trace(Path image, long hash) throws IOException {
+        BufferedImage sprite = ImageIO.read(image.toFile());
+        if (sprite == null) throw new IOException("not a readable image");
+        if (!sprite.getColorModel().hasAlpha()) return null;
+
+        float[] outline = OutlineTracer.trace(sprite, OutlineTracer.DEFAULT_ALPHA_THRESHOLD);
+        if (outline.length == 0) return null;
+        float pixelTolerance = tolerance * sprite.getHeight();
+        float[] polygon = OutlineTracer.simplify(outline, maxVertices, pixelTolerance);
+        float[] unit = OutlineTracer.toWorld(polygon, sprite.getWidth(), sprite.getHeight(), 1f);
+        List<float[]> pieces = ConvexDecomposer.decompose(unit);
+        System.out.println(name(image) + ": " + outline.length / 2 + " edge points, "
+                + polygon.length / 2 + " vertices, " + pieces.size() + (pieces.size() == 1 ? " fixture" : " fixtures"));
+        return new Entry(name(image), hash, pieces.toArray(new float[0][]));
+    }
+
+    /** Reads the entries of an existing cache made with the same settings, or none. */
+    private Map<String, Entry> readPrevious(Path cacheFile) {
+        Map<String, Entry> entries = new HashMap<>();
+        if (!Files.isRegularFile(cacheFile)) return entries;
+        try {
+            ByteBuffer in = ByteBuffer.wrap(Files.readAllBytes(cacheFile));
+            if (in.getInt() != MAGIC || in.getShort() != VERSION) return entries;
+            if (in.getInt() != maxVertices || in.getFloat() != tolerance) {
+                return entries; // Different settings: trace everything again
+            }
+            int count = in.getInt();
+            for (int i = 0; i < count; i++) {
+                Entry entry = readEntry(in);
+                entries.put(entry.name, entry);
+            }
+        } catch (IOException | RuntimeException e) {
+            System.out.println("Ignoring unreadable shape cache " + cacheFile + ": " + e.getMessage());
+            entries.clear();
+        }
+        return entries;
+    }
+
+    /**
+     * Reads one entry from its position in a cache.
+     *
+     * @param in the cache, positioned at an entry; advanced past it.
+     * @return the entry.
+     */
+    static Entry readEntry(ByteBuffer in) {
+        byte[] name = new byte[in.getShort() & 0xFFFF];
+        in.get(name);
+        long hash = in.getLong();
+        float[][] pieces = new float[in.getShort()][];
+        for (int p = 0; p < pieces.length; p++) {
+            pieces[p] = new float[in.get() * 2];
+            for (int k = 0; k < pieces[p].length; k++) {
+                pieces[p][k] = in.getFloat();
+            }
+        }
+        return new Entry(new String(name, StandardCharsets.UTF_8), hash, pieces);
+    }
+
+    /*
+     * Layout (big-endian):
+     *   magic "GSHP", version, max vertices, tolerance, entry count
+     *   per entry: name (short length + UTF-8), content hash (long), piece count (short),
+     *              per piece: vertex count (byte), x, y floats
+     */
+    private void write(List<Entry> entries, Path cacheFile) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(MAGIC);
+        out.writeShort(VERSION);
+        out.writeInt(maxVertices);
+        out.writeFloat(tolerance);
+        out.writeInt(entries.size());
+        for (Entry entry : entries) {
+            byte[] name = entry.name.getBytes(StandardCharsets.UTF_8);
+            out.writeShort(name.length);
+            out.write(name);
+            out.writeLong(entry.hash);
+            out.writeShort(entry.pieces.length);
+            for (float[] piece : entry.pieces) {
+                out.writeByte(piece.length / 2);
+                for (float v : piece) {
+                    out.writeFloat(v);
+                }
+            }
+        }
+
+        // Write beside the cache and move it into place, so the game never reads half a file
+        Path temp = cacheFile.resolveSibling(cacheFile.getFileName() + ".tmp");
+        Files.write(temp, bytes.toByteArray());
+        Files.move(temp, cacheFile, java.nio.file.StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /** @return the first 8 bytes of the SHA-256 of a file. */
+    private static long hash(Path file) throws IOException {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(Files.readAllBytes(file));
+            return ByteBuffer.wrap(digest).getLong();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e); // Every JVM has SHA-256
+        }
+    }
+
+    /** @return the path the game uses for an image, with forward slashes. */
+    private static String name(Path image) {
+        return image.normalize().toString().replace('\\', '/');
+    }
+
+    private static boolean isImage(Path file) {
+        String name = file.getFileName().toString().toLowerCase();
+        for (String extension : IMAGE_EXTENSIONS) {
+            if (name.endsWith(extension)) return Files.isRegularFile(file);
+        }
+        return false;
+    }
+
+    public static void main(String[] args) throws IOException {
+        Path directory = Path.of("data");
+        Path cacheFile = null;
+        int maxVertices = 12;
+        float tolerance = 0;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "-vertices":  maxVertices = Integer.parseInt(args[++i]); break;
+                case "-tolerance": tolerance = Float.parseFloat(args[++i]); break;
+                case "-out":       cacheFile = Path.of(args[++i]); break;
+                default:           directory = Path.of(args[i]);
+            }
+        }
+        if (cacheFile == null) cacheFile = Path.of(ShapeCache.DEFAULT_FILE);
+
+        long start = System.nanoTime();
+        int traced = new ShapeCompiler(maxVertices, tolerance).compile(directory, cacheFile);
+        System.out.printf("%s: traced %d sprites in %.2fs%n", cacheFile, traced, (System.nanoTime() - start) / 1e9);
+    }
+}
@@ -0,0 +1,98 @@
+package game;
+
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Compares the binary {@link WorldSnapshot} against the old serialized {@link SaveData} format.
+ * Each level is saved and loaded repeatedly through the real file paths, without a window or sound.
+ *
+ * The old format only stores the player, so its load does not rebuild anything; the snapshot
+ * load includes recreating every enemy, projectile and collectible in the level.
+ *
+ * Usage: java game.SnapshotBenchmark [iterations]
+ */
+public class SnapshotBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+        Game game = new Game("Benchmark");
+        Path dir = Files.createTempDirectory("snapshot-bench");
+        Path legacyFile = dir.resolve("save.ser");
+        Path snapshotFile = dir.resolve("save.gsnp");
+
+        System.out.printf("%-6s %-10s %10s %12s %12s%n", "level", "format", "bytes", "save (us)", "load (us)");
+        for (int number = 1; number <= 3; number++) {
+            GameLevel level = game.createLevel(number, 42);
+            GameLevel target = game.createLevel(number, 42);
+
+            // Warm up both paths before timing
+            for (int i = 0; i < iterations / 4 + 1; i++) {
+                saveLegacy(game, level, legacyFile);
+                loadLegacy(legacyFile);
+                WorldSnapshot.write(WorldSnapshot.capture(game, level), snapshotFile);
+                WorldSnapshot.restoreInto(target, WorldSnapshot.read(snapshotFile));
+            }
+
+            long save = 0, load = 0;
+            for (int i = 0; i < iterations; i++) {
+                long t0 = System.nanoTime();
+                saveLegacy(game, level, legacyFile);
+                long t1 = System.nanoTime();
+                loadLegacy(legacyFile);
+                long t2 = System.nanoTime();
+                save += t1 - t0;
+                load += t2 - t1;
+            }
+            report(number, "serial", Files.size(legacyFile), save, load, iterations);
+
+            save = 0;
+            load = 0;
+            for (int i = 0; i < iterations; i++) {
+                long t0 = System.nanoTime();
+                ByteBuffer snapshot = WorldSnapshot.capture(game, level);
+                WorldSnapshot.write(snapshot, snapshotFile);
+                long t1 = System.nanoTime();
+                WorldSnapshot.restoreInto(target, WorldSnapshot.read(snapshotFile));
+                long t2 = System.nanoTime();
+                save += t1 - t0;
+                load += t2 - t1;
+            }
+            report(number, "snapshot", Files.size(snapshotFile), save, load, iterations);
+        }
+
+        Files.deleteIfExists(legacyFile);
+        Files.deleteIfExists(snapshotFile);
+        Files.deleteIfExists(dir);
+        game.getSoundManager().close();
+    }
+
+    /** Writes the player-only state the game used to save. */
+    private static void saveLegacy(Game game, GameLevel level, Path file) throws Exception {
+        try (ObjectOutputStream out = new ObjectOutputStream(Files.newOutputStream(file))) {
+            SaveData data = new SaveData();
+            data.levelNumber = level.getNumber();
+            data.credits = level.getStudent().getCredits();
+            data.playerX = level.getStudent().getPosition().x;
+            data.playerY = level.getStudent().getPosition().y;
+            data.lives = game.getLives();
+            data.timeLeft = game.getTimeLeft();
+            data.playerName = game.getPlayerName();
+            out.writeObject(data);
+        }
+    }
+
+    private static SaveData loadLegacy(Path file) throws Exception {
+        try (ObjectInputStream in = new ObjectInputStream(Files.newInputStream(file))) {
+            return (SaveData) in.readObject();
+        }
+    }
+
+    private static void report(int level, String format, long bytes, long saveNanos, long loadNanos, int n) {
+        System.out.printf("%-6d %-10s %10d %12.1f %12.1f%n",
+                level, format, bytes, saveNanos / 1e3 / n, loadNanos / 1e3 / n);
+    }
+}
@@ -0,0 +1,380 @@
+package game;
+
+import city.cs.engine.StepEvent;
+import city.cs.engine.StepListener;
+
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+
+/**
+ * SnapshotHistory records the running level every few steps into a fixed-size off-heap ring,
+ * so the player can rewind a few seconds or quick-load without touching the disk.
+ *
+ * Every {@link #KEYFRAME_INTERVAL}th capture is a full {@link WorldSnapshot} (a keyframe); the
+ * others are stored as the XOR against their keyframe, run-length encoded, which is small because
+ * most of a snapshot (schema, timers, bodies at rest) does not change between captures.
+ * When the ring is full the oldest keyframe is dropped together with the deltas that need it.
+ *
+ * Captures run in the step thread, and {@link #rewind}, {@link #quickSave} and {@link #load} should
+ * be posted to the level's command queue, so the ring is only ever used from one thread.
+ */
+public class SnapshotHistory implements StepListener {
+
+    public static final int CAPTURE_INTERVAL = 10;       // Steps between captures (6 per second)
+    public static final int KEYFRAME_INTERVAL = 10;      // Captures per keyframe
+    private static final int CAPACITY = 1 << 20;         // Bytes of off-heap history
+    private static final int MAX_ENTRIES = 128;          // Covers about 20 seconds at the capture rate
+
+    private final Game game;
+    private ByteBuffer ring;  // Allocated when the first level is attached
+
+    // Per-entry metadata, indexed by sequence number modulo MAX_ENTRIES
+    private final int[] offset = new int[MAX_ENTRIES];
+    private final int[] length = new int[MAX_ENTRIES];   // Bytes stored in the ring
+    private final int[] rawLength = new int[MAX_ENTRIES]; // Bytes of the decoded snapshot
+    private final long[] stepOf = new long[MAX_ENTRIES];
+    private final long[] keyOf = new long[MAX_ENTRIES];  // Sequence number of the entry's keyframe
+    private long oldest = 0;   // Sequence number of the oldest entry still held
+    private long next = 0;     // Sequence number the next capture gets
+    private int writePos = 0;  // Ring offset the next capture is written at
+
+    private ByteBuffer scratch = ByteBuffer.allocate(16 * 1024); // Reused capture buffer
+    private byte[] keyframe = new byte[0];   // Decoded copy of the newest keyframe
+    private int keyframeLength = 0;
+    private byte[] decoded = new byte[0];    // Reused buffer for reconstructing an entry
+
+    private ByteBuffer quickSave;            // Off-heap full snapshot kept by quickSave()
+
+    private GameLevel level;
+    private int stepsUntilCapture = CAPTURE_INTERVAL;
+
+    // Cost reporting
+    private final LatencyHistogram captureCost = new LatencyHistogram("snapshot capture");
+    private long capturedRawBytes = 0;
+    private long capturedStoredBytes = 0;
+    private long keyframes = 0;
+
+    /**
+     * Creates an empty history.
+     *
+     * @param game the game whose lives and time are captured with each level.
+     */
+    public SnapshotHistory(Game game) {
+        this.game = game;
+    }
+
+    /**
+     * Starts recording a level, discarding the history of the previous one.
+     * The quick-save slot is kept, since it can be loaded into any level.
+     *
+     * @param newLevel the level to record.
+     */
+    public void attach(GameLevel newLevel) {
+        if (level != null) {
+            level.removeStepListener(this);
+        }
+        if (ring == null) {
+            ring = ByteBuffer.allocateDirect(CAPACITY);
+        }
+        level = newLevel;
+        oldest = next;
+        keyframeLength = 0;
+        stepsUntilCapture = CAPTURE_INTERVAL;
+        level.addStepListener(StepPipeline.Phase.CLEANUP, this); // Captures the finished step
+    }
+
+    @Override
+    public void preStep(StepEvent e) {
+        // Captures are taken after the step
+    }
+
+    @Override
+    public void postStep(StepEvent e) {
+        if (--stepsUntilCapture > 0) return;
+        stepsUntilCapture = CAPTURE_INTERVAL;
+        long start = System.nanoTime();
+        capture();
+        captureCost.record(System.nanoTime() - start);
+    }
+
+    /** Captures the level and appends it to the ring as a keyframe or a delta. */
+    private void capture() {
+        ByteBuffer raw = takeSnapshot();
+        int rawSize = raw.remaining();
+        long seq = next;
+
+        boolean key = seq % KEYFRAME_INTERVAL == 0 || keyframeLength == 0 || keyOf(seq - 1) < 0;
+        int start;
+        if (!key) {
+            // Encode against the keyframe; fall back to a keyframe if the delta is not worth it
+            start = prepareWrite(maxDeltaSize(rawSize));
+            if (start < 0) return;
+            long keySeq = keyOf(seq - 1); // Making room may have evicted the keyframe
+            if (keySeq >= 0) {
+                int size = encodeDelta(raw, start);
+                if (size <= rawSize / 2) {
+                    commit(seq, start, size, rawSize, keySeq);
+                    return;
+                }
+            }
+        }
+
+        start = prepareWrite(rawSize);
+        if (start < 0) return;
+        ring.position(start);
+        ring.put(raw.duplicate());
+        if (keyframe.length < rawSize) keyframe = new byte[rawSize];
+        raw.get(keyframe, 0, rawSize);
+        keyframeLength = rawSize;
+        keyframes++;
+        commit(seq, start, rawSize, rawSize, seq);
+    }
+
+    private long keyOf(long seq) {
+        return seq < oldest ? -1 : keyOf[(int) (seq % MAX_ENTRIES)];
+    }
+
+    /** Snapshots the level into the scratch buffer, growing it if needed. */
+    private ByteBuffer takeSnapshot() {
+        while (true) {
+            scratch.clear();
+            try {
+                WorldSnapshot.captureInto(game, level, scratch);
+                scratch.flip();
+                return scratch;
+            } catch (BufferOverflowException e) {
+                scratch = ByteBuffer.allocate(scratch.capacity() * 2);
+            }
+        }
+    }
+
+    /**
+     * Finds room for an entry, evicting the oldest entries it would overwrite.
+     *
+     * @return the ring offset to write at, or -1 if the entry can never fit.
+     */
+    private int prepareWrite(int size) {
+        if (size > CAPACITY) return -1;
+        int start = writePos + size > CAPACITY ? 0 : writePos;
+        if (start == 0 && writePos > 0) {
+            // Wrapping: entries from writePos to the end are from the previous lap, and older than any
+            // at the start of the ring, so they go first; otherwise the overlap check below would only
+            // look at them and miss the newer entry at offset 0
+            while (oldest < next && offset[(int) (oldest % MAX_ENTRIES)] >= writePos) {
+                evictOldest();
+            }
+        }
+        while (oldest < next && (next - oldest >= MAX_ENTRIES || overlaps(oldest, start, size))) {
+            evictOldest();
+        }
+        return start;
+    }
+
+    private boolean overlaps(long seq, int start, int size) {
+        int slot = (int) (seq % MAX_ENTRIES);
+        return offset[slot] < start + size && start < offset[slot] + length[slot];
+    }
+
+    /** Drops the oldest entry, and any deltas that depended on it if it was a keyframe. */
+    private void evictOldest() {
+        long key = keyOf[(int) (oldest % MAX_ENTRIES)];
+        oldest++;
+        while (oldest < next && keyOf[(int) (oldest % MAX_ENTRIES)] == key) {
+            oldest++;
+        }
+        if (oldest == next) {
+            keyframeLength = 0; // Nothing left to encode deltas against
+        }
+    }
+
+    private void commit(long seq, int start, int size, int rawSize, long key) {
+        int slot = (int) (seq % MAX_ENTRIES);
+        offset[slot] = start;
+        length[slot] = size;
+        rawLength[slot] = rawSize;
+        stepOf[slot] = level.getScheduler().getCurrentStep();
+        keyOf[slot] = key;
+        writePos = start + size;
+        next = seq + 1;
+        capturedRawBytes += rawSize;
+        capturedStoredBytes += size;
+    }
+
+    // Delta format: repeated [unchanged run][changed run][changed bytes XOR keyframe], runs as varints
+
+    private static int maxDeltaSize(int rawSize) {
+        return rawSize + rawSize / 2 + 16;
+    }
+
+    /** Writes the delta of a snapshot against the current keyframe into the ring at start. */
+    private int encodeDelta(ByteBuffer raw, int start) {
+        ring.position(start);
+        int base = raw.position();
+        int n = raw.remaining();
+        int i = 0;
+        while (i < n) {
+            int same = i;
+            while (same < n && raw.get(base + same) == keyAt(same)) same++;
+            int diff = same;
+            while (diff < n && raw.get(base + diff) != keyAt(diff)) diff++;
+            putVarint(same - i);
+            putVarint(diff - same);
+            for (int j = same; j < diff; j++) {
+                ring.put((byte) (raw.get(base + j) ^ keyAt(j)));
+            }
+            i = diff;
+        }
+        return ring.position() - start;
+    }
+
+    private byte keyAt(int i) {
+        return i < keyframeLength ? keyframe[i] : 0;
+    }
+
+    private void putVarint(int value) {
+        while ((value & ~0x7F) != 0) {
+            ring.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        ring.put((byte) value);
+    }
+
+    private int getVarint(ByteBuffer in) {
+        int value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = in.get();
+            value |= (b & 0x7F) << shift;
+            shift += 7;
+        } while (b < 0);
+        return value;
+    }
+
+    /** Rebuilds the full snapshot of an entry. */
+    private ByteBuffer decode(long seq) {
+        int slot = (int) (seq % MAX_ENTRIES);
+        int keySlot = (int) (keyOf[slot] % MAX_ENTRIES);
+        int size = Math.max(rawLength[slot], rawLength[keySlot]);
+        if (decoded.length < size) decoded = new byte[size];
+
+        ByteBuffer key = ring.duplicate();
+        key.limit(offset[keySlot] + length[keySlot]).position(offset[keySlot]);
+        key.get(decoded, 0, length[keySlot]);
+        java.util.Arrays.fill(decoded, length[keySlot], size, (byte) 0);
+
+        if (keyOf[slot] != seq) {
+            ByteBuffer delta = ring.duplicate();
+            delta.limit(offset[slot] + length[slot]).position(offset[slot]);
+            int i = 0;
+            while (delta.hasRemaining()) {
+                i += getVarint(delta);
+                int changed = getVarint(delta);
+                for (int j = 0; j < changed; j++, i++) {
+                    decoded[i] ^= delta.get();
+                }
+            }
+        }
+        return ByteBuffer.wrap(decoded, 0, rawLength[slot]);
+    }
+
+    /**
+     * Restores the level to how it was about the given time ago, and forgets the later history.
+     * Call from the step thread, for example through {@link GameLevel#post}.
+     *
+     * @param seconds how far back to go.
+     * @return true if anything was restored.
+     */
+    public boolean rewind(float seconds) {
+        if (oldest == next) return false;
+        long target = level.getScheduler().getCurrentStep() - Math.round(seconds * GameLevel.STEPS_PER_SECOND);
+        long seq = next - 1;
+        while (seq > oldest && stepOf[(int) (seq % MAX_ENTRIES)] > target) {
+            seq--;
+        }
+        if (!load(decode(seq))) return false;
+
+        // Continue recording after the restored entry
+        int slot = (int) (seq % MAX_ENTRIES);
+        next = seq + 1;
+        writePos = offset[slot] + length[slot];
+        ByteBuffer key = decode(keyOf[slot]); // Later deltas are encoded against this keyframe again
+        keyframeLength = key.remaining();
+        if (keyframe.length < keyframeLength) keyframe = new byte[keyframeLength];
+        key.get(keyframe, 0, keyframeLength);
+        stepsUntilCapture = CAPTURE_INTERVAL;
+        return true;
+    }
+
+    /**
+     * Keeps a full snapshot of the level as it is now, replacing the previous quick-save.
+     * Call from the step thread.
+     */
+    public void quickSave() {
+        ByteBuffer raw = takeSnapshot();
+        if (quickSave == null || quickSave.capacity() < raw.remaining()) {
+            quickSave = ByteBuffer.allocateDirect(Math.max(raw.remaining(), 64 * 1024));
+        }
+        quickSave.clear();
+        quickSave.put(raw);
+        quickSave.flip();
+    }
+
+    /** @return the quick-saved snapshot, or null if nothing has been quick-saved. */
+    public ByteBuffer getQuickSave() {
+        return quickSave == null ? null : quickSave.duplicate();
+    }
+
+    /**
+     * Restores a snapshot of the recorded level, and the game's lives and time, in place.
+     * Call from the step thread.
+     *
+     * @param snapshot a snapshot of the same level number as the recorded level.
+     * @return true if the snapshot was restored.
+     */
+    public boolean load(ByteBuffer snapshot) {
+        try {
+            WorldSnapshot.Header header = WorldSnapshot.readHeader(snapshot);
+            WorldSnapshot.restoreInto(level, snapshot);
+            game.restoreProgress(header.lives, header.timeLeft);
+            return true;
+        } catch (IOException e) {
+            e.printStackTrace();
+            return false;
+        }
+    }
+
+    /** @return seconds of game time currently held in the ring. */
+    public float getSecondsHeld() {
+        if (oldest == next) return 0;
+        long span = stepOf[(int) ((next - 1) % MAX_ENTRIES)] - stepOf[(int) (oldest % MAX_ENTRIES)];
+        return (float) span / GameLevel.STEPS_PER_SECOND;
+    }
+
+    /** @return bytes of the ring used by the entries currently held. */
+    public long getBytesHeld() {
+        long bytes = 0;
+        for (long seq = oldest; seq < next; seq++) {
+            bytes += length[(int) (seq % MAX_ENTRIES)];
+        }
+        return bytes;
+    }
+
+    /**
+     * Formats the capture cost and memory use of the history.
+     *
+     * @return the report text.
+     */
+    public String report() {
+        float seconds = getSecondsHeld();
+        long held = getBytesHeld();
+        long captures = captureCost.getCount();
+        return String.format("Snapshot history: %d entries, %.1fs held in %d of %d bytes (%.0f bytes per second)%n"
+                        + "  captures=%d keyframes=%d raw=%d bytes stored=%d bytes (%.1f%%)%n%s",
+                next - oldest, seconds, held, CAPACITY, seconds > 0 ? held / seconds : 0,
+                captures, keyframes, capturedRawBytes, capturedStoredBytes,
+                capturedRawBytes == 0 ? 0 : 100.0 * capturedStoredBytes / capturedRawBytes,
+                captureCost.report());
+    }
+}
@@ -1,51 +1,93 @@
 package game;
 
 import javax.sound.sampled.*;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Supplier;
 
 /**
  * SoundManager handles all game audio including background music and sound effects.
+ * Everything is played through a single {@link AudioMixer}, so concurrent sounds share one output line.
+ * Where an encoded .ima copy of a .wav asset exists (see {@link AdpcmConverter}) it is used instead.
  */
 public class SoundManager {
 
-    private Clip backgroundMusicClip;
-    private FloatControl backgroundMusicControl;
+    private static final int MUSIC_PRIORITY = 10;  // Music is never stolen by effects
+    private static final int EFFECT_PRIORITY = 1;
+    private static final float EFFECT_GAIN_DB = 6.0f; // Effects are played slightly louder than music
+    private static final float CROSSFADE_SECONDS = 1.5f; // Overlap between two level tracks
+
+    /** System property naming a WAV file to write the mix to instead of a sound device. */
+    public static final String HEADLESS_PROPERTY = "game.audio.headless";
+
+    private final AudioMixer mixer;
+    private final MusicStreamer streamer = new MusicStreamer(); // Decodes music off the EDT
+    private final Map<String, Supplier<AudioSource>> effectCache = new HashMap<>(); // Loaded effects by file path
+
+    private AudioMixer.Voice backgroundMusicVoice;
+    private float musicGain = 1f;
 
     /**
      * Constructor for the SoundManager.
+     * Opens the shared mixer on the sound device, or a file when running headless.
      */
     public SoundManager() {
-        // No initialization needed here
+        this(openMixer());
     }
 
     /**
-     * Loads and plays background music in a continuous loop.
+     * Creates a SoundManager playing through a specific mixer, such as {@link AudioMixer#silent()}
+     * for games run without a window.
      *
-     * @param musicFilePath The file path to the audio file.
-     * @throws IOException If the file cannot be read.
-     * @throws UnsupportedAudioFileException If the audio format is not supported.
-     * @throws LineUnavailableException If the system cannot open the audio line.
+     * @param mixer the mixer to play through; it is started here.
      */
-    public void loadBackgroundMusic(String musicFilePath)
-            throws IOException, UnsupportedAudioFileException, LineUnavailableException {
+    public SoundManager(AudioMixer mixer) {
+        this.mixer = mixer;
+        mixer.start();
+    }
 
-        // Stop existing music if playing
-        if (backgroundMusicClip != null && backgroundMusicClip.isRunning()) {
-            backgroundMusicClip.stop();
+    /**
+     * Opens the mixer output, falling back to a silent mixer when no device is available.
+     */
+    private static AudioMixer openMixer() {
+        String headlessFile = System.getProperty(HEADLESS_PROPERTY);
+        try {
+            if (headlessFile != null) {
+                return AudioMixer.headless(new File(headlessFile));
+            }
+            return AudioMixer.open();
+        } catch (Exception e) {
+            System.out.println("Audio output unavailable, sound disabled: " + e.getMessage());
+            return AudioMixer.silent();
         }
+    }
 
-        // Load and prepare audio stream
-        AudioInputStream audioStream = AudioSystem.getAudioInputStream(new File(musicFilePath));
-        backgroundMusicClip = AudioSystem.getClip();
-        backgroundMusicClip.open(audioStream);
-
-        // Set volume control for background music
-        backgroundMusicControl = (FloatControl) backgroundMusicClip.getControl(FloatControl.Type.MASTER_GAIN);
+    /**
+     * Streams background music in a continuous loop, crossfading from any track already playing.
+     * Returns immediately; the file is opened and decoded on the streaming thread.
+     *
+     * @param musicFilePath The file path to the audio file.
+     */
+    public void loadBackgroundMusic(String musicFilePath) {
+        // Fade the current track out; its stream closes once the fade completes
+        if (backgroundMusicVoice != null) {
+            backgroundMusicVoice.fadeTo(0f, CROSSFADE_SECONDS, true);
+        }
 
-        // Start looping music
-        backgroundMusicClip.loop(Clip.LOOP_CONTINUOUSLY);
-        backgroundMusicClip.start();
+        // Fade the new track in from silence while the streamer fills its ring buffer
+        MusicStream stream = new MusicStream(musicFilePath);
+        backgroundMusicVoice = mixer.play(stream, 0f, MUSIC_PRIORITY);
+        if (backgroundMusicVoice == null) {
+            System.out.println("Too many sounds queued, music not started: " + musicFilePath);
+            return;
+        }
+        stream.attach(backgroundMusicVoice);
+        backgroundMusicVoice.fadeTo(musicGain, CROSSFADE_SECONDS, false);
+        streamer.add(stream);
     }
 
     /**
@@ -54,8 +96,9 @@ public class SoundManager {
      * @param volume A float value; typical range is from -80.0 (mute) to 6.0 (max).
      */
     public void setVolume(float volume) {
-        if (backgroundMusicClip != null && backgroundMusicControl != null) {
-            backgroundMusicControl.setValue(volume);
+        musicGain = AudioMixer.dbToGain(volume);
+        if (backgroundMusicVoice != null) {
+            backgroundMusicVoice.fadeTo(musicGain, 0.05f, false); // Short ramp avoids a click
         }
     }
 
@@ -66,15 +109,15 @@ public class SoundManager {
      */
     public void playSound(String soundFile) {
         try {
-            AudioInputStream audioStream = AudioSystem.getAudioInputStream(new File(soundFile));
-            Clip clip = AudioSystem.getClip();
-            clip.open(audioStream);
-
-            // Optional: Set effect volume (here, slightly increased)
-            FloatControl gainControl = (FloatControl) clip.getControl(FloatControl.Type.MASTER_GAIN);
-            gainControl.setValue(+6.0f);
-
-            clip.start();
+            Supplier<AudioSource> effect;
+            synchronized (effectCache) {
+                effect = effectCache.get(soundFile);
+                if (effect == null) {
+                    effect = loadEffect(soundFile);
+                    effectCache.put(soundFile, effect);
+                }
+            }
+            mixer.play(effect.get(), AudioMixer.dbToGain(EFFECT_GAIN_DB), EFFECT_PRIORITY);
         } catch (Exception e) {
             e.printStackTrace();
             System.out.println("Error loading sound: " + soundFile);
@@ -82,13 +125,124 @@ public class SoundManager {
     }
 
     /**
-     * Stops and releases the background music clip if it's playing.
+     * Stops and releases the background music if it's playing.
      */
     public void stopBackgroundMusic() {
-        if (backgroundMusicClip != null && backgroundMusicClip.isRunning()) {
-            backgroundMusicClip.stop();
-            backgroundMusicClip.close();
-            backgroundMusicClip = null;
+        if (backgroundMusicVoice != null) {
+            backgroundMusicVoice.stop();
+            backgroundMusicVoice = null;
+        }
+    }
+
+    /**
+     * Stops all audio and releases the output line (or finishes the headless output file).
+     */
+    public void close() {
+        stopBackgroundMusic();
+        streamer.shutdown();
+        mixer.close();
+    }
+
+    /** @return the mixer all game audio is played through. */
+    public AudioMixer getMixer() {
+        return mixer;
+    }
+
+    /**
+     * Loads a sound effect, keeping ADPCM assets compressed and decoding WAV assets up front.
+     *
+     * @return a factory for independent sources over the same loaded data.
+     */
+    private static Supplier<AudioSource> loadEffect(String soundFile)
+            throws IOException, UnsupportedAudioFileException {
+        File asset = resolveAsset(soundFile);
+        if (asset.getName().endsWith(ImaAdpcm.EXTENSION)) {
+            byte[] data = Files.readAllBytes(asset.toPath());
+            int frames = ImaAdpcm.readHeader(data);
+            return () -> new AdpcmSource(data, frames);
+        }
+        short[] samples = decode(asset);
+        return () -> new PcmSource(samples, false);
+    }
+
+    /**
+     * Finds the file to load for an asset path, preferring an encoded .ima copy of a .wav file.
+     *
+     * @param filePath the asset path used by the game.
+     * @return the .ima file if one exists next to the .wav, otherwise the original file.
+     */
+    static File resolveAsset(String filePath) {
+        if (filePath.endsWith(".wav")) {
+            File encoded = new File(filePath.substring(0, filePath.length() - 4) + ImaAdpcm.EXTENSION);
+            if (encoded.isFile()) {
+                return encoded;
+            }
+        }
+        return new File(filePath);
+    }
+
+    /**
+     * Opens an audio asset as a stream in the mixer's format, using its .ima copy if there is one.
+     *
+     * @param filePath the audio file to open.
+     * @return a stream of 16-bit stereo samples at the mixer's sample rate.
+     * @throws IOException If the file cannot be read.
+     * @throws UnsupportedAudioFileException If the audio format cannot be converted.
+     */
+    static AudioInputStream openStream(String filePath) throws IOException, UnsupportedAudioFileException {
+        return openStream(resolveAsset(filePath));
+    }
+
+    /**
+     * Opens a specific audio file (WAV or .ima) as a stream in the mixer's format.
+     *
+     * @param asset the file to open.
+     * @return a stream of 16-bit stereo samples at the mixer's sample rate.
+     * @throws IOException If the file cannot be read.
+     * @throws UnsupportedAudioFileException If the audio format cannot be converted.
+     */
+    static AudioInputStream openStream(File asset) throws IOException, UnsupportedAudioFileException {
+        if (asset.getName().endsWith(ImaAdpcm.EXTENSION)) {
+            return ImaAdpcm.openStream(asset); // Already in the mixer format
+        }
+
+        AudioInputStream in = AudioSystem.getAudioInputStream(asset);
+        AudioFormat source = in.getFormat();
+
+        // Decode compressed or 8-bit data to 16-bit PCM first, then match rate and channels
+        if (source.getEncoding() != AudioFormat.Encoding.PCM_SIGNED || source.getSampleSizeInBits() != 16) {
+            AudioFormat pcm = new AudioFormat(source.getSampleRate(), 16, source.getChannels(), true, false);
+            in = AudioSystem.getAudioInputStream(pcm, in);
+        }
+        if (!in.getFormat().matches(AudioMixer.FORMAT)) {
+            in = AudioSystem.getAudioInputStream(AudioMixer.FORMAT, in);
+        }
+        return in;
+    }
+
+    /**
+     * Fully decodes an audio file into interleaved stereo samples in the mixer's format.
+     *
+     * @param asset the audio file to decode.
+     * @return the decoded samples.
+     * @throws IOException If the file cannot be read.
+     * @throws UnsupportedAudioFileException If the audio format cannot be converted.
+     */
+    static short[] decode(File asset) throws IOException, UnsupportedAudioFileException {
+        try (AudioInputStream in = openStream(asset)) {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            byte[] chunk = new byte[8192];
+            int n;
+            while ((n = in.read(chunk)) > 0) {
+                bytes.write(chunk, 0, n);
+            }
+
+            byte[] data = bytes.toByteArray();
+            short[] samples = new short[data.length / 2];
+            for (int i = 0; i < samples.length; i++) {
+                samples[i] = (short) ((data[2 * i] & 0xFF) | (data[2 * i + 1] << 8));
+            }
+            return samples;
         }
     }
 }
@@ -0,0 +1,48 @@
+package game;
+
+/**
+ * StepConfig sets how a level's physics is stepped: how finely fast bodies are sub-stepped,
+ * how many solver iterations each step gets, and how much time a step may take before
+ * {@link SubStepper} starts trading accuracy for speed.
+ *
+ * Levels set it with the 'physics' command in their level file; levels without one use {@link #DEFAULT}.
+ */
+public final class StepConfig {
+
+    /** Up to 4 sub-steps, the engine's usual iterations and a quarter of a 60 Hz frame per step. */
+    public static final StepConfig DEFAULT = new StepConfig(4, 0.25f, 8, 3, 4f);
+
+    /** Most physics steps in one game step. */
+    public final int maxSubSteps;
+    /** Furthest a fast body may move in one physics step, in world units; about half the thinnest thing it can hit. */
+    public final float maxTravel;
+    /** Solver iterations per physics step at full quality. */
+    public final int velocityIterations;
+    public final int positionIterations;
+    /** Physics time allowed per game step before quality is reduced, in milliseconds; 0 for no limit. */
+    public final float budgetMillis;
+
+    /**
+     * @param maxSubSteps        most physics steps in one game step (at least 1).
+     * @param maxTravel          furthest a fast body may move in one physics step.
+     * @param velocityIterations solver velocity iterations at full quality.
+     * @param positionIterations solver position iterations at full quality.
+     * @param budgetMillis       physics time allowed per game step, or 0 for no limit.
+     */
+    public StepConfig(int maxSubSteps, float maxTravel, int velocityIterations, int positionIterations, float budgetMillis) {
+        if (maxSubSteps < 1 || maxTravel <= 0 || velocityIterations < 1 || positionIterations < 1 || budgetMillis < 0) {
+            throw new IllegalArgumentException("Invalid step configuration");
+        }
+        this.maxSubSteps = maxSubSteps;
+        this.maxTravel = maxTravel;
+        this.velocityIterations = velocityIterations;
+        this.positionIterations = positionIterations;
+        this.budgetMillis = budgetMillis;
+    }
+
+    @Override
+    public String toString() {
+        return "sub-steps up to " + maxSubSteps + ", iterations " + velocityIterations + "/" + positionIterations
+                + (budgetMillis > 0 ? ", budget " + budgetMillis + " ms" : ", no budget");
+    }
+}
@@ -0,0 +1,85 @@
+package game;
+
+/**
+ * StepMetrics counts the decisions {@link SubStepper} makes, so the effect of a level's
+ * {@link StepConfig} can be checked in a report rather than guessed from how the game feels.
+ */
+public class StepMetrics {
+
+    private final LatencyHistogram stepCost = new LatencyHistogram("physics per game step");
+    private final long[] subStepCounts;   // Game steps run with each number of sub-steps
+
+    private long gameSteps = 0;
+    private long physicsSteps = 0;
+    private long subStepped = 0;          // Game steps given extra sub-steps for fast bodies
+    private long capped = 0;              // ... that wanted more sub-steps than the current cap allowed
+    private long overBudget = 0;          // Game steps whose physics took longer than the budget
+    private long degraded = 0;            // Times the cap or iterations were lowered
+    private long recovered = 0;           // Times they were raised again
+
+    StepMetrics(int maxSubSteps) {
+        subStepCounts = new long[maxSubSteps + 1];
+    }
+
+    synchronized void gameStep(int subSteps, boolean wantedMore, long nanos, boolean overBudget) {
+        gameSteps++;
+        physicsSteps += subSteps;
+        subStepCounts[Math.min(subSteps, subStepCounts.length - 1)]++;
+        if (subSteps > 1) subStepped++;
+        if (wantedMore) capped++;
+        if (overBudget) this.overBudget++;
+        stepCost.record(nanos);
+    }
+
+    synchronized void degraded() {
+        degraded++;
+    }
+
+    synchronized void recovered() {
+        recovered++;
+    }
+
+    /** @return game steps run so far. */
+    public synchronized long getGameSteps() {
+        return gameSteps;
+    }
+
+    /** @return physics steps run so far, counting every sub-step. */
+    public synchronized long getPhysicsSteps() {
+        return physicsSteps;
+    }
+
+    /** @return game steps that wanted more sub-steps than the budget allowed. */
+    public synchronized long getCappedSteps() {
+        return capped;
+    }
+
+    /** @return times quality was lowered to stay within the budget. */
+    public synchronized long getDegradations() {
+        return degraded;
+    }
+
+    /** @return the physics time per game step. */
+    public LatencyHistogram getStepCost() {
+        return stepCost;
+    }
+
+    /**
+     * Formats the counters and the step cost histogram.
+     *
+     * @return the report text.
+     */
+    public synchronized String report() {
+        StringBuilder text = new StringBuilder();
+        text.append(String.format("%d game steps, %d physics steps (%.2f per game step)%n",
+                gameSteps, physicsSteps, gameSteps == 0 ? 0 : (double) physicsSteps / gameSteps));
+        text.append("  sub-steps:");
+        for (int n = 1; n < subStepCounts.length; n++) {
+            text.append(' ').append(n).append('x').append('=').append(subStepCounts[n]);
+        }
+        text.append(String.format("%n  sub-stepped for fast bodies %d, capped %d, over budget %d, degraded %d, recovered %d%n",
+                subStepped, capped, overBudget, degraded, recovered));
+        text.append(stepCost.report());
+        return text.toString();
+    }
+}
@@ -0,0 +1,246 @@
+package game;
+
+import city.cs.engine.Body;
+import city.cs.engine.StepEvent;
+import city.cs.engine.StepListener;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.LongSupplier;
+
+/**
+ * StepPipeline runs a level's per-step logic in a fixed order of {@link Phase phases}.
+ *
+ * Every listener added to a {@link GameLevel} joins a phase. Before the physics step each phase
+ * runs the preStep of its listeners, in phase order and then in the order they were added; after
+ * the physics step the postSteps run in the same order. The pipeline itself is one engine listener,
+ * run once per game step however many physics sub-steps the step is split into (see {@link SubStepper}).
+ *
+ * A listener that belongs to a body is removed when that body is destroyed. Listeners added while
+ * the pipeline is running start with the next game step; listeners removed while it is running are
+ * skipped from that moment on. Each phase's time per game step is measured, and so are the bytes
+ * the whole pipeline allocates in a game step when an allocation counter is set.
+ */
+public class StepPipeline implements StepListener {
+
+    /** The phases of a game step, in the order they run. */
+    public enum Phase {
+        /** Queued commands, timers and the player's controls. */
+        INPUT,
+        /** Enemies deciding where to go and when to attack. */
+        AI,
+        /** Bodies that move themselves, such as moving platforms. */
+        MOVEMENT,
+        /** Rules of the game: the player falling, projectiles expiring. */
+        GAMEPLAY,
+        /** Bookkeeping once the step is done, such as rewind snapshots. */
+        CLEANUP
+    }
+
+    private static final Phase[] PHASES = Phase.values();
+
+    private final List<List<StepListener>> phases = new ArrayList<>();
+    private final Map<StepListener, Phase> registered = new IdentityHashMap<>();
+    private final List<StepListener> pendingListeners = new ArrayList<>();
+    private final List<Phase> pendingPhases = new ArrayList<>();
+    private final LatencyHistogram[] cost = new LatencyHistogram[PHASES.length];
+    private final long[] stepNanos = new long[PHASES.length];  // Each phase's time in the current game step
+
+    private boolean running = false;
+    private boolean removedWhileRunning = false;
+
+    private LongSupplier allocationCounter;  // Bytes allocated so far by the stepping thread, or null
+    private long stepBytes;                  // Bytes allocated by the pipeline in the current game step
+    private long lastStepBytes = -1;
+
+    StepPipeline() {
+        for (Phase phase : PHASES) {
+            phases.add(new ArrayList<>());
+            cost[phase.ordinal()] = new LatencyHistogram(phase.name().toLowerCase());
+        }
+    }
+
+    /**
+     * Adds a listener to a phase. A listener that is itself a body is removed when the body is destroyed.
+     * Adding a listener that is already in the pipeline does nothing.
+     *
+     * @param phase    the phase to run in.
+     * @param listener the listener.
+     */
+    public void add(Phase phase, StepListener listener) {
+        add(phase, listener, listener instanceof Body ? (Body) listener : null);
+    }
+
+    /**
+     * Adds a listener to a phase for as long as a body exists.
+     *
+     * @param phase    the phase to run in.
+     * @param listener the listener.
+     * @param owner    the body the listener acts for, or null to keep it until it is removed.
+     */
+    public void add(Phase phase, StepListener listener, Body owner) {
+        if (registered.containsKey(listener)) return;
+        registered.put(listener, phase);
+        if (running) {
+            pendingListeners.add(listener);
+            pendingPhases.add(phase);
+        } else {
+            phases.get(phase.ordinal()).add(listener);
+        }
+        if (owner != null) {
+            owner.addDestructionListener(e -> remove(listener));
+        }
+    }
+
+    /**
+     * Removes a listener. A listener removed while the pipeline is running is not called again.
+     *
+     * @param listener the listener.
+     * @return true if it was in the pipeline.
+     */
+    public boolean remove(StepListener listener) {
+        Phase phase = registered.remove(listener);
+        if (phase == null) return false;
+
+        int pending = indexOf(pendingListeners, listener);
+        if (pending >= 0) {
+            pendingListeners.remove(pending);
+            pendingPhases.remove(pending);
+            return true;
+        }
+        List<StepListener> listeners = phases.get(phase.ordinal());
+        int index = indexOf(listeners, listener);
+        if (running) {
+            listeners.set(index, null); // Compacted once the pass is over
+            removedWhileRunning = true;
+        } else {
+            listeners.remove(index);
+        }
+        return true;
+    }
+
+    /**
+     * @param phase a phase.
+     * @return the number of listeners in it.
+     */
+    public int size(Phase phase) {
+        int count = 0;
+        for (StepListener listener : phases.get(phase.ordinal())) {
+            if (listener != null) count++;
+        }
+        for (Phase p : pendingPhases) {
+            if (p == phase) count++;
+        }
+        return count;
+    }
+
+    /**
+     * @param phase a phase.
+     * @return the phase's time per game step, pre and post step together.
+     */
+    public LatencyHistogram getCost(Phase phase) {
+        return cost[phase.ordinal()];
+    }
+
+    /**
+     * Counts the bytes the pipeline allocates in each game step, with a counter such as the
+     * stepping thread's allocated bytes. The counter is read before and after each pass.
+     *
+     * @param counter bytes allocated so far by the thread that steps the level, or null to stop counting.
+     */
+    public void setAllocationCounter(LongSupplier counter) {
+        this.allocationCounter = counter;
+        this.lastStepBytes = -1;
+    }
+
+    /**
+     * @return the bytes the listeners allocated in the last game step, physics excluded,
+     *         or -1 if no allocation counter is set.
+     */
+    public long getLastStepBytes() {
+        return lastStepBytes;
+    }
+
+    @Override
+    public void preStep(StepEvent e) {
+        stepBytes = 0;
+        run(e, true);
+    }
+
+    @Override
+    public void postStep(StepEvent e) {
+        run(e, false);
+        for (int p = 0; p < PHASES.length; p++) {
+            cost[p].record(stepNanos[p]);
+            stepNanos[p] = 0;
+        }
+        lastStepBytes = allocationCounter == null ? -1 : stepBytes;
+        addPending();
+    }
+
+    /** Runs every phase's pre or post step, timing each phase. */
+    private void run(StepEvent e, boolean pre) {
+        long allocatedBefore = allocationCounter == null ? 0 : allocationCounter.getAsLong();
+        running = true;
+        try {
+            for (int p = 0; p < PHASES.length; p++) {
+                List<StepListener> listeners = phases.get(p);
+                long start = System.nanoTime();
+                for (int i = 0; i < listeners.size(); i++) {
+                    StepListener listener = listeners.get(i);
+                    if (listener == null) continue;
+                    if (pre) {
+                        listener.preStep(e);
+                    } else {
+                        listener.postStep(e);
+                    }
+                }
+                stepNanos[p] += System.nanoTime() - start;
+            }
+        } finally {
+            running = false;
+        }
+        if (allocationCounter != null) {
+            stepBytes += allocationCounter.getAsLong() - allocatedBefore;
+        }
+        if (removedWhileRunning) {
+            removedWhileRunning = false;
+            for (List<StepListener> listeners : phases) {
+                listeners.removeIf(listener -> listener == null);
+            }
+        }
+    }
+
+    /** Moves listeners added during the step into their phases. */
+    private void addPending() {
+        for (int i = 0; i < pendingListeners.size(); i++) {
+            phases.get(pendingPhases.get(i).ordinal()).add(pendingListeners.get(i));
+        }
+        pendingListeners.clear();
+        pendingPhases.clear();
+    }
+
+    /**
+     * Formats each phase's listener count and time per game step.
+     *
+     * @return the report text.
+     */
+    public String report() {
+        StringBuilder text = new StringBuilder("Step phases:\n");
+        for (Phase phase : PHASES) {
+            LatencyHistogram histogram = cost[phase.ordinal()];
+            text.append(String.format("  %-9s %4d listeners  mean %.3fms  max %.2fms%n", phase.name().toLowerCase(),
+                    size(phase), histogram.getMeanMillis(), histogram.getMaxMillis()));
+        }
+        return text.toString();
+    }
+
+    private static int indexOf(List<StepListener> listeners, StepListener listener) {
+        for (int i = 0; i < listeners.size(); i++) {
+            if (listeners.get(i) == listener) return i;
+        }
+        return -1;
+    }
+}
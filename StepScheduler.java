@@ -0,0 +1,286 @@
+package game;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * StepScheduler runs delayed and repeating game tasks counted in world steps rather than wall-clock time.
+ * It is advanced by its {@link GameLevel} once per step, so tasks pause whenever the world is stopped
+ * and never need a thread of their own.
+ *
+ * Tasks are kept in a hierarchical timing wheel: three wheels of 64 slots cover the next
+ * 64, 4096 and 262144 steps, with a plain overflow list beyond that. Scheduling and cancelling
+ * take constant time. Advancing costs the tasks that are due in that step plus, every 64 steps,
+ * moving one outer slot's tasks inward (and every 262144 steps the whole overflow list). The cost
+ * is amortized: a task in the wheels moves inward at most once per wheel before it runs.
+ */
+public class StepScheduler {
+
+    private static final int WHEEL_BITS = 6;
+    private static final int WHEEL_SIZE = 1 << WHEEL_BITS;  // 64 slots per wheel
+    private static final int WHEEL_MASK = WHEEL_SIZE - 1;
+    private static final int WHEEL_COUNT = 3;
+
+    private final Task[][] wheels = new Task[WHEEL_COUNT][WHEEL_SIZE]; // Heads of each slot's task list
+    private Task overflow;     // Tasks further away than the outermost wheel covers
+    private long now = 0;      // Number of steps advanced so far
+    private long scheduled = 0; // Tasks scheduled so far, numbering them in order
+    private boolean paused = false;
+
+    /**
+     * Runs a task once after a number of steps.
+     *
+     * @param name   name identifying the task, used when saving and restoring level state.
+     * @param delay  steps to wait (at least 1).
+     * @param action the code to run on the step thread.
+     * @return the scheduled task, which can be cancelled.
+     */
+    public Task schedule(String name, int delay, Runnable action) {
+        return scheduleRepeating(name, delay, 0, action);
+    }
+
+    /**
+     * Runs a task after a number of steps and then repeatedly.
+     *
+     * @param name   name identifying the task, used when saving and restoring level state.
+     * @param delay  steps before the first run (at least 1).
+     * @param period steps between runs, or 0 to run only once.
+     * @param action the code to run on the step thread.
+     * @return the scheduled task, which can be cancelled.
+     */
+    public Task scheduleRepeating(String name, int delay, int period, Runnable action) {
+        Task task = new Task(name, action, period, scheduled++);
+        task.expiry = now + Math.max(1, delay);
+        insert(task);
+        return task;
+    }
+
+    /**
+     * Cancels a pending task. Cancelling a task that has already run or been cancelled does nothing.
+     *
+     * @param task the task to cancel, may be null.
+     */
+    public void cancel(Task task) {
+        if (task != null && task.scheduled) {
+            unlink(task);
+        }
+    }
+
+    /**
+     * Moves a pending task so it next runs after the given number of steps, used when restoring timers.
+     *
+     * @param task  the task to move.
+     * @param delay steps until it should run (at least 1).
+     */
+    public void reschedule(Task task, int delay) {
+        if (task.scheduled) {
+            unlink(task);
+        }
+        task.expiry = now + Math.max(1, delay);
+        insert(task);
+    }
+
+    /**
+     * Advances the scheduler by one step and runs every task that is now due.
+     */
+    public void advance() {
+        if (paused) return;
+        now++;
+
+        // Move tasks down from the outer wheels when an inner wheel wraps around
+        if ((now & ((1L << (WHEEL_BITS * WHEEL_COUNT)) - 1)) == 0) {
+            cascadeOverflow();
+        }
+        for (int level = WHEEL_COUNT - 1; level > 0; level--) {
+            if ((now & ((1L << (WHEEL_BITS * level)) - 1)) == 0) {
+                cascade(level, (int) ((now >> (WHEEL_BITS * level)) & WHEEL_MASK));
+            }
+        }
+
+        int slot = (int) (now & WHEEL_MASK);
+        Task task;
+        while ((task = wheels[0][slot]) != null) {
+            unlink(task);
+            if (task.period > 0) {
+                task.expiry = now + task.period;
+                insert(task); // Re-arm before running so the action can cancel it
+            }
+            task.action.run();
+        }
+    }
+
+    /**
+     * Pauses or resumes the scheduler independently of the world.
+     *
+     * @param paused true to stop tasks from counting down.
+     */
+    public void setPaused(boolean paused) {
+        this.paused = paused;
+    }
+
+    /** @return true if the scheduler is paused. */
+    public boolean isPaused() {
+        return paused;
+    }
+
+    /** @return the number of steps this scheduler has advanced. */
+    public long getCurrentStep() {
+        return now;
+    }
+
+    /**
+     * Finds a pending task by name.
+     *
+     * @param name the task name.
+     * @return the first pending task with that name, in the order they were scheduled, or null.
+     */
+    public Task find(String name) {
+        for (Task task : getTasks()) {
+            if (task.name.equals(name)) return task;
+        }
+        return null;
+    }
+
+    /**
+     * Lists every pending task, for saving the level's timers. Tasks are in the order they were
+     * scheduled, so tasks of the same name can be told apart by their position among each other.
+     *
+     * @return a new list of the pending tasks.
+     */
+    public List<Task> getTasks() {
+        List<Task> tasks = new ArrayList<>();
+        for (Task[] wheel : wheels) {
+            for (Task head : wheel) {
+                for (Task t = head; t != null; t = t.next) tasks.add(t);
+            }
+        }
+        for (Task t = overflow; t != null; t = t.next) tasks.add(t);
+        tasks.sort(Comparator.comparingLong(t -> t.sequence));
+        return tasks;
+    }
+
+    /**
+     * Converts a duration in milliseconds to a whole number of steps.
+     *
+     * @param millis the duration in milliseconds.
+     * @return the equivalent number of steps, at least 1.
+     */
+    public static int millisToSteps(long millis) {
+        return (int) Math.max(1, Math.round(millis * GameLevel.STEPS_PER_SECOND / 1000.0));
+    }
+
+    /** Puts a task in the slot of the innermost wheel whose range covers its expiry. */
+    private void insert(Task task) {
+        long expiry = task.expiry;
+        for (int level = 0; level < WHEEL_COUNT; level++) {
+            int shift = WHEEL_BITS * (level + 1);
+            if ((expiry >> shift) == (now >> shift)) {
+                int slot = (int) ((expiry >> (WHEEL_BITS * level)) & WHEEL_MASK);
+                link(task, wheels[level], slot);
+                return;
+            }
+        }
+        task.next = overflow;
+        task.prev = null;
+        task.slots = null;
+        if (overflow != null) overflow.prev = task;
+        overflow = task;
+        task.scheduled = true;
+    }
+
+    private void cascade(int level, int slot) {
+        Task task = wheels[level][slot];
+        wheels[level][slot] = null;
+        while (task != null) {
+            Task next = task.next;
+            task.scheduled = false;
+            insert(task);
+            task = next;
+        }
+    }
+
+    private void cascadeOverflow() {
+        Task task = overflow;
+        overflow = null;
+        while (task != null) {
+            Task next = task.next;
+            task.scheduled = false;
+            insert(task);
+            task = next;
+        }
+    }
+
+    private void link(Task task, Task[] slots, int slot) {
+        task.slots = slots;
+        task.slot = slot;
+        task.prev = null;
+        task.next = slots[slot];
+        if (task.next != null) task.next.prev = task;
+        slots[slot] = task;
+        task.scheduled = true;
+    }
+
+    private void unlink(Task task) {
+        if (task.prev != null) {
+            task.prev.next = task.next;
+        } else if (task.slots != null) {
+            task.slots[task.slot] = task.next;
+        } else {
+            overflow = task.next;
+        }
+        if (task.next != null) task.next.prev = task.prev;
+        task.next = null;
+        task.prev = null;
+        task.scheduled = false;
+    }
+
+    /**
+     * A pending delayed or repeating task.
+     */
+    public class Task {
+        private final String name;
+        private final Runnable action;
+        private final int period;
+        private final long sequence;  // Order in which the task was scheduled
+        private long expiry;          // Step on which the task next runs
+        private boolean scheduled;
+
+        // Position within the wheel, for constant-time cancellation
+        private Task next, prev;
+        private Task[] slots;
+        private int slot;
+
+        private Task(String name, Runnable action, int period, long sequence) {
+            this.name = name;
+            this.action = action;
+            this.period = period;
+            this.sequence = sequence;
+        }
+
+        /** @return the name the task was scheduled under. */
+        public String getName() {
+            return name;
+        }
+
+        /** @return steps between runs, or 0 for a one-off task. */
+        public int getPeriod() {
+            return period;
+        }
+
+        /** @return steps until the task next runs, or -1 if it is no longer pending. */
+        public int getRemainingSteps() {
+            return scheduled ? (int) (expiry - now) : -1;
+        }
+
+        /** @return true while the task is waiting to run. */
+        public boolean isScheduled() {
+            return scheduled;
+        }
+
+        /** Cancels this task. */
+        public void cancel() {
+            StepScheduler.this.cancel(this);
+        }
+    }
+}
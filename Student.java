@@ -3,9 +3,6 @@ package game;
 import city.cs.engine.*;
 import org.jbox2d.common.Vec2;
 
-import java.util.Timer;
-import java.util.TimerTask;
-
 /**
  * The Student class represents the player character in the game.
  * Handles movement, jumping, double-jumping, shooting, collision detection, and power-ups.
@@ -18,11 +15,12 @@ public class Student extends Walker implements StepListener {
     private static final BodyImage imageRight = new BodyImage("data/sonicRight.png", 4f);
     private static final BodyImage imageLeft = new BodyImage("data/sonicLeft.png", 4f);
 
-    private static final float WALK_SPEED = 3f;
-    private static final float RUN_SPEED = 6f;
-    private static final float NORMAL_JUMP_FORCE = 140f;
-    private static final float RUNNING_JUMP_FORCE = 170f;
-    private static final int DOUBLE_JUMP_DURATION = 7000;  // Duration in milliseconds
+    // Movement values, adjustable in tuning/game.properties while the game runs
+    private static final Tuning.FloatValue WALK_SPEED = Tuning.floatValue("student.walkSpeed", 3f);
+    private static final Tuning.FloatValue RUN_SPEED = Tuning.floatValue("student.runSpeed", 6f);
+    private static final Tuning.FloatValue NORMAL_JUMP_FORCE = Tuning.floatValue("student.jumpForce", 140f);
+    private static final Tuning.FloatValue RUNNING_JUMP_FORCE = Tuning.floatValue("student.runningJumpForce", 170f);
+    private static final Tuning.IntValue DOUBLE_JUMP_DURATION = Tuning.intValue("student.doubleJumpMillis", 7000);
     private static final Vec2 RESPAWN_POSITION = new Vec2(4, -5);
 
     private int credits = 0;  // Player's credits
@@ -31,6 +29,8 @@ public class Student extends Walker implements StepListener {
     private boolean isMoving = false;  // Whether the player is moving
     private final Game game;  // Reference to the game
     private boolean facingRight = true;  // Determines the direction the player is facing
+    private StepScheduler.Task doubleJumpExpiry;  // Pending end of the double jump power-up
+    private final Vec2 scratch = new Vec2();  // Reused for velocities and impulses, as the engine copies them
 
     /**
      * Constructor for the Student class.
@@ -41,7 +41,7 @@ public class Student extends Walker implements StepListener {
         new SolidFixture(this, studentShape);
         addImage(imageDefault);
         this.game = game;
-        world.addStepListener(this);  // Adding this class as a step listener for collision detection
+        ((GameLevel) world).addStepListener(StepPipeline.Phase.GAMEPLAY, this);  // Checks for falling off the level
     }
 
     // Movement Controls
@@ -53,24 +53,30 @@ public class Student extends Walker implements StepListener {
      * @param isRunning Whether the character is running or walking
      */
     public void startWalking(float speed, boolean isRunning) {
-        float adjustedSpeed = isRunning ? RUN_SPEED : WALK_SPEED;
-        setLinearVelocity(new Vec2(adjustedSpeed * Math.signum(speed), getLinearVelocity().y));
-        isMoving = true;
+        float adjustedSpeed = isRunning ? RUN_SPEED.get() : WALK_SPEED.get();
+        scratch.set(adjustedSpeed * Math.signum(speed), getLinearVelocity().y);
+        setLinearVelocity(scratch);
 
+        boolean wasFacingRight = facingRight;
         if (speed > 0) {
             facingRight = true;  // Moving right
         } else if (speed < 0) {
             facingRight = false; // Moving left
         }
 
-        flipCharacter(speed < 0);
+        // Only swap images when the direction changes, as this is called every step while walking
+        if (!isMoving || wasFacingRight != facingRight) {
+            flipCharacter(speed < 0);
+        }
+        isMoving = true;
     }
 
     /**
      * Stops the character from moving.
      */
     public void stopWalking() {
-        setLinearVelocity(new Vec2(0, getLinearVelocity().y));
+        scratch.set(0, getLinearVelocity().y);
+        setLinearVelocity(scratch);
         isMoving = false;
         resetToDefaultImage();
     }
@@ -79,16 +85,41 @@ public class Student extends Walker implements StepListener {
      * Makes the character jump. If running, a stronger jump is applied.
      *
      * @param isRunning Whether the jump is a running jump
+     * @return true if a jump happened, false if the character could not jump right now
      */
-    public void jump(boolean isRunning) {
-        float jumpForce = isRunning ? RUNNING_JUMP_FORCE : NORMAL_JUMP_FORCE;
+    public boolean jump(boolean isRunning) {
+        float jumpForce = isRunning ? RUNNING_JUMP_FORCE.get() : NORMAL_JUMP_FORCE.get();
         if (getLinearVelocity().y == 0) {
-            applyImpulse(new Vec2(0, jumpForce));  // Normal jump
+            applyImpulse(scratch.set(0, jumpForce));  // Normal jump
             hasDoubleJumped = false;
+            return true;
         } else if (canDoubleJump && !hasDoubleJumped) {
-            applyImpulse(new Vec2(0, jumpForce * 0.8f));  // Double jump
+            applyImpulse(scratch.set(0, jumpForce * 0.8f));  // Double jump
             hasDoubleJumped = true;
+            return true;
         }
+        return false;
+    }
+
+    /**
+     * Returns the upward speed a jump from the ground starts with, for working out what the player can reach.
+     *
+     * @param isRunning Whether the jump is a running jump
+     * @return the take-off speed in world units per second
+     */
+    public float getJumpSpeed(boolean isRunning) {
+        float jumpForce = isRunning ? RUNNING_JUMP_FORCE.get() : NORMAL_JUMP_FORCE.get();
+        return jumpForce / getMass();
+    }
+
+    /**
+     * Returns the horizontal speed of the character.
+     *
+     * @param isRunning Whether the character is running
+     * @return the speed in world units per second
+     */
+    public static float getMoveSpeed(boolean isRunning) {
+        return isRunning ? RUN_SPEED.get() : WALK_SPEED.get();
     }
 
     // Character Image Handling
@@ -117,19 +148,70 @@ public class Student extends Walker implements StepListener {
 
     /**
      * Activates the double jump power-up, allowing a second jump.
+     * Collecting another coin while active restarts the duration.
      */
     public void activateDoubleJump() {
         canDoubleJump = true;
         System.out.println("Double Jump Activated!");
 
-        // Deactivates double jump after the specified duration
-        new Timer().schedule(new TimerTask() {
-            @Override
-            public void run() {
-                canDoubleJump = false;
-                System.out.println("Double Jump Expired.");
-            }
-        }, DOUBLE_JUMP_DURATION);
+        // Deactivates double jump after the specified duration of game time
+        StepScheduler scheduler = ((GameLevel) getWorld()).getScheduler();
+        scheduler.cancel(doubleJumpExpiry);
+        doubleJumpExpiry = scheduler.schedule("doubleJumpExpiry",
+                StepScheduler.millisToSteps(DOUBLE_JUMP_DURATION.get()), this::expireDoubleJump);
+    }
+
+    /**
+     * Gets how long the double jump power-up has left.
+     *
+     * @return steps until it expires, or 0 if it is not active
+     */
+    public int getDoubleJumpStepsLeft() {
+        return doubleJumpExpiry != null ? Math.max(0, doubleJumpExpiry.getRemainingSteps()) : 0;
+    }
+
+    /**
+     * Restores the double jump power-up with a given time left, used when loading a snapshot.
+     *
+     * @param steps steps until it expires, or 0 to leave it inactive
+     */
+    public void restoreDoubleJump(int steps) {
+        StepScheduler scheduler = ((GameLevel) getWorld()).getScheduler();
+        scheduler.cancel(doubleJumpExpiry);
+        doubleJumpExpiry = null;
+        canDoubleJump = steps > 0;
+        if (canDoubleJump) {
+            doubleJumpExpiry = scheduler.schedule("doubleJumpExpiry", steps, this::expireDoubleJump);
+        }
+    }
+
+    /** @return whether the double jump has been used since the last jump from the ground */
+    public boolean hasDoubleJumped() {
+        return hasDoubleJumped;
+    }
+
+    /** @param hasDoubleJumped whether the double jump has been used, restored from a snapshot */
+    public void setHasDoubleJumped(boolean hasDoubleJumped) {
+        this.hasDoubleJumped = hasDoubleJumped;
+    }
+
+    /** @return true if the player is facing right */
+    public boolean isFacingRight() {
+        return facingRight;
+    }
+
+    /** @param facingRight the facing direction, restored from a snapshot */
+    public void setFacingRight(boolean facingRight) {
+        this.facingRight = facingRight;
+    }
+
+    /**
+     * Ends the double jump power-up.
+     */
+    private void expireDoubleJump() {
+        canDoubleJump = false;
+        doubleJumpExpiry = null;
+        System.out.println("Double Jump Expired.");
     }
 
     // Credits System
@@ -150,6 +232,7 @@ public class Student extends Walker implements StepListener {
      */
     public void setCredits(int credits) {
         this.credits = credits;
+        ((GameLevel) getWorld()).creditsChanged(credits);
     }
 
     /**
@@ -159,6 +242,7 @@ public class Student extends Walker implements StepListener {
      */
     public void incrementCredits(int points) {
         credits += points;
+        ((GameLevel) getWorld()).creditsChanged(credits);
     }
 
     // Collision and Falling Logic
@@ -1,25 +1,90 @@
 package game;
 
+import city.cs.engine.StepEvent;
+import city.cs.engine.StepListener;
+
+import java.awt.event.FocusEvent;
+import java.awt.event.FocusListener;
 import java.awt.event.KeyEvent;
 import java.awt.event.KeyListener;
+import java.util.function.IntSupplier;
 
 /**
  * StudentController listens for keyboard input and controls the student's (player's) movements
  * and actions (walking, jumping, etc.) within the game world.
+ * Key events only update an {@link InputState}; the keys are then sampled once per physics step,
+ * so running, jumping and shooting can all happen in the same step. Every key is released when the
+ * view loses focus, as its key-up events then go to whatever took the focus.
+ * Each step's input is reduced to a bitmask of actions, which is what the game's
+ * {@link InputRecorder} logs and what a {@link ReplayPlayer} feeds back in replay mode.
  */
-public class StudentController implements KeyListener {
+public class StudentController implements KeyListener, FocusListener, StepListener {
+
+    // Actions consumed in a step, as recorded in replays
+    public static final int ACTION_LEFT = 1;    // Left arrow held
+    public static final int ACTION_RIGHT = 2;   // Right arrow held
+    public static final int ACTION_RUN = 4;     // Shift held
+    public static final int ACTION_JUMP = 8;    // Space pressed since the last step
+    public static final int ACTION_SHOOT = 16;  // Z pressed since the last step
+
+    private static final int JUMP_BUFFER_STEPS = 6;  // A jump pressed up to 0.1s before landing still happens
 
     private Student student;  // The student (player) object that will be controlled by the keyboard
     private Game game;  // The game object to check the game's state (e.g., if the player has lost all lives)
+    private final GameLevel level;  // The level whose steps sample the input
+    private final InputState input = new InputState();  // Keys held, written by the EDT and read by the step
+    private final ReplayPlayer replay;  // Source of recorded actions, or null when reading the keyboard
+    private final IntSupplier script;   // Source of generated actions (batch runs), or null
+
+    private boolean walking = false;  // Whether a direction key was held last step
+    private int jumpBuffer = 0;  // Steps left in which a buffered jump may still happen
 
     /**
      * Constructor to initialize the controller with the game and student references.
+     * The controller samples input on every step of the student's level until {@link #detach()} is called.
      * @param game The main game object that manages the game state
      * @param student The player-controlled student object
      */
     public StudentController(Game game, Student student) {
+        this(game, student, (ReplayPlayer) null);
+    }
+
+    /**
+     * Constructor for a controller that plays back recorded actions instead of reading the keyboard.
+     * @param game The main game object that manages the game state
+     * @param student The player-controlled student object
+     * @param replay The replay supplying one action mask per step, or null to read the keyboard
+     */
+    public StudentController(Game game, Student student, ReplayPlayer replay) {
+        this(game, student, replay, null);
+    }
+
+    /**
+     * Constructor for a controller driven by a script or bot rather than a player, as in {@link BatchRunner}.
+     * Its actions are not recorded.
+     * @param game The main game object that manages the game state
+     * @param student The player-controlled student object
+     * @param script Supplies the action mask for each step
+     */
+    public StudentController(Game game, Student student, IntSupplier script) {
+        this(game, student, null, script);
+    }
+
+    private StudentController(Game game, Student student, ReplayPlayer replay, IntSupplier script) {
         this.student = student;  // Assign the player (student) object
         this.game = game;  // Assign the game object
+        this.replay = replay;
+        this.script = script;
+        this.level = (GameLevel) student.getWorld();
+        level.addStepListener(StepPipeline.Phase.INPUT, this);
+    }
+
+    /**
+     * Stops this controller from sampling input, used when it is replaced on a level change.
+     */
+    public void detach() {
+        level.removeStepListener(this);
+        input.clear();
     }
 
 
@@ -29,57 +94,115 @@ public class StudentController implements KeyListener {
         // Empty implementation, as you don't need this method for your game.
     }
 
+    // Called when a key is pressed; only records it, the next step acts on it
+    @Override
+    public void keyPressed(KeyEvent e) {
+        input.press(e.getKeyCode(), System.nanoTime());
+    }
 
+    // Called when a key is released; only records it, the next step acts on it
+    @Override
+    public void keyReleased(KeyEvent e) {
+        input.release(e.getKeyCode());
+    }
 
-    // Called when a key is pressed, handles player movement and actions
     @Override
-    public void keyPressed(KeyEvent e) {
+    public void focusGained(FocusEvent e) {
+        // Keys already down when the view regains focus are picked up by their next press.
+    }
+
+    // Called when a menu, dialog or other window takes the focus; keys released there are never seen
+    @Override
+    public void focusLost(FocusEvent e) {
+        input.clear();
+    }
+
+    /**
+     * Samples the keys (or takes the recorded actions) once per step and applies every action that is active.
+     * @param e The step event
+     */
+    @Override
+    public void preStep(StepEvent e) {
+        int actions;
+        if (replay != null) {
+            actions = replay.currentActions();
+            if (actions < 0) {
+                game.replaySegmentFinished();
+                return;
+            }
+        } else if (script != null) {
+            actions = script.getAsInt();
+        } else {
+            actions = sampleActions();
+            InputRecorder recorder = game.getInputRecorder();
+            if (recorder != null) recorder.recordStep(actions);
+        }
+
         // If the game is over (no lives left), ignore further inputs
         if (game.getLives() <= 0) {
-            return; // Do nothing if the game is over
+            return;
         }
 
-        int code = e.getKeyCode();  // Get the key code of the key that was pressed
-        boolean isRunning = e.isShiftDown();  // Check if the Shift key is held down (used for running)
+        boolean isRunning = (actions & ACTION_RUN) != 0;  // Shift can be pressed before or after the arrow
 
-
-        /* These if and else if statements can't run simultaneously only one can run and the rest are skipped.
-        But you can move and jump at the same time if keys are held because of how Java's event system works.
-         */
-
-        // Check for left arrow key press (move left)
-        if (code == KeyEvent.VK_LEFT) {
-            student.startWalking(-5, isRunning); // Move the student left (negative x-direction), run if Shift is held
-            // REMEMBER, to run,  hold shift first and then move whilst simultaneously holding shift.
+        // Walking: left and right cancel each other out
+        int direction = ((actions & ACTION_RIGHT) != 0 ? 1 : 0) - ((actions & ACTION_LEFT) != 0 ? 1 : 0);
+        if (direction != 0) {
+            student.startWalking(direction * 5, isRunning);  // Re-applied each step so Shift takes effect immediately
+            walking = true;
+        } else if (walking) {
+            student.stopWalking();
+            walking = false;
         }
-        // Check for right arrow key press (move right)
-        else if (code == KeyEvent.VK_RIGHT) {
-            student.startWalking(5, isRunning);  // Move the student right (positive x-direction), run if Shift is held
+
+        // Jumping: remember the press for a few steps in case the student is still in the air
+        if ((actions & ACTION_JUMP) != 0) {
+            jumpBuffer = JUMP_BUFFER_STEPS;
         }
-        // Check for spacebar key press (jump)
-        else if (code == KeyEvent.VK_SPACE) {
-            student.jump(isRunning);  // Make the student jump; higher jump if Shift is held.
-            // The isRunning is a greater value than walking so putting this parameter will result in a greater jump.
+        if (jumpBuffer > 0) {
+            jumpBuffer = student.jump(isRunning) ? 0 : jumpBuffer - 1;
         }
 
-        else if (code == KeyEvent.VK_Z) {
+        // Shooting
+        if ((actions & ACTION_SHOOT) != 0) {
             student.shoot();
-
         }
     }
 
-    // Called when a key is released, stops the student's movement
+    /**
+     * Samples the keyboard and reduces it to this step's actions, tracing the latency of new presses.
+     */
+    private int sampleActions() {
+        input.sample();
+        int actions = 0;
+        if (input.isDown(KeyEvent.VK_LEFT)) actions |= ACTION_LEFT;
+        if (input.isDown(KeyEvent.VK_RIGHT)) actions |= ACTION_RIGHT;
+        if (input.isDown(KeyEvent.VK_SHIFT)) actions |= ACTION_RUN;
+        if (input.wasPressed(KeyEvent.VK_SPACE)) actions |= ACTION_JUMP;
+        if (input.wasPressed(KeyEvent.VK_Z)) actions |= ACTION_SHOOT;
+
+        recordLatency(KeyEvent.VK_LEFT);
+        recordLatency(KeyEvent.VK_RIGHT);
+        recordLatency(KeyEvent.VK_SPACE);
+        recordLatency(KeyEvent.VK_Z);
+        return actions;
+    }
+
     @Override
-    public void keyReleased(KeyEvent e) {
-        int code = e.getKeyCode();  // Get the key code of the key that was released
+    public void postStep(StepEvent e) {
+        if (replay != null && replay.currentActions() >= 0) {
+            replay.advance(level);  // Read ahead, so balls spawned before the next step are queued in time
+        }
+    }
 
-        // If the left or right arrow keys are released, stop walking
-        if (code == KeyEvent.VK_LEFT || code == KeyEvent.VK_RIGHT) {
-            student.stopWalking();  // Stop the student from walking when the keys are released
+    /**
+     * Passes a key press to the latency tracer if it was pressed since the last sample,
+     * so its time from event to this step (and later to the screen) is measured.
+     */
+    private void recordLatency(int keyCode) {
+        if (input.wasPressed(keyCode)) {
+            game.getLatencyTracer().inputConsumed(input.getPressTime(keyCode));
         }
     }
 
 }
-
-
-
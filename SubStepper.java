@@ -0,0 +1,275 @@
+package game;
+
+import city.cs.engine.DynamicBody;
+import city.cs.engine.SimulationSettings;
+import city.cs.engine.StepEvent;
+import city.cs.engine.StepListener;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.LongSupplier;
+
+/**
+ * SubStepper splits each game step of a level into one or more physics steps.
+ *
+ * Game logic (the level's {@link StepPipeline}: timers, AI, input, anything added with
+ * {@code addStepListener}) still runs once per game step, {@link GameLevel#STEPS_PER_SECOND} times
+ * a second; only the physics engine steps more often. When a fast body such as a bullet or fireball is in flight, enough sub-steps are used that
+ * it moves no further than {@link StepConfig#maxTravel} per physics step, so it cannot pass through
+ * a thin platform between two steps.
+ *
+ * While the level runs in real time the physics cost of each game step is measured. If it stays
+ * above the level's budget, first the sub-step cap and then the solver iterations are lowered, and
+ * they are raised again once there is time to spare. Every decision is counted in {@link StepMetrics}.
+ * Each change is passed to the {@link QualityListener}, so a recording can log it; a replay turns
+ * the budget off and sets the recorded quality at the same steps instead.
+ */
+public class SubStepper implements StepListener {
+
+    private static final float SMOOTHING = 0.2f;      // Weight of the newest cost in the running average
+    private static final int SETTLE_STEPS = 30;       // Game steps to wait after a change before another
+    private static final int RECOVER_STEPS = 120;     // Game steps well under budget before raising quality
+    private static final int MIN_VELOCITY_ITERATIONS = 2;
+
+    /** Told the new quality whenever it changes, between two game steps. */
+    interface QualityListener {
+        void qualityChanged(int cap, int velocityIterations, int positionIterations);
+    }
+
+    private final SimulationSettings settings;
+    private final List<DynamicBody> fastBodies = new ArrayList<>();
+    private StepConfig config;
+    private StepMetrics metrics;
+
+    private int subStep = -1;        // Index of the physics step within the game step, -1 before the first
+    private int subSteps = 1;        // Physics steps in the current game step
+    private boolean wantedMore;      // The current game step was limited by the cap
+    private long physicsStart;
+    private long stepNanos;          // Physics time so far in the current game step
+
+    private LongSupplier allocationCounter;  // Bytes allocated so far by the stepping thread, or null
+    private long lastStepBytes = -1;         // Bytes allocated choosing and accounting for the last game step
+
+    private boolean realTime = false;
+    private boolean adaptive = true; // False while a replay sets the quality
+    private QualityListener qualityListener;
+    private int cap;                 // Current sub-step limit, lowered when over budget
+    private int velocityIterations;
+    private int positionIterations;
+    private float averageNanos = 0;
+    private int sinceChange = 0;
+    private int underBudget = 0;
+
+    /**
+     * @param settings the level's simulation settings, changed as sub-steps and iterations change.
+     * @param config   the level's step configuration.
+     */
+    SubStepper(SimulationSettings settings, StepConfig config) {
+        this.settings = settings;
+        setConfig(config);
+    }
+
+    /**
+     * Replaces the configuration, resetting quality to full and the metrics to zero.
+     *
+     * @param config the level's step configuration.
+     */
+    void setConfig(StepConfig config) {
+        this.config = config;
+        this.metrics = new StepMetrics(config.maxSubSteps);
+        cap = config.maxSubSteps;
+        velocityIterations = config.velocityIterations;
+        positionIterations = config.positionIterations;
+        settings.setVelocityIterations(velocityIterations);
+        settings.setPositionIterations(positionIterations);
+        averageNanos = 0;
+        sinceChange = 0;
+        underBudget = 0;
+    }
+
+    StepConfig getConfig() {
+        return config;
+    }
+
+    StepMetrics getMetrics() {
+        return metrics;
+    }
+
+    /** @param realTime true while the level is running on its own timer, when the budget applies. */
+    void setRealTime(boolean realTime) {
+        this.realTime = realTime;
+    }
+
+    /** @param adaptive false to stop adjusting quality to the budget, as when replaying. */
+    void setAdaptive(boolean adaptive) {
+        this.adaptive = adaptive;
+    }
+
+    /** @param listener told of every quality change made to meet the budget, or null. */
+    void setQualityListener(QualityListener listener) {
+        this.qualityListener = listener;
+    }
+
+    /** Passes the current quality to the listener, e.g. at the start of a recorded segment. */
+    void announceQuality() {
+        if (qualityListener != null) {
+            qualityListener.qualityChanged(cap, velocityIterations, positionIterations);
+        }
+    }
+
+    /**
+     * Sets the quality directly, as recorded when the level was played. Takes effect from the next game step.
+     *
+     * @param cap                the sub-step limit.
+     * @param velocityIterations solver velocity iterations.
+     * @param positionIterations solver position iterations.
+     */
+    void setQuality(int cap, int velocityIterations, int positionIterations) {
+        this.cap = Math.max(1, Math.min(config.maxSubSteps, cap));
+        this.velocityIterations = velocityIterations;
+        this.positionIterations = positionIterations;
+        settings.setVelocityIterations(velocityIterations);
+        settings.setPositionIterations(positionIterations);
+    }
+
+    /** Considers a body's speed when choosing sub-steps, until it is destroyed. */
+    void addFastBody(DynamicBody body) {
+        fastBodies.add(body);
+        body.addDestructionListener(e -> fastBodies.remove(body));
+    }
+
+    /**
+     * Counts the bytes allocated between game steps, where the last step is accounted for and the
+     * next one's sub-steps are chosen. The counter is read before and after, once per game step.
+     *
+     * @param counter bytes allocated so far by the thread that steps the level, or null to stop counting.
+     */
+    void setAllocationCounter(LongSupplier counter) {
+        this.allocationCounter = counter;
+        this.lastStepBytes = -1;
+    }
+
+    /** @return the bytes allocated between the last two game steps, or -1 if no allocation counter is set. */
+    long getLastStepBytes() {
+        return lastStepBytes;
+    }
+
+    /** @return true if the physics step just run was the last of its game step. */
+    boolean isLastSubStep() {
+        return subStep == subSteps - 1;
+    }
+
+    /**
+     * Wraps a game listener so it runs once per game step: before the first physics step and after the last.
+     *
+     * @param listener the game listener, usually the level's step pipeline.
+     * @return the listener to register with the engine.
+     */
+    StepListener gate(StepListener listener) {
+        return new StepListener() {
+            @Override
+            public void preStep(StepEvent e) {
+                if (subStep == 0) listener.preStep(e);
+            }
+
+            @Override
+            public void postStep(StepEvent e) {
+                if (subStep == subSteps - 1) listener.postStep(e);
+            }
+        };
+    }
+
+    @Override
+    public void preStep(StepEvent e) {
+        if (subStep < 0 || subStep == subSteps - 1) {
+            long allocatedBefore = allocationCounter == null ? 0 : allocationCounter.getAsLong();
+            if (subStep >= 0) endGameStep();
+            subStep = 0;
+            beginGameStep();
+            lastStepBytes = allocationCounter == null ? -1 : allocationCounter.getAsLong() - allocatedBefore;
+        } else {
+            subStep++;
+        }
+        physicsStart = System.nanoTime();
+    }
+
+    @Override
+    public void postStep(StepEvent e) {
+        stepNanos += System.nanoTime() - physicsStart;
+    }
+
+    /** Chooses the number of physics steps for the game step about to run. */
+    private void beginGameStep() {
+        // The engine only hands out copies of a velocity, so each fast body costs one read per game step
+        float fastestSquared = 0;
+        for (int i = 0; i < fastBodies.size(); i++) {
+            fastestSquared = Math.max(fastestSquared, fastBodies.get(i).getLinearVelocity().lengthSquared());
+        }
+        float travel = (float) Math.sqrt(fastestSquared) / GameLevel.STEPS_PER_SECOND;
+        int wanted = Math.min(config.maxSubSteps, Math.max(1, (int) Math.ceil(travel / config.maxTravel)));
+        wantedMore = wanted > cap;
+        setSubSteps(Math.min(wanted, cap));
+        stepNanos = 0;
+    }
+
+    /** Records the game step just finished and adjusts quality to the budget. */
+    private void endGameStep() {
+        boolean over = config.budgetMillis > 0 && stepNanos > config.budgetMillis * 1e6f;
+        metrics.gameStep(subSteps, wantedMore, stepNanos, over);
+        if (!realTime || !adaptive || config.budgetMillis <= 0) return;
+
+        averageNanos += SMOOTHING * (stepNanos - averageNanos);
+        sinceChange++;
+        float budgetNanos = config.budgetMillis * 1e6f;
+        underBudget = averageNanos < budgetNanos / 2 ? underBudget + 1 : 0;
+        if (sinceChange < SETTLE_STEPS) return;
+
+        if (averageNanos > budgetNanos && degrade()) {
+            metrics.degraded();
+            sinceChange = 0;
+            announceQuality();
+        } else if (underBudget >= RECOVER_STEPS && recover()) {
+            metrics.recovered();
+            sinceChange = 0;
+            underBudget = 0;
+            announceQuality();
+        }
+    }
+
+    /** Lowers the sub-step cap, then the iterations. @return false if already at the minimum. */
+    private boolean degrade() {
+        if (cap > 1) {
+            cap--;
+        } else if (velocityIterations > MIN_VELOCITY_ITERATIONS || positionIterations > 1) {
+            velocityIterations = Math.max(MIN_VELOCITY_ITERATIONS, velocityIterations / 2);
+            positionIterations = Math.max(1, positionIterations / 2);
+        } else {
+            return false;
+        }
+        settings.setVelocityIterations(velocityIterations);
+        settings.setPositionIterations(positionIterations);
+        return true;
+    }
+
+    /** Raises the iterations, then the sub-step cap, undoing {@link #degrade()}. @return false if already at full quality. */
+    private boolean recover() {
+        if (velocityIterations < config.velocityIterations || positionIterations < config.positionIterations) {
+            velocityIterations = Math.min(config.velocityIterations, velocityIterations * 2);
+            positionIterations = Math.min(config.positionIterations, positionIterations * 2);
+        } else if (cap < config.maxSubSteps) {
+            cap++;
+        } else {
+            return false;
+        }
+        settings.setVelocityIterations(velocityIterations);
+        settings.setPositionIterations(positionIterations);
+        return true;
+    }
+
+    private void setSubSteps(int n) {
+        if (n != subSteps) {
+            subSteps = n;
+            settings.setFrameRate(GameLevel.STEPS_PER_SECOND * n);
+        }
+    }
+}
@@ -0,0 +1,216 @@
+package game;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * Tuning holds gameplay constants (speeds, forces, intervals) that can be changed in
+ * tuning/game.properties while the game is running.
+ *
+ * Classes declare each value once with its default, for example
+ * {@code static final Tuning.FloatValue RUN_SPEED = Tuning.floatValue("student.runSpeed", 6f);},
+ * and read it with {@code get()} where they used the constant before. Keys missing from the file
+ * keep their defaults.
+ *
+ * Values are only changed by {@link #apply(Properties)}, which the game runs between steps
+ * (see {@link HotReloader}), so a step always sees one consistent set of values.
+ */
+public final class Tuning {
+
+    public static final String DIRECTORY = "tuning";
+    public static final String FILE_NAME = "game.properties";
+
+    private static final List<Value> values = new ArrayList<>();
+    private static Properties current = new Properties(); // Last applied file, for values declared later
+
+    private Tuning() {
+    }
+
+    /**
+     * Declares a tunable decimal value.
+     *
+     * @param key          the key in the tuning file.
+     * @param defaultValue the value used when the file does not set it.
+     * @return the value, to keep in a static field.
+     */
+    public static synchronized FloatValue floatValue(String key, float defaultValue) {
+        FloatValue value = new FloatValue(key, defaultValue);
+        register(value);
+        return value;
+    }
+
+    /**
+     * Declares a tunable whole-number value.
+     *
+     * @param key          the key in the tuning file.
+     * @param defaultValue the value used when the file does not set it.
+     * @return the value, to keep in a static field.
+     */
+    public static synchronized IntValue intValue(String key, int defaultValue) {
+        IntValue value = new IntValue(key, defaultValue);
+        register(value);
+        return value;
+    }
+
+    private static void register(Value value) {
+        values.add(value);
+        String text = current.getProperty(value.key);
+        if (text != null) value.set(text.trim());
+    }
+
+    /**
+     * Reads a tuning file without applying it, so it can be read off the step thread.
+     *
+     * @param file the properties file.
+     * @return the values in the file.
+     * @throws IOException if the file cannot be read.
+     */
+    public static Properties read(Path file) throws IOException {
+        Properties properties = new Properties();
+        try (Reader in = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            properties.load(in);
+        }
+        return properties;
+    }
+
+    /**
+     * Applies a tuning file. Keys the file no longer sets go back to their defaults.
+     * Call between steps.
+     *
+     * @param properties values read by {@link #read(Path)}.
+     * @return how many values changed.
+     */
+    public static synchronized int apply(Properties properties) {
+        current = properties;
+        int changed = 0;
+        for (Value value : values) {
+            String text = properties.getProperty(value.key);
+            if (value.set(text == null ? null : text.trim())) {
+                System.out.println("Tuning: " + value.key + " = " + value);
+                changed++;
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * @return a copy of the values last applied, as read from the file; keys it does not set have their defaults.
+     */
+    public static synchronized Properties getApplied() {
+        Properties copy = new Properties();
+        copy.putAll(current);
+        return copy;
+    }
+
+    /**
+     * Applies tuning/game.properties if it exists. Called once at startup, before any level is built.
+     */
+    public static void loadDefaultFile() {
+        Path file = Path.of(DIRECTORY, FILE_NAME);
+        if (!Files.isRegularFile(file)) return;
+        try {
+            apply(read(file));
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /** A named tunable value. */
+    private abstract static class Value {
+        final String key;
+
+        Value(String key) {
+            this.key = key;
+        }
+
+        /**
+         * Sets the value from the file.
+         *
+         * @param text the text in the file, or null to go back to the default.
+         * @return true if the value changed.
+         */
+        abstract boolean set(String text);
+    }
+
+    /** A tunable decimal value. */
+    public static final class FloatValue extends Value {
+        private final float defaultValue;
+        private float value;
+
+        FloatValue(String key, float defaultValue) {
+            super(key);
+            this.defaultValue = defaultValue;
+            this.value = defaultValue;
+        }
+
+        /** @return the current value. */
+        public float get() {
+            return value;
+        }
+
+        @Override
+        boolean set(String text) {
+            float next = defaultValue;
+            if (text != null) {
+                try {
+                    next = Float.parseFloat(text);
+                } catch (NumberFormatException e) {
+                    System.out.println("Tuning: " + key + " is not a number: '" + text + "', keeping " + value);
+                    return false;
+                }
+            }
+            if (next == value) return false;
+            value = next;
+            return true;
+        }
+
+        @Override
+        public String toString() {
+            return Float.toString(value);
+        }
+    }
+
+    /** A tunable whole-number value. */
+    public static final class IntValue extends Value {
+        private final int defaultValue;
+        private int value;
+
+        IntValue(String key, int defaultValue) {
+            super(key);
+            this.defaultValue = defaultValue;
+            this.value = defaultValue;
+        }
+
+        /** @return the current value. */
+        public int get() {
+            return value;
+        }
+
+        @Override
+        boolean set(String text) {
+            int next = defaultValue;
+            if (text != null) {
+                try {
+                    next = Integer.parseInt(text);
+                } catch (NumberFormatException e) {
+                    System.out.println("Tuning: " + key + " is not a whole number: '" + text + "', keeping " + value);
+                    return false;
+                }
+            }
+            if (next == value) return false;
+            value = next;
+            return true;
+        }
+
+        @Override
+        public String toString() {
+            return Integer.toString(value);
+        }
+    }
+}
@@ -0,0 +1,587 @@
+package game;
+
+import city.cs.engine.*;
+import org.jbox2d.common.Vec2;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+import java.util.function.ObjIntConsumer;
+import java.util.function.ToIntFunction;
+import java.util.zip.CRC32;
+
+/**
+ * WorldSnapshot is the versioned binary save format for a whole {@link GameLevel}.
+ * It records every game body (position, velocity, health and other state), the level's own
+ * progress counters and its pending timers, instead of just the player's position.
+ *
+ * The format is schema-driven: the file carries the name and field list of every entity type it
+ * uses, and each body record is a type id followed by fixed 4-byte values. A reader matches
+ * types and fields by name, so fields added or removed in later versions are skipped or left at
+ * their defaults instead of breaking old saves.
+ *
+ * Layout (big-endian):
+ * <pre>
+ * header   magic "GSNP", version, level number, seed, lives, time left, step, player name
+ * level    random state (version 2 on), length-prefixed bytes from {@link GameLevel#writeState}
+ * schema   per type: id, name, rebuild flag, field names and kinds
+ * timers   per task: name, steps remaining, period
+ * bodies   per body: type id, x, y, vx, vy, angle, spin, then the type's fields
+ * </pre>
+ */
+public final class WorldSnapshot {
+
+    private static final int MAGIC = 0x47534E50; // "GSNP"
+    private static final short VERSION = 2;     // 2: level random state
+    private static final int COMMON_FLOATS = 6;  // x, y, vx, vy, angle, angular velocity
+
+    private static final List<EntitySchema<?>> SCHEMAS = new ArrayList<>();
+
+    static {
+        // The player is updated in place, since the controller and listeners keep a reference to it
+        register(new EntitySchema<>(1, "Student", Student.class, false, null)
+                .intField("credits", Student::getCredits, Student::setCredits)
+                .intField("doubleJumpSteps", Student::getDoubleJumpStepsLeft, Student::restoreDoubleJump)
+                .intField("hasDoubleJumped", s -> s.hasDoubleJumped() ? 1 : 0, (s, v) -> s.setHasDoubleJumped(v != 0))
+                .intField("facingRight", s -> s.isFacingRight() ? 1 : 0, (s, v) -> s.setFacingRight(v != 0)));
+
+        register(new EntitySchema<>(2, "Enemy", Enemy.class, true, Enemy::new)
+                .intField("movingRight", e -> e.isMovingRight() ? 1 : 0, (e, v) -> e.setMovingRight(v != 0)));
+
+        register(new EntitySchema<>(3, "Level2Enemy", Level2Enemy.class, true,
+                level -> new Level2Enemy(level, level.getGame()))
+                .intField("health", Level2Enemy::getHealth, Level2Enemy::setHealth));
+
+        register(new EntitySchema<>(4, "Level2Enemy_2", Level2Enemy_2.class, true,
+                level -> new Level2Enemy_2(level, level.getGame()))
+                .intField("health", Level2Enemy_2::getHealth, Level2Enemy_2::setHealth));
+
+        register(new EntitySchema<>(5, "BossEnemy", BossEnemy.class, true,
+                level -> new BossEnemy(level, level.getGame()))
+                .intField("health", BossEnemy::getHealth, BossEnemy::setHealth)
+                .intField("stepsSinceLastShot", BossEnemy::getStepsSinceLastShot, BossEnemy::setStepsSinceLastShot));
+
+        register(new EntitySchema<>(6, "Collectible", Collectible.class, true, Collectible::new));
+
+        register(new EntitySchema<>(7, "Bullet", Bullet.class, true,
+                level -> new Bullet(level, new Vec2(), new Vec2(1, 0)))
+                .floatField("timeElapsed", Bullet::getTimeElapsed, Bullet::setTimeElapsed));
+
+        register(new EntitySchema<>(8, "Fireball", Fireball.class, true,
+                level -> new Fireball(level, new Vec2(), new Vec2(1, 0), level.getGame())));
+
+        // Platforms come from the level layout, so they are matched to the rebuilt ones in order
+        register(new EntitySchema<>(9, "MovingPlatform", MovingPlatform.class, false, null)
+                .floatField("pathDistance", MovingPlatform::getPathDistance, MovingPlatform::setPathDistance));
+    }
+
+    private WorldSnapshot() {
+        // Static format only
+    }
+
+    private static void register(EntitySchema<?> schema) {
+        SCHEMAS.add(schema);
+    }
+
+    /**
+     * Captures the complete state of a level. Call between steps (or while the world is stopped).
+     *
+     * @param game  the game, for lives, time and player name.
+     * @param level the level to capture.
+     * @return a buffer ready for writing, positioned at the start of the snapshot.
+     */
+    public static ByteBuffer capture(Game game, GameLevel level) {
+        ByteBuffer out = ByteBuffer.allocate(estimateSize(game, level));
+        captureInto(game, level, out);
+        out.flip();
+        return out;
+    }
+
+    /**
+     * Returns an upper bound on the size of a snapshot of the level as it is now.
+     *
+     * @param game  the game.
+     * @param level the level.
+     * @return the number of bytes {@link #captureInto} needs.
+     */
+    public static int estimateSize(Game game, GameLevel level) {
+        int size = 64 + game.getPlayerName().length() * 3 + 1024
+                + level.getScheduler().getTasks().size() * 96 + SCHEMAS.size() * 256;
+        for (Body body : level.getDynamicBodies()) {
+            size += bodySize(schemaFor(body));
+        }
+        for (Body body : level.getStaticBodies()) {
+            size += bodySize(schemaFor(body));
+        }
+        return size;
+    }
+
+    /**
+     * Captures the complete state of a level into an existing buffer, from its current position.
+     * Used where snapshots are taken often and the buffer is reused.
+     *
+     * @param game  the game, for lives, time and player name.
+     * @param level the level to capture.
+     * @param out   the buffer to write to.
+     * @throws java.nio.BufferOverflowException if the buffer is too small.
+     */
+    public static void captureInto(Game game, GameLevel level, ByteBuffer out) {
+        // Header
+        out.putInt(MAGIC);
+        out.putShort(VERSION);
+        out.putInt(level.getNumber());
+        out.putLong(level.getSeed());
+        out.putInt(game.getLives());
+        out.putInt(game.getTimeLeft());
+        out.putLong(level.getScheduler().getCurrentStep());
+        putString(out, game.getPlayerName());
+
+        // Level-specific progress
+        out.putLong(level.getRandom().getState());
+        int lengthPos = out.position();
+        out.putInt(0);
+        level.writeState(out);
+        out.putInt(lengthPos, out.position() - lengthPos - 4);
+
+        // Schema
+        out.putShort((short) SCHEMAS.size());
+        for (EntitySchema<?> schema : SCHEMAS) {
+            out.putShort(schema.id);
+            putString(out, schema.name);
+            out.put((byte) (schema.rebuild ? 1 : 0));
+            out.putShort((short) schema.fields.size());
+            for (Field<?> field : schema.fields) {
+                putString(out, field.name);
+                out.put((byte) (field.isInt ? 1 : 0));
+            }
+        }
+
+        // Timers
+        List<StepScheduler.Task> tasks = level.getScheduler().getTasks();
+        out.putShort((short) tasks.size());
+        for (StepScheduler.Task task : tasks) {
+            putString(out, task.getName());
+            out.putInt(task.getRemainingSteps());
+            out.putInt(task.getPeriod());
+        }
+
+        // Bodies; the count is filled in afterwards
+        int countPos = out.position();
+        out.putInt(0);
+        int count = writeBodies(out, level.getDynamicBodies()) + writeBodies(out, level.getStaticBodies());
+        out.putInt(countPos, count);
+    }
+
+    /**
+     * Writes a captured snapshot to a file through an NIO channel.
+     *
+     * @param snapshot the snapshot from {@link #capture}; its position is advanced to the end.
+     * @param file     the file to create or replace.
+     * @throws IOException if the file cannot be written.
+     */
+    public static void write(ByteBuffer snapshot, Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (snapshot.hasRemaining()) {
+                channel.write(snapshot);
+            }
+        }
+    }
+
+    /**
+     * Reads a snapshot file through an NIO channel.
+     *
+     * @param file the file to read.
+     * @return the snapshot, positioned at its start.
+     * @throws IOException if the file cannot be read or is not a snapshot.
+     */
+    public static ByteBuffer read(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) throw new IOException("Save file too large");
+            ByteBuffer in = ByteBuffer.allocate((int) size);
+            while (in.hasRemaining() && channel.read(in) >= 0) {
+                // Keep reading until the buffer is full
+            }
+            in.flip();
+            readHeader(in.duplicate()); // Validate before handing it back
+            return in;
+        }
+    }
+
+    /**
+     * Reads the header of a snapshot without consuming the buffer.
+     *
+     * @param snapshot the snapshot.
+     * @return the level number, seed and game progress it records.
+     * @throws IOException if the data is not a snapshot of a supported version.
+     */
+    public static Header readHeader(ByteBuffer snapshot) throws IOException {
+        ByteBuffer in = snapshot.duplicate();
+        try {
+            if (in.getInt() != MAGIC) throw new IOException("Not a save file");
+            short version = in.getShort();
+            if (version > VERSION) throw new IOException("Save file is from a newer version (" + version + ")");
+
+            Header header = new Header();
+            header.levelNumber = in.getInt();
+            header.seed = in.getLong();
+            header.lives = in.getInt();
+            header.timeLeft = in.getInt();
+            header.step = in.getLong();
+            header.playerName = getString(in);
+            return header;
+        } catch (java.nio.BufferUnderflowException e) {
+            throw new IOException("Truncated save file", e);
+        }
+    }
+
+    /**
+     * Hashes the state recorded in a snapshot, leaving out the step counter, which depends on how
+     * long the level object has existed rather than on the state of the game.
+     *
+     * @param snapshot the snapshot; not consumed.
+     * @return a CRC32 of everything but the step counter.
+     */
+    public static long stateHash(ByteBuffer snapshot) {
+        ByteBuffer in = snapshot.duplicate();
+        int stepOffset = in.position() + 4 + 2 + 4 + 8 + 4 + 4; // Magic, version, level, seed, lives, time
+        CRC32 crc = new CRC32();
+        crc.update(in.duplicate().limit(stepOffset));
+        crc.update(in.position(stepOffset + 8));
+        return crc.getValue();
+    }
+
+    /**
+     * Restores a snapshot into a level freshly built from the snapshot's level number and seed.
+     * Bodies of rebuilt types are replaced, the player and platforms are updated in place, and
+     * timers already scheduled in the level are moved to their saved remaining time.
+     * Call before the level is started, or between steps.
+     *
+     * @param level    the level to restore into.
+     * @param snapshot the snapshot data; not consumed.
+     * @throws IOException if the snapshot is malformed.
+     */
+    public static void restoreInto(GameLevel level, ByteBuffer snapshot) throws IOException {
+        restore(level, snapshot, false);
+    }
+
+    /**
+     * Restores only the player, the level's progress counters and its timers from a snapshot,
+     * leaving everything else as the level built it. Used when a level is rebuilt from a changed
+     * level file, so the new layout appears without the player losing their place.
+     *
+     * @param level    the level to restore into, freshly built.
+     * @param snapshot a snapshot of the same level number; not consumed.
+     * @throws IOException if the snapshot is malformed.
+     */
+    public static void restorePlayer(GameLevel level, ByteBuffer snapshot) throws IOException {
+        restore(level, snapshot, true);
+    }
+
+    private static void restore(GameLevel level, ByteBuffer snapshot, boolean playerOnly) throws IOException {
+        ByteBuffer in = snapshot.duplicate();
+        try {
+            in.getInt();                   // Magic, checked by readHeader
+            short version = in.getShort();
+            in.position(in.position() + 4 + 8 + 4 + 4 + 8); // Level, seed, lives, time, step
+            getString(in);                                // Player name
+
+            if (version >= 2) {
+                long randomState = in.getLong();
+                if (!playerOnly) level.getRandom().setState(randomState);
+            }
+            int levelLength = in.getInt();
+            ByteBuffer levelState = in.slice();
+            levelState.limit(levelLength);
+            level.readState(levelState);
+            in.position(in.position() + levelLength);
+
+            // Map the file's type ids to the current schema, field by field
+            int typeCount = in.getShort();
+            FileType[] types = new FileType[Short.MAX_VALUE + 1];
+            for (int t = 0; t < typeCount; t++) {
+                FileType type = new FileType();
+                short id = in.getShort();
+                type.schema = findSchema(getString(in));
+                in.get(); // Rebuild flag; the current schema decides
+                int fieldCount = in.getShort();
+                type.fields = new Field<?>[fieldCount];
+                type.isInt = new boolean[fieldCount];
+                for (int f = 0; f < fieldCount; f++) {
+                    String fieldName = getString(in);
+                    type.isInt[f] = in.get() != 0;
+                    type.fields[f] = type.schema != null ? type.schema.findField(fieldName) : null;
+                }
+                types[id] = type;
+            }
+
+            // Timers
+            int taskCount = in.getShort();
+            String[] taskNames = new String[taskCount];
+            int[] taskRemaining = new int[taskCount];
+            for (int t = 0; t < taskCount; t++) {
+                taskNames[t] = getString(in);
+                taskRemaining[t] = in.getInt();
+                in.getInt(); // Period comes from the task as rebuilt by the level
+            }
+
+            // Remove bodies that will be recreated from the snapshot
+            if (!playerOnly) clearRebuiltBodies(level);
+
+            // Bodies
+            List<Body> existingDynamic = new ArrayList<>(level.getDynamicBodies());
+            List<Body> existingStatic = new ArrayList<>(level.getStaticBodies());
+            int[] matched = new int[SCHEMAS.size()];
+            int bodyCount = in.getInt();
+            for (int b = 0; b < bodyCount; b++) {
+                FileType type = types[in.getShort()];
+                if (type == null) throw new IOException("Body of undeclared type");
+                if (playerOnly && (type.schema == null || type.schema.type != Student.class)) {
+                    in.position(in.position() + 4 * (COMMON_FLOATS + type.fields.length));
+                    continue;
+                }
+                readBody(in, type, level, existingDynamic, existingStatic, matched);
+            }
+
+            // The nth saved task of a name goes to the nth pending task of that name, both in the order scheduled
+            List<StepScheduler.Task> pending = level.getScheduler().getTasks();
+            for (int t = 0; t < taskCount; t++) {
+                int ordinal = 0;
+                for (int s = 0; s < t; s++) {
+                    if (taskNames[s].equals(taskNames[t])) ordinal++;
+                }
+                StepScheduler.Task task = nthTask(pending, taskNames[t], ordinal);
+                if (task != null && taskRemaining[t] > 0) {
+                    level.getScheduler().reschedule(task, taskRemaining[t]);
+                }
+            }
+        } catch (java.nio.BufferUnderflowException | IllegalArgumentException
+                 | IndexOutOfBoundsException | NegativeArraySizeException e) {
+            throw new IOException("Corrupt save file", e);
+        }
+    }
+
+    /** Writes every game body in the list, skipping bodies that are not saved. */
+    private static int writeBodies(ByteBuffer out, List<? extends Body> bodies) {
+        int count = 0;
+        for (Body body : bodies) {
+            EntitySchema<?> schema = schemaFor(body);
+            if (schema != null) {
+                writeBody(out, schema, body);
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static int bodySize(EntitySchema<?> schema) {
+        return schema == null ? 0 : 2 + 4 * (COMMON_FLOATS + schema.fields.size());
+    }
+
+    private static void clearRebuiltBodies(GameLevel level) {
+        for (Body body : new ArrayList<>(level.getDynamicBodies())) {
+            EntitySchema<?> schema = schemaFor(body);
+            if (schema != null && schema.rebuild) {
+                body.destroy(); // Its step listeners go with it
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T extends Body> void writeBody(ByteBuffer out, EntitySchema<T> schema, Body body) {
+        T entity = (T) body;
+        Vec2 position = entity.getPosition();
+        Vec2 velocity = entity.getLinearVelocity();
+        out.putShort(schema.id);
+        out.putFloat(position.x);
+        out.putFloat(position.y);
+        out.putFloat(velocity.x);
+        out.putFloat(velocity.y);
+        out.putFloat(entity.getAngle());
+        out.putFloat(entity.getAngularVelocity());
+        for (Field<T> field : schema.fields) {
+            if (field.isInt) {
+                out.putInt(field.intGetter.applyAsInt(entity));
+            } else {
+                out.putFloat(field.floatGetter.get(entity));
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void readBody(ByteBuffer in, FileType type, GameLevel level,
+                                 List<Body> existingDynamic, List<Body> existingStatic, int[] matched) {
+        float x = in.getFloat(), y = in.getFloat();
+        float vx = in.getFloat(), vy = in.getFloat();
+        float angle = in.getFloat(), spin = in.getFloat();
+
+        EntitySchema<Body> schema = (EntitySchema<Body>) type.schema;
+        Body body = null;
+        if (schema != null) {
+            body = schema.rebuild ? schema.factory.apply(level)
+                    : nthExisting(schema, existingDynamic, existingStatic, matched[SCHEMAS.indexOf(schema)]++);
+        }
+
+        if (body == null) {
+            in.position(in.position() + 4 * type.fields.length); // Unknown type or nothing to match
+            return;
+        }
+
+        body.setPosition(new Vec2(x, y));
+        body.setLinearVelocity(new Vec2(vx, vy));
+        body.setAngle(angle);
+        body.setAngularVelocity(spin);
+        for (int f = 0; f < type.fields.length; f++) {
+            Field<Body> field = (Field<Body>) type.fields[f];
+            if (type.isInt[f]) {
+                int value = in.getInt();
+                if (field != null && field.isInt) field.intSetter.accept(body, value);
+            } else {
+                float value = in.getFloat();
+                if (field != null && !field.isInt) field.floatSetter.set(body, value);
+            }
+        }
+        if (schema.rebuild) {
+            level.onBodyRestored(body);
+        }
+    }
+
+    private static Body nthExisting(EntitySchema<?> schema, List<Body> dynamic, List<Body> statics, int n) {
+        int seen = 0;
+        for (List<Body> list : List.of(dynamic, statics)) {
+            for (Body body : list) {
+                if (body.getClass() == schema.type && seen++ == n) return body;
+            }
+        }
+        return null;
+    }
+
+    private static StepScheduler.Task nthTask(List<StepScheduler.Task> tasks, String name, int n) {
+        int seen = 0;
+        for (StepScheduler.Task task : tasks) {
+            if (task.getName().equals(name) && seen++ == n) return task;
+        }
+        return null;
+    }
+
+    private static EntitySchema<?> schemaFor(Body body) {
+        for (EntitySchema<?> schema : SCHEMAS) {
+            if (body.getClass() == schema.type) return schema;
+        }
+        return null;
+    }
+
+    private static EntitySchema<?> findSchema(String name) {
+        for (EntitySchema<?> schema : SCHEMAS) {
+            if (schema.name.equals(name)) return schema;
+        }
+        return null;
+    }
+
+    private static void putString(ByteBuffer out, String s) {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        out.putShort((short) bytes.length);
+        out.put(bytes);
+    }
+
+    private static String getString(ByteBuffer in) {
+        byte[] bytes = new byte[in.getShort() & 0xFFFF];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * The game-wide values stored at the start of a snapshot.
+     */
+    public static final class Header {
+        public int levelNumber;
+        public long seed;
+        public int lives;
+        public int timeLeft;
+        public long step;
+        public String playerName;
+    }
+
+    /** A type as declared in a file, resolved against the current schema. */
+    private static final class FileType {
+        EntitySchema<?> schema;   // Null if the type no longer exists
+        Field<?>[] fields;        // Null entries for fields that no longer exist
+        boolean[] isInt;
+    }
+
+    /** Reads a float property of an entity. */
+    private interface FloatGetter<T> {
+        float get(T entity);
+    }
+
+    /** Writes a float property of an entity. */
+    private interface FloatSetter<T> {
+        void set(T entity, float value);
+    }
+
+    /**
+     * Describes how one entity class is saved and recreated.
+     */
+    private static final class EntitySchema<T extends Body> {
+        final short id;
+        final String name;
+        final Class<T> type;
+        final boolean rebuild;                  // Destroy and recreate, rather than update in place
+        final Function<GameLevel, T> factory;   // Creates a fresh instance when rebuilding
+        final List<Field<T>> fields = new ArrayList<>();
+
+        EntitySchema(int id, String name, Class<T> type, boolean rebuild, Function<GameLevel, T> factory) {
+            this.id = (short) id;
+            this.name = name;
+            this.type = type;
+            this.rebuild = rebuild;
+            this.factory = factory;
+        }
+
+        EntitySchema<T> intField(String name, ToIntFunction<T> getter, ObjIntConsumer<T> setter) {
+            fields.add(new Field<>(name, getter, setter, null, null));
+            return this;
+        }
+
+        EntitySchema<T> floatField(String name, FloatGetter<T> getter, FloatSetter<T> setter) {
+            fields.add(new Field<>(name, null, null, getter, setter));
+            return this;
+        }
+
+        Field<T> findField(String name) {
+            for (Field<T> field : fields) {
+                if (field.name.equals(name)) return field;
+            }
+            return null;
+        }
+    }
+
+    /**
+     * One saved property of an entity, stored as a 4-byte int or float.
+     */
+    private static final class Field<T> {
+        final String name;
+        final boolean isInt;
+        final ToIntFunction<T> intGetter;
+        final ObjIntConsumer<T> intSetter;
+        final FloatGetter<T> floatGetter;
+        final FloatSetter<T> floatSetter;
+
+        Field(String name, ToIntFunction<T> intGetter, ObjIntConsumer<T> intSetter,
+              FloatGetter<T> floatGetter, FloatSetter<T> floatSetter) {
+            this.name = name;
+            this.isInt = intGetter != null;
+            this.intGetter = intGetter;
+            this.intSetter = intSetter;
+            this.floatGetter = floatGetter;
+            this.floatSetter = floatSetter;
+        }
+    }
+}